@@ -30,12 +30,15 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.AbstractList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.RandomAccess;
 import java.util.zip.Adler32;
@@ -63,6 +66,8 @@ public final class Dex {
     private ByteBuffer data;
     private int nextSectionStart = 0;
     private byte[] signature = null;
+    private volatile String[] stringCache = null;
+    private volatile Map<String, Integer> typeIndexByDescriptor = null;
 
     /**
      * Creates a new dex that reads from {@code data}. It is an error to modify
@@ -72,7 +77,11 @@ public final class Dex {
         this(ByteBuffer.wrap(data));
     }
 
-    private Dex(ByteBuffer data) throws IOException {
+    /**
+     * Creates a new dex that reads from {@code data}, its header and table of contents
+     * are parsed from {@code data} again. The content of {@code data} is not copied.
+     */
+    public Dex(ByteBuffer data) throws IOException {
         this.data = data;
         this.data.order(ByteOrder.LITTLE_ENDIAN);
         this.tableOfContents.readFrom(this);
@@ -82,7 +91,11 @@ public final class Dex {
      * Creates a new empty dex of the specified size.
      */
     public Dex(int byteCount) {
-        this.data = ByteBuffer.wrap(new byte[byteCount]);
+        this(ByteBuffer.wrap(new byte[byteCount]), byteCount);
+    }
+
+    private Dex(ByteBuffer data, int byteCount) {
+        this.data = data;
         this.data.order(ByteOrder.LITTLE_ENDIAN);
         this.tableOfContents.fileSize = byteCount;
     }
@@ -154,6 +167,51 @@ public final class Dex {
         }
     }
 
+    /**
+     * Creates a read-only dex backed by a memory-mapped buffer of {@code file},
+     * no heap copy of the dex content is made. Any attempt to write to the
+     * returned dex or its sections throws {@link java.nio.ReadOnlyBufferException}.
+     *
+     * If {@code file} is a .zip, .jar or .apk, the wrapped classes.dex must be
+     * inflated anyway, so this method falls back to {@link #Dex(File)}.
+     *
+     * The mapping cannot be released explicitly, it is only unmapped once the
+     * returned dex is garbage collected. Until then {@code file} stays locked on
+     * Windows and cannot be deleted or overwritten, so callers that need to remove
+     * {@code file} soon after should use {@link #Dex(File)} instead.
+     *
+     * @throws IOException if {@code file} cannot be mapped
+     */
+    public static Dex mapFromFile(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null.");
+        }
+
+        if (FileUtils.hasArchiveSuffix(file.getName())) {
+            return new Dex(file);
+        } else if (file.getName().endsWith(".dex")) {
+            return new Dex(FileUtils.mapFileReadOnly(file));
+        } else {
+            throw new DexException("unknown output extension: " + file);
+        }
+    }
+
+    /**
+     * Creates a new empty dex of the specified size whose content lives in
+     * {@code file} through a memory-mapped buffer instead of heap. {@code file}
+     * is created or truncated to {@code byteCount} bytes. Call {@link #flush()}
+     * once all sections are written.
+     *
+     * As with {@link #mapFromFile(File)}, {@code file} stays locked on Windows
+     * until the returned dex is garbage collected.
+     */
+    public static Dex createMapped(File file, int byteCount) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null.");
+        }
+        return new Dex(FileUtils.mapFileReadWrite(file, byteCount), byteCount);
+    }
+
     private static void checkBounds(int index, int length) {
         if (index < 0 || index >= length) {
             throw new IndexOutOfBoundsException("index:" + index + ", length=" + length);
@@ -172,11 +230,33 @@ public final class Dex {
     }
 
     public void writeTo(OutputStream out) throws IOException {
-        byte[] rawData = data.array();
-        out.write(rawData);
+        if (data.hasArray()) {
+            out.write(data.array(), data.arrayOffset(), data.capacity());
+        } else {
+            // Mapped dex has no accessible backing array.
+            byte[] buffer = new byte[8192];
+            ByteBuffer data = this.data.duplicate(); // positioned ByteBuffers aren't thread safe
+            data.limit(data.capacity());
+            data.position(0);
+            while (data.hasRemaining()) {
+                int count = Math.min(buffer.length, data.remaining());
+                data.get(buffer, 0, count);
+                out.write(buffer, 0, count);
+            }
+        }
         out.flush();
     }
 
+    /**
+     * Forces any changes made to this dex to be written to its backing file
+     * if it was created by {@link #createMapped(File, int)}, otherwise does nothing.
+     */
+    public void flush() {
+        if (data instanceof MappedByteBuffer) {
+            ((MappedByteBuffer) data).force();
+        }
+    }
+
     public void writeTo(File dexOut) throws IOException {
         OutputStream out = null;
         try {
@@ -253,6 +333,16 @@ public final class Dex {
         return nextSectionStart;
     }
 
+    /**
+     * Returns a read-only view of the bytes of this dex without copying them,
+     * which are the same bytes {@link #writeTo(OutputStream)} writes.
+     */
+    public ByteBuffer asReadOnlyBuffer() {
+        ByteBuffer result = this.data.asReadOnlyBuffer();
+        result.position(0);
+        return result;
+    }
+
     /**
      * Returns a copy of the the bytes of this dex.
      */
@@ -387,14 +477,82 @@ public final class Dex {
         return data.getInt(position);  // nameIndex
     }
 
+    /**
+     * Keep every string decoded from this dex in memory once it is touched, and look up
+     * type indices by a hash index, so that repeated {@link #strings()}, {@link #typeNames()}
+     * and {@link #findTypeIndex(String)} calls don't decode MUTF-8 data again.
+     *
+     * This is useful for dexes compared item by item, but costs heap roughly proportional
+     * to the size of string data section. See {@link #getStringCacheMemoryUsage()}.
+     */
+    public synchronized void enableStringCache() {
+        if (this.stringCache == null) {
+            this.stringCache = new String[tableOfContents.stringIds.size];
+        }
+    }
+
+    public boolean isStringCacheEnabled() {
+        return this.stringCache != null;
+    }
+
+    /**
+     * Returns estimated heap usage in bytes of decoded strings and type index kept
+     * by {@link #enableStringCache()}, or 0 if string cache is not enabled.
+     */
+    public synchronized long getStringCacheMemoryUsage() {
+        final String[] cache = this.stringCache;
+        if (cache == null) {
+            return 0;
+        }
+        // Array header plus one reference per string id.
+        long result = 16 + 4L * cache.length;
+        for (String str : cache) {
+            if (str != null) {
+                // String object with its char array.
+                result += 40 + 2L * str.length();
+            }
+        }
+        final Map<String, Integer> typeIndex = this.typeIndexByDescriptor;
+        if (typeIndex != null) {
+            // Table slot, entry and boxed index of each type, descriptors are shared with cache.
+            result += 64L * typeIndex.size();
+        }
+        return result;
+    }
+
     public int findStringIndex(String s) {
         return Collections.binarySearch(strings, s);
     }
 
     public int findTypeIndex(String descriptor) {
+        if (this.stringCache != null) {
+            Integer typeIndex = getTypeIndexByDescriptor().get(descriptor);
+            if (typeIndex != null) {
+                return typeIndex;
+            }
+            // Fall through to return the insertion point as before.
+        }
         return Collections.binarySearch(typeNames, descriptor);
     }
 
+    private Map<String, Integer> getTypeIndexByDescriptor() {
+        Map<String, Integer> result = this.typeIndexByDescriptor;
+        if (result == null) {
+            synchronized (this) {
+                result = this.typeIndexByDescriptor;
+                if (result == null) {
+                    int typeCount = tableOfContents.typeIds.size;
+                    result = new HashMap<>(typeCount * 4 / 3 + 1);
+                    for (int i = 0; i < typeCount; ++i) {
+                        result.put(typeNames.get(i), i);
+                    }
+                    this.typeIndexByDescriptor = result;
+                }
+            }
+        }
+        return result;
+    }
+
     public int findFieldIndex(FieldId fieldId) {
         return Collections.binarySearch(fieldIds, fieldId);
     }
@@ -881,8 +1039,17 @@ public final class Dex {
     private final class StringTable extends AbstractList<String> implements RandomAccess {
         @Override public String get(int index) {
             checkBounds(index, tableOfContents.stringIds.size);
+            final String[] cache = stringCache;
+            if (cache != null && cache[index] != null) {
+                return cache[index];
+            }
             int stringOff = openSection(tableOfContents.stringIds.off + (index * SizeOf.STRING_ID_ITEM)).readInt();
-            return openSection(stringOff).readStringData().value;
+            String result = openSection(stringOff).readStringData().value;
+            if (cache != null) {
+                // Racing threads decode the same immutable value, so no lock is needed here.
+                cache[index] = result;
+            }
+            return result;
         }
         @Override public int size() {
             return tableOfContents.stringIds.size;
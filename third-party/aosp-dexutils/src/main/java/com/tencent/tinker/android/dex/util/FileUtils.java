@@ -22,6 +22,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 
 /**
  * *** This file is NOT a part of AOSP. ***
@@ -110,6 +113,74 @@ public final class FileUtils {
         return baos.toByteArray();
     }
 
+    /**
+     * Maps the whole content of {@code file} into memory for reading.
+     *
+     * The mapping stays valid after this method returns even though the
+     * underlying channel is closed, and it is released when the returned
+     * buffer is garbage collected.
+     *
+     * @param file {@code non-null;} the file to map
+     * @return {@code non-null;} read-only buffer of the file content
+     * @throws IOException
+     */
+    public static MappedByteBuffer mapFileReadOnly(File file) throws IOException {
+        long longLength = file.length();
+        int length = (int) longLength;
+        if (length != longLength) {
+            throw new RuntimeException(file + ": file too long");
+        }
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "r");
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (Exception e) {
+                    // ignored.
+                }
+            }
+        }
+    }
+
+    /**
+     * Truncates {@code file} to {@code length} zero bytes and maps it into memory
+     * for reading and writing. Anything written to the returned buffer goes straight
+     * to the file without being held in heap.
+     *
+     * @param file {@code non-null;} the file to map, created if it does not exist
+     * @param length the length of the file after resizing
+     * @return {@code non-null;} writable buffer of the file content
+     * @throws IOException
+     */
+    public static MappedByteBuffer mapFileReadWrite(File file, int length) throws IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("length is negative: " + length);
+        }
+
+        RandomAccessFile raf = null;
+        try {
+            raf = new RandomAccessFile(file, "rw");
+            // Drop any previous content so that bytes never written through the buffer are zero.
+            raf.setLength(0);
+            raf.setLength(length);
+            FileChannel channel = raf.getChannel();
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (Exception e) {
+                    // ignored.
+                }
+            }
+        }
+    }
+
     /**
      * Returns true if {@code fileName} names a .zip, .jar, or .apk.
      */
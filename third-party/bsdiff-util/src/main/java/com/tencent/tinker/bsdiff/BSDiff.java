@@ -37,6 +37,14 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.zip.GZIPOutputStream;
 
 /**
@@ -51,181 +59,10 @@ public class BSDiff {
     private static final byte[] MAGIC_BYTES = new byte[]{0x4D, 0x69, 0x63,
         0x72, 0x6F, 0x4D, 0x73, 0x67};
 
-    private static void split(int[] arrayI, int[] arrayV, int start, int len, int h) {
-
-        int i, j, k, x, tmp, jj, kk;
-
-        if (len < 16) {
-            for (k = start; k < start + len; k += j) {
-                j = 1;
-                x = arrayV[arrayI[k] + h];
-                for (i = 1; k + i < start + len; i++) {
-                    if (arrayV[arrayI[k + i] + h] < x) {
-                        x = arrayV[arrayI[k + i] + h];
-                        j = 0;
-                    }
-
-                    if (arrayV[arrayI[k + i] + h] == x) {
-                        tmp = arrayI[k + j];
-                        arrayI[k + j] = arrayI[k + i];
-                        arrayI[k + i] = tmp;
-                        j++;
-                    }
-
-                }
-
-                for (i = 0; i < j; i++) {
-                    arrayV[arrayI[k + i]] = k + j - 1;
-                }
-                if (j == 1) {
-                    arrayI[k] = -1;
-                }
-            }
-
-            return;
-        }
-
-        x = arrayV[arrayI[start + len / 2] + h];
-        jj = 0;
-        kk = 0;
-        for (i = start; i < start + len; i++) {
-            if (arrayV[arrayI[i] + h] < x) {
-                jj++;
-            }
-            if (arrayV[arrayI[i] + h] == x) {
-                kk++;
-            }
-        }
-
-        jj += start;
-        kk += jj;
-
-        i = start;
-        j = 0;
-        k = 0;
-        while (i < jj) {
-            if (arrayV[arrayI[i] + h] < x) {
-                i++;
-            } else if (arrayV[arrayI[i] + h] == x) {
-                tmp = arrayI[i];
-                arrayI[i] = arrayI[jj + j];
-                arrayI[jj + j] = tmp;
-                j++;
-            } else {
-                tmp = arrayI[i];
-                arrayI[i] = arrayI[kk + k];
-                arrayI[kk + k] = tmp;
-                k++;
-            }
-
-        }
-
-        while (jj + j < kk) {
-            if (arrayV[arrayI[jj + j] + h] == x) {
-                j++;
-            } else {
-                tmp = arrayI[jj + j];
-                arrayI[jj + j] = arrayI[kk + k];
-                arrayI[kk + k] = tmp;
-                k++;
-            }
-
-        }
-
-        if (jj > start) {
-            split(arrayI, arrayV, start, jj - start, h);
-        }
-
-        for (i = 0; i < kk - jj; i++) {
-            arrayV[arrayI[jj + i]] = kk - 1;
-        }
-
-        if (jj == kk - 1) {
-            arrayI[jj] = -1;
-        }
-
-        if (start + len > kk) {
-            split(arrayI, arrayV, kk, start + len - kk, h);
-        }
-
-    }
-
     /**
-     * Fast suffix sporting. Larsson and Sadakane's qsufsort algorithm. See
-     * http://www.cs.lth.se/Research/Algorithms/Papers/jesper5.ps
+     * Block size of block-split mode used by {@link #bsdiff(File, File, File, int)}.
      */
-    private static void qsufsort(int[] arrayI, int[] arrayV, byte[] oldBuf, int oldsize) {
-
-        // int oldsize = oldBuf.length;
-        int[] buckets = new int[256];
-
-        // No need to do that in Java.
-        // for ( int i = 0; i < 256; i++ ) {
-        // buckets[i] = 0;
-        // }
-
-        for (int i = 0; i < oldsize; i++) {
-            buckets[oldBuf[i] & 0xff]++;
-        }
-
-        for (int i = 1; i < 256; i++) {
-            buckets[i] += buckets[i - 1];
-        }
-
-        for (int i = 255; i > 0; i--) {
-            buckets[i] = buckets[i - 1];
-        }
-
-        buckets[0] = 0;
-
-        for (int i = 0; i < oldsize; i++) {
-            arrayI[++buckets[oldBuf[i] & 0xff]] = i;
-        }
-
-        arrayI[0] = oldsize;
-        for (int i = 0; i < oldsize; i++) {
-            arrayV[i] = buckets[oldBuf[i] & 0xff];
-        }
-        arrayV[oldsize] = 0;
-
-        for (int i = 1; i < 256; i++) {
-            if (buckets[i] == buckets[i - 1] + 1) {
-                arrayI[buckets[i]] = -1;
-            }
-        }
-
-        arrayI[0] = -1;
-
-        for (int h = 1; arrayI[0] != -(oldsize + 1); h += h) {
-            int len = 0;
-            int i;
-            for (i = 0; i < oldsize + 1;) {
-                if (arrayI[i] < 0) {
-                    len -= arrayI[i];
-                    i -= arrayI[i];
-                } else {
-                    // if(len) I[i-len]=-len;
-                    if (len != 0) {
-                        arrayI[i - len] = -len;
-                    }
-                    len = arrayV[arrayI[i]] + 1 - i;
-                    split(arrayI, arrayV, i, len, h);
-                    i += len;
-                    len = 0;
-                }
-
-            }
-
-            if (len != 0) {
-                arrayI[i - len] = -len;
-            }
-        }
-
-        for (int i = 0; i < oldsize + 1; i++) {
-            arrayI[arrayV[i]] = i;
-        }
-    }
-
+    public static final int DEFAULT_BLOCK_SIZE = 4 * 1024 * 1024;
 
     /**
      * 分别将 oldBufd[start..oldSize] 和 oldBufd[end..oldSize] 与  newBuf[newBufOffset...newSize] 进行匹配，
@@ -294,13 +131,43 @@ public class BSDiff {
 
 
     public static void bsdiff(File oldFile, File newFile, File diffFile) throws IOException {
+        bsdiff(oldFile, newFile, diffFile, 1);
+    }
+
+    /**
+     * Same as {@link #bsdiff(File, File, File)}, except that new files larger than twice of
+     * {@link #DEFAULT_BLOCK_SIZE} are diffed in block-split mode on {@code threadCount} threads
+     * when {@code threadCount} is larger than 1.
+     *
+     * @see #bsdiff(byte[], int, byte[], int, int, int)
+     */
+    public static void bsdiff(File oldFile, File newFile, File diffFile, int threadCount) throws IOException {
+        bsdiff(oldFile, newFile, diffFile, threadCount > 1, threadCount);
+    }
+
+    /**
+     * Same as {@link #bsdiff(File, File, File)}, except that new files larger than twice of
+     * {@link #DEFAULT_BLOCK_SIZE} are diffed in block-split mode on {@code threadCount} threads
+     * when {@code blockSplit} is true. Callers already running on a thread pool may pass 1 as
+     * {@code threadCount} to get the same diff without starting more threads.
+     *
+     * @see #bsdiff(byte[], int, byte[], int, int, int)
+     */
+    public static void bsdiff(File oldFile, File newFile, File diffFile, boolean blockSplit, int threadCount) throws IOException {
         InputStream oldInputStream = new BufferedInputStream(new FileInputStream(oldFile));
         InputStream newInputStream = new BufferedInputStream(new FileInputStream(newFile));
         OutputStream diffOutputStream = new FileOutputStream(diffFile);
         try {
-            byte[] diffBytes = bsdiff(oldInputStream, (int) oldFile.length(), newInputStream, (int) newFile.length());
+            int oldsize = (int) oldFile.length();
+            int newsize = (int) newFile.length();
+            byte[] oldBuf = readAndClose(oldInputStream, oldsize);
+            byte[] newBuf = readAndClose(newInputStream, newsize);
+            int blockSize = (blockSplit && newsize > 2 * DEFAULT_BLOCK_SIZE) ? DEFAULT_BLOCK_SIZE : 0;
+            byte[] diffBytes = bsdiff(oldBuf, oldsize, newBuf, newsize, blockSize, threadCount);
             diffOutputStream.write(diffBytes);
         } finally {
+            oldInputStream.close();
+            newInputStream.close();
             diffOutputStream.close();
         }
     }
@@ -308,31 +175,40 @@ public class BSDiff {
 
     public static byte[] bsdiff(InputStream oldInputStream, int oldsize, InputStream newInputStream, int newsize) throws IOException {
 
-        byte[] oldBuf = new byte[oldsize];
-
-        BSUtil.readFromStream(oldInputStream, oldBuf, 0, oldsize);
-        oldInputStream.close();
-
-        byte[] newBuf = new byte[newsize];
-        BSUtil.readFromStream(newInputStream, newBuf, 0, newsize);
-        newInputStream.close();
+        byte[] oldBuf = readAndClose(oldInputStream, oldsize);
+        byte[] newBuf = readAndClose(newInputStream, newsize);
 
         return bsdiff(oldBuf, oldsize, newBuf, newsize);
     }
 
 
     public static byte[] bsdiff(byte[] oldBuf, int oldsize, byte[] newBuf, int newsize) throws IOException {
+        return bsdiff(oldBuf, oldsize, newBuf, newsize, 0, 1);
+    }
 
-        int[] arrayI = new int[oldsize + 1];
-        qsufsort(arrayI, new int[oldsize + 1], oldBuf, oldsize);
-
-        // diff block
-        int diffBLockLen = 0;
-        byte[] diffBlock = new byte[newsize];
-
-        // extra block
-        int extraBlockLen = 0;
-        byte[] extraBlock = new byte[newsize];
+    /**
+     * Diff with optional block-split mode.
+     *
+     * If {@code blockSize} is larger than 0 and smaller than {@code newsize}, newBuf is split into
+     * blocks of {@code blockSize} bytes and each block is only matched against the part of oldBuf at
+     * the same relative position, extended by half a block on both sides. Blocks are diffed on
+     * {@code threadCount} threads. Working memory of each block being diffed is bounded by the block
+     * size instead of the old file size, and a finished block only keeps its diff and extra data
+     * trimmed to their actual length until they are written. Matches between far away blocks are lost,
+     * so the diff may be larger and is different from the one of the default mode, but it is applied by
+     * {@link BSPatch} as usual.
+     *
+     * Otherwise the whole newBuf is matched against the whole oldBuf, the same as before.
+     */
+    public static byte[] bsdiff(byte[] oldBuf, int oldsize, byte[] newBuf, int newsize, int blockSize, int threadCount) throws IOException {
+        DiffBlock[] blocks;
+        if (blockSize <= 0 || newsize <= blockSize || oldsize == 0) {
+            DiffBlock block = new DiffBlock(0, oldsize, 0, newsize);
+            computeBlock(SuffixSort.sais(oldBuf, oldsize), oldBuf, oldsize, newBuf, block);
+            blocks = new DiffBlock[]{block};
+        } else {
+            blocks = diffBlocks(oldBuf, oldsize, newBuf, newsize, blockSize, threadCount);
+        }
 
         /*
          * Diff file is composed as follows:
@@ -367,15 +243,152 @@ public class BSDiff {
         GZIPOutputStream bzip2Out = new GZIPOutputStream(diffOut);
         DataOutputStream dataOut = new DataOutputStream(bzip2Out);
 
+        for (int i = 0; i < blocks.length; i++) {
+            DiffBlock block = blocks[i];
+            if (i + 1 < blocks.length) {
+                // Seek to where the next block starts in old file by adjusting the last ctrl record.
+                DiffBlock nextBlock = blocks[i + 1];
+                block.ctrl[block.ctrlLen - 1] += (nextBlock.oldStart + nextBlock.startOldPos) - (block.oldStart + block.endOldPos);
+            }
+            for (int j = 0; j < block.ctrlLen; j++) {
+                dataOut.writeInt(block.ctrl[j]);
+            }
+        }
+
+        dataOut.flush();
+        bzip2Out.finish();
+
+        // now compressed ctrlBlockLen
+        int ctrlBlockLen = diffOut.size() - BSUtil.HEADER_SIZE;
+
+        // GZIPOutputStream gzOut;
+
+        /*
+         * Write diff block
+         */
+        bzip2Out = new GZIPOutputStream(diffOut);
+        for (DiffBlock block : blocks) {
+            bzip2Out.write(block.diff, 0, block.diffLen);
+            block.diff = null;
+        }
+        bzip2Out.finish();
+        bzip2Out.flush();
+        int diffBlockLen = diffOut.size() - ctrlBlockLen - BSUtil.HEADER_SIZE;
+
+        /*
+         * Write extra block
+         */
+        bzip2Out = new GZIPOutputStream(diffOut);
+        for (DiffBlock block : blocks) {
+            bzip2Out.write(block.extra, 0, block.extraLen);
+            block.extra = null;
+        }
+        bzip2Out.finish();
+        bzip2Out.flush();
+
+        diffOut.close();
+
+        /*
+         * Write missing header info.
+         */
+        ByteArrayOutputStream byteHeaderOut = new ByteArrayOutputStream(BSUtil.HEADER_SIZE);
+        DataOutputStream headerOut = new DataOutputStream(byteHeaderOut);
+        headerOut.write(MAGIC_BYTES);
+        headerOut.writeLong(ctrlBlockLen); // place holder for ctrlBlockLen
+        headerOut.writeLong(diffBlockLen); // place holder for diffBlockLen
+        headerOut.writeLong(newsize);
+        headerOut.close();
+
+        // Copy header information into the diff
+        byte[] diffBytes = byteOut.toByteArray();
+        byte[] headerBytes = byteHeaderOut.toByteArray();
+
+        System.arraycopy(headerBytes, 0, diffBytes, 0, headerBytes.length);
+
+        return diffBytes;
+    }
+
+    private static DiffBlock[] diffBlocks(final byte[] oldBuf, final int oldsize, final byte[] newBuf, int newsize,
+                                          int blockSize, int threadCount) throws IOException {
+        final DiffBlock[] blocks = new DiffBlock[(int) (((long) newsize + blockSize - 1) / blockSize)];
+        for (int i = 0; i < blocks.length; i++) {
+            int newStart = i * blockSize;
+            int newEnd = (int) Math.min((long) newStart + blockSize, newsize);
+            int alignedOldStart = (int) ((long) newStart * oldsize / newsize);
+            int alignedOldEnd = (int) ((long) newEnd * oldsize / newsize);
+            int oldStart = Math.max(0, alignedOldStart - blockSize / 2);
+            int oldEnd = (int) Math.min((long) alignedOldEnd + blockSize / 2, oldsize);
+            blocks[i] = new DiffBlock(oldStart, oldEnd - oldStart, newStart, newEnd);
+            blocks[i].startOldPos = alignedOldStart - oldStart;
+        }
+
+        if (threadCount <= 1) {
+            for (DiffBlock block : blocks) {
+                diffBlockInWindow(oldBuf, newBuf, block);
+            }
+            return blocks;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, blocks.length));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(blocks.length);
+            for (final DiffBlock block : blocks) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        diffBlockInWindow(oldBuf, newBuf, block);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    throw new IOException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        return blocks;
+    }
+
+    private static void diffBlockInWindow(byte[] oldBuf, byte[] newBuf, DiffBlock block) {
+        byte[] oldWindow = Arrays.copyOfRange(oldBuf, block.oldStart, block.oldStart + block.oldLen);
+        computeBlock(SuffixSort.sais(oldWindow, block.oldLen), oldWindow, block.oldLen, newBuf, block);
+        // Many blocks may be waiting to be written, don't keep their unused capacity.
+        block.diff = Arrays.copyOf(block.diff, block.diffLen);
+        block.extra = Arrays.copyOf(block.extra, block.extraLen);
+    }
+
+    /**
+     * Match newBuf[block.newStart...block.newEnd] against oldBuf[0...oldsize] and record ctrl, diff
+     * and extra data into {@code block}. Positions in oldBuf are relative to {@code block.oldStart}.
+     */
+    private static void computeBlock(int[] arrayI, byte[] oldBuf, int oldsize, byte[] newBuf, DiffBlock block) {
+        final int newsize = block.newEnd;
+        final byte[] diffBlock = new byte[block.newEnd - block.newStart];
+        final byte[] extraBlock = new byte[block.newEnd - block.newStart];
+        int diffBLockLen = 0;
+        int extraBlockLen = 0;
+
         int oldscore, scsc;
 
         int overlap, ss, lens;
         int i;
-        int scan = 0;
+        int scan = block.newStart;
         int matchLen = 0;
-        int lastscan = 0;
-        int lastpos = 0;
-        int lastoffset = 0;
+        int lastscan = block.newStart;
+        int lastpos = block.startOldPos;
+        int lastoffset = block.startOldPos - block.newStart;
 
         IntByRef pos = new IntByRef();
         // int ctrlBlockLen = 0;
@@ -403,7 +416,6 @@ public class BSDiff {
             }
 
             if ((matchLen != oldscore) || (scan == newsize)) {
-
                 int equalNum = 0;
                 int sf = 0;
                 int lenFromOld = 0;
@@ -468,9 +480,9 @@ public class BSDiff {
                 extraBlockLen += (scan - lenb) - (lastscan + lenFromOld);
 
                 // Write control block entry (3 x int)
-                dataOut.writeInt(lenFromOld);  // oldBuf
-                dataOut.writeInt((scan - lenb) - (lastscan + lenFromOld));  // diffBufextraBlock
-                dataOut.writeInt((pos.value - lenb) - (lastpos + lenFromOld));  // oldBuf
+                block.addCtrl(lenFromOld);  // oldBuf
+                block.addCtrl((scan - lenb) - (lastscan + lenFromOld));  // diffBufextraBlock
+                block.addCtrl((pos.value - lenb) - (lastpos + lenFromOld));  // oldBuf
 
                 lastscan = scan - lenb;
                 lastpos = pos.value - lenb;
@@ -478,52 +490,21 @@ public class BSDiff {
             } // end if
         } // end while loop
 
-        dataOut.flush();
-        bzip2Out.finish();
-
-        // now compressed ctrlBlockLen
-        int ctrlBlockLen = diffOut.size() - BSUtil.HEADER_SIZE;
-
-        // GZIPOutputStream gzOut;
-
-        /*
-         * Write diff block
-         */
-        bzip2Out = new GZIPOutputStream(diffOut);
-        bzip2Out.write(diffBlock, 0, diffBLockLen);
-        bzip2Out.finish();
-        bzip2Out.flush();
-        int diffBlockLen = diffOut.size() - ctrlBlockLen - BSUtil.HEADER_SIZE;
-        // System.err.println( "Diff: diffBlockLen=" + diffBlockLen );
-
-        /*
-         * Write extra block
-         */
-        bzip2Out = new GZIPOutputStream(diffOut);
-        bzip2Out.write(extraBlock, 0, extraBlockLen);
-        bzip2Out.finish();
-        bzip2Out.flush();
-
-        diffOut.close();
-
-        /*
-         * Write missing header info.
-         */
-        ByteArrayOutputStream byteHeaderOut = new ByteArrayOutputStream(BSUtil.HEADER_SIZE);
-        DataOutputStream headerOut = new DataOutputStream(byteHeaderOut);
-        headerOut.write(MAGIC_BYTES);
-        headerOut.writeLong(ctrlBlockLen); // place holder for ctrlBlockLen
-        headerOut.writeLong(diffBlockLen); // place holder for diffBlockLen
-        headerOut.writeLong(newsize);
-        headerOut.close();
-
-        // Copy header information into the diff
-        byte[] diffBytes = byteOut.toByteArray();
-        byte[] headerBytes = byteHeaderOut.toByteArray();
-
-        System.arraycopy(headerBytes, 0, diffBytes, 0, headerBytes.length);
+        block.diff = diffBlock;
+        block.diffLen = diffBLockLen;
+        block.extra = extraBlock;
+        block.extraLen = extraBlockLen;
+        block.endOldPos = lastpos;
+    }
 
-        return diffBytes;
+    private static byte[] readAndClose(InputStream in, int size) throws IOException {
+        byte[] buf = new byte[size];
+        try {
+            BSUtil.readFromStream(in, buf, 0, size);
+        } finally {
+            in.close();
+        }
+        return buf;
     }
 
 //    /**
@@ -547,4 +528,38 @@ public class BSDiff {
     private static class IntByRef {
         private int value;
     }
+
+    /**
+     * Diff result of newBuf[newStart...newEnd] against oldBuf[oldStart...oldStart + oldLen].
+     */
+    private static final class DiffBlock {
+        private final int oldStart;
+        private final int oldLen;
+        private final int newStart;
+        private final int newEnd;
+        // Allocated when this block is diffed, and released once written.
+        private byte[] diff;
+        private byte[] extra;
+        private int[] ctrl = new int[3 * 16];
+        private int ctrlLen;
+        private int diffLen;
+        private int extraLen;
+        // Old file positions relative to oldStart before and after this block is patched.
+        private int startOldPos;
+        private int endOldPos;
+
+        DiffBlock(int oldStart, int oldLen, int newStart, int newEnd) {
+            this.oldStart = oldStart;
+            this.oldLen = oldLen;
+            this.newStart = newStart;
+            this.newEnd = newEnd;
+        }
+
+        void addCtrl(int value) {
+            if (ctrlLen == ctrl.length) {
+                ctrl = Arrays.copyOf(ctrl, ctrlLen * 2);
+            }
+            ctrl[ctrlLen++] = value;
+        }
+    }
 }
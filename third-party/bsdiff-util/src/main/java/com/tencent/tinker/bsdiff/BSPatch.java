@@ -39,6 +39,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.zip.GZIPInputStream;
 
 
@@ -210,6 +213,148 @@ public class BSPatch {
         return RETURN_SUCCESS;
     }
 
+    /**
+     * Streaming patch method for large files.
+     * Old file is read through a memory-mapped buffer, ctrl, diff and extra blocks are read as
+     * streams from their own positions of diffFile's channel and newFile is written through one
+     * reusable work buffer, so heap usage stays flat no matter how large the files are.
+     * Memory size = work buffer + inflater buffers
+     */
+    public static int patchStreaming(File oldFile, File newFile, File diffFile) throws IOException {
+        if (oldFile == null || !oldFile.exists()) {
+            return RETURN_OLD_FILE_ERR;
+        }
+        if (newFile == null) {
+            return RETURN_NEW_FILE_ERR;
+        }
+        if (diffFile == null || diffFile.length() <= 0) {
+            return RETURN_DIFF_FILE_ERR;
+        }
+
+        RandomAccessFile oldRaf = new RandomAccessFile(oldFile, "r");
+        RandomAccessFile diffRaf = null;
+        FileOutputStream newOutputStream = null;
+        try {
+            FileChannel oldChannel = oldRaf.getChannel();
+            int oldsize = (int) oldChannel.size();
+            MappedByteBuffer oldBuf = oldChannel.map(FileChannel.MapMode.READ_ONLY, 0, oldsize);
+
+            diffRaf = new RandomAccessFile(diffFile, "r");
+            FileChannel diffChannel = diffRaf.getChannel();
+            long diffSize = diffChannel.size();
+            if (diffSize < BSUtil.HEADER_SIZE) {
+                throw new IOException("Corrupt by wrong patch file.");
+            }
+            ByteBuffer header = ByteBuffer.allocate(BSUtil.HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (diffChannel.read(header, header.position()) < 0) {
+                    throw new IOException("Corrupt by wrong patch file.");
+                }
+            }
+            header.position(8); // skip headerMagic at header offset 0 (length 8 bytes)
+            long ctrlBlockLen = header.getLong(); // ctrlBlockLen after gzip compression at heater offset 8 (length 8 bytes)
+            long diffBlockLen = header.getLong(); // diffBlockLen after gzip compression at header offset 16 (length 8 bytes)
+            int newsize = (int) header.getLong(); // size of new file at header offset 24 (length 8 bytes)
+            long diffBlockPos = BSUtil.HEADER_SIZE + ctrlBlockLen;
+            long extraBlockPos = diffBlockPos + diffBlockLen;
+            if (ctrlBlockLen < 0 || diffBlockLen < 0 || newsize < 0 || extraBlockPos > diffSize) {
+                throw new IOException("Corrupt by wrong patch file.");
+            }
+
+            DataInputStream ctrlBlockIn = new DataInputStream(new GZIPInputStream(
+                new ChannelBlockInputStream(diffChannel, BSUtil.HEADER_SIZE, diffBlockPos), BSUtil.BUFFER_SIZE));
+            InputStream diffBlockIn = new GZIPInputStream(
+                new ChannelBlockInputStream(diffChannel, diffBlockPos, extraBlockPos), BSUtil.BUFFER_SIZE);
+            InputStream extraBlockIn = new GZIPInputStream(
+                new ChannelBlockInputStream(diffChannel, extraBlockPos, diffSize), BSUtil.BUFFER_SIZE);
+
+            newOutputStream = new FileOutputStream(newFile);
+            FileChannel newChannel = newOutputStream.getChannel();
+            // Patched bytes are built in this buffer and flushed to newChannel when it is full.
+            byte[] work = new byte[BSUtil.BUFFER_SIZE * 8];
+            ByteBuffer workBuffer = ByteBuffer.wrap(work);
+            int workLen = 0;
+
+            int oldpos = 0;
+            int newpos = 0;
+            int[] ctrl = new int[3];
+
+            while (newpos < newsize) {
+
+                for (int i = 0; i <= 2; i++) {
+                    ctrl[i] = ctrlBlockIn.readInt();
+                }
+
+                if (ctrl[0] < 0 || ctrl[1] < 0 || newpos + ctrl[0] > newsize) {
+                    throw new IOException("Corrupt by wrong patch file.");
+                }
+
+                // Add ctrl[0] bytes from diffBlock stream to old bytes
+                for (int remaining = ctrl[0]; remaining > 0;) {
+                    if (workLen == work.length) {
+                        writeFully(newChannel, workBuffer, workLen);
+                        workLen = 0;
+                    }
+                    int count = Math.min(remaining, work.length - workLen);
+                    if (!BSUtil.readFromStream(diffBlockIn, work, workLen, count)) {
+                        throw new IOException("Corrupt by wrong patch file.");
+                    }
+                    for (int i = 0; i < count; i++) {
+                        if ((oldpos + i >= 0) && (oldpos + i < oldsize)) {
+                            work[workLen + i] += oldBuf.get(oldpos + i);
+                        }
+                    }
+                    workLen += count;
+                    oldpos += count;
+                    remaining -= count;
+                }
+                newpos += ctrl[0];
+
+                if (newpos + ctrl[1] > newsize) {
+                    throw new IOException("Corrupt by wrong patch file.");
+                }
+
+                // Copy ctrl[1] bytes from extraBlock stream
+                for (int remaining = ctrl[1]; remaining > 0;) {
+                    if (workLen == work.length) {
+                        writeFully(newChannel, workBuffer, workLen);
+                        workLen = 0;
+                    }
+                    int count = Math.min(remaining, work.length - workLen);
+                    if (!BSUtil.readFromStream(extraBlockIn, work, workLen, count)) {
+                        throw new IOException("Corrupt by wrong patch file.");
+                    }
+                    workLen += count;
+                    remaining -= count;
+                }
+                newpos += ctrl[1];
+                oldpos += ctrl[2];
+            }
+            writeFully(newChannel, workBuffer, workLen);
+
+            ctrlBlockIn.close();
+            diffBlockIn.close();
+            extraBlockIn.close();
+        } finally {
+            oldRaf.close();
+            if (diffRaf != null) {
+                diffRaf.close();
+            }
+            if (newOutputStream != null) {
+                newOutputStream.close();
+            }
+        }
+        return RETURN_SUCCESS;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        buffer.clear();
+        buffer.limit(length);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
     /**
      * This patch method is fast ,but using more memory.
      * Memory size = oldBuf + diffBuf + newBuf
@@ -381,4 +526,62 @@ public class BSPatch {
         return newBuf;
     }
 
-}
\ No newline at end of file
+    /**
+     * Reads bytes of [position, end) from a file channel by positional reads, which do not
+     * touch the position of the channel, so several of them can share one channel.
+     */
+    private static final class ChannelBlockInputStream extends InputStream {
+        private final FileChannel channel;
+        private final long        end;
+        private final byte[]      singleByte = new byte[1];
+        private long              position;
+        private byte[]            lastArray;
+        private ByteBuffer        lastBuffer;
+
+        ChannelBlockInputStream(FileChannel channel, long position, long end) {
+            this.channel = channel;
+            this.position = position;
+            this.end = end;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return read(singleByte, 0, 1) < 0 ? -1 : (singleByte[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (position >= end) {
+                return -1;
+            }
+            // Callers like GZIPInputStream always read into the same array, wrap it only once.
+            if (b != lastArray) {
+                lastArray = b;
+                lastBuffer = ByteBuffer.wrap(b);
+            }
+            lastBuffer.clear();
+            lastBuffer.position(off);
+            lastBuffer.limit(off + (int) Math.min(len, end - position));
+            int count = channel.read(lastBuffer, position);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long count = Math.max(0, Math.min(n, end - position));
+            position += count;
+            return count;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(Integer.MAX_VALUE, end - position);
+        }
+    }
+}
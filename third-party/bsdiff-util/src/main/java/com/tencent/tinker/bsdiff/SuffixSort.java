@@ -0,0 +1,418 @@
+/*
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company.
+ * Copyright (c) 2005, Joe Desbonnet, (jdesbonnet@gmail.com)
+ * Copyright 2003-2005 Colin Percival
+ * All rights reserved
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted providing that the following conditions
+ * are met:
+ * 1. Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ * 2. Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in the
+ *    documentation and/or other materials provided with the distribution.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE AUTHOR ``AS IS'' AND ANY EXPRESS OR
+ * IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED.  IN NO EVENT SHALL THE AUTHOR BE LIABLE FOR ANY
+ * DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL
+ * DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS
+ * OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION)
+ * HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT,
+ * STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING
+ * IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.tencent.tinker.bsdiff;
+
+import java.util.Arrays;
+
+/**
+ * Suffix array construction used by {@link BSDiff}.
+ *
+ * Both algorithms here return the same array: the suffix array of {@code buf[0...size]}
+ * including the empty suffix, which means result[0] is always {@code size}. Since a suffix
+ * array is unique, diffs generated with either of them are exactly the same.
+ *
+ * {@link #qsufsort(byte[], int)} needs two int arrays of {@code size + 1} entries while
+ * {@link #sais(byte[], int)} needs one int array of {@code size + 1} entries plus a bit set
+ * of {@code size} bits and some buckets, so it is the default one.
+ */
+public final class SuffixSort {
+
+    private SuffixSort() {
+    }
+
+    /**
+     * Fast suffix sorting. Larsson and Sadakane's qsufsort algorithm. See
+     * http://www.cs.lth.se/Research/Algorithms/Papers/jesper5.ps
+     */
+    public static int[] qsufsort(byte[] buf, int size) {
+        int[] arrayI = new int[size + 1];
+        qsufsort(arrayI, new int[size + 1], buf, size);
+        return arrayI;
+    }
+
+    /**
+     * Suffix sorting by induced sorting. Nong, Zhang and Chan's SA-IS algorithm. See
+     * https://doi.org/10.1109/DCC.2009.42
+     *
+     * The reduced problem of each recursion level is stored in the unused part of the
+     * result array, so no extra memory of {@code size} ints is needed.
+     */
+    public static int[] sais(byte[] buf, int size) {
+        int[] sa = new int[size + 1];
+        if (size > 0) {
+            sais(new ByteText(buf), sa, size, 256);
+            System.arraycopy(sa, 0, sa, 1, size);
+        }
+        sa[0] = size;
+        return sa;
+    }
+
+    private static void split(int[] arrayI, int[] arrayV, int start, int len, int h) {
+
+        int i, j, k, x, tmp, jj, kk;
+
+        if (len < 16) {
+            for (k = start; k < start + len; k += j) {
+                j = 1;
+                x = arrayV[arrayI[k] + h];
+                for (i = 1; k + i < start + len; i++) {
+                    if (arrayV[arrayI[k + i] + h] < x) {
+                        x = arrayV[arrayI[k + i] + h];
+                        j = 0;
+                    }
+
+                    if (arrayV[arrayI[k + i] + h] == x) {
+                        tmp = arrayI[k + j];
+                        arrayI[k + j] = arrayI[k + i];
+                        arrayI[k + i] = tmp;
+                        j++;
+                    }
+
+                }
+
+                for (i = 0; i < j; i++) {
+                    arrayV[arrayI[k + i]] = k + j - 1;
+                }
+                if (j == 1) {
+                    arrayI[k] = -1;
+                }
+            }
+
+            return;
+        }
+
+        x = arrayV[arrayI[start + len / 2] + h];
+        jj = 0;
+        kk = 0;
+        for (i = start; i < start + len; i++) {
+            if (arrayV[arrayI[i] + h] < x) {
+                jj++;
+            }
+            if (arrayV[arrayI[i] + h] == x) {
+                kk++;
+            }
+        }
+
+        jj += start;
+        kk += jj;
+
+        i = start;
+        j = 0;
+        k = 0;
+        while (i < jj) {
+            if (arrayV[arrayI[i] + h] < x) {
+                i++;
+            } else if (arrayV[arrayI[i] + h] == x) {
+                tmp = arrayI[i];
+                arrayI[i] = arrayI[jj + j];
+                arrayI[jj + j] = tmp;
+                j++;
+            } else {
+                tmp = arrayI[i];
+                arrayI[i] = arrayI[kk + k];
+                arrayI[kk + k] = tmp;
+                k++;
+            }
+
+        }
+
+        while (jj + j < kk) {
+            if (arrayV[arrayI[jj + j] + h] == x) {
+                j++;
+            } else {
+                tmp = arrayI[jj + j];
+                arrayI[jj + j] = arrayI[kk + k];
+                arrayI[kk + k] = tmp;
+                k++;
+            }
+
+        }
+
+        if (jj > start) {
+            split(arrayI, arrayV, start, jj - start, h);
+        }
+
+        for (i = 0; i < kk - jj; i++) {
+            arrayV[arrayI[jj + i]] = kk - 1;
+        }
+
+        if (jj == kk - 1) {
+            arrayI[jj] = -1;
+        }
+
+        if (start + len > kk) {
+            split(arrayI, arrayV, kk, start + len - kk, h);
+        }
+
+    }
+
+    private static void qsufsort(int[] arrayI, int[] arrayV, byte[] oldBuf, int oldsize) {
+
+        // int oldsize = oldBuf.length;
+        int[] buckets = new int[256];
+
+        // No need to do that in Java.
+        // for ( int i = 0; i < 256; i++ ) {
+        // buckets[i] = 0;
+        // }
+
+        for (int i = 0; i < oldsize; i++) {
+            buckets[oldBuf[i] & 0xff]++;
+        }
+
+        for (int i = 1; i < 256; i++) {
+            buckets[i] += buckets[i - 1];
+        }
+
+        for (int i = 255; i > 0; i--) {
+            buckets[i] = buckets[i - 1];
+        }
+
+        buckets[0] = 0;
+
+        for (int i = 0; i < oldsize; i++) {
+            arrayI[++buckets[oldBuf[i] & 0xff]] = i;
+        }
+
+        arrayI[0] = oldsize;
+        for (int i = 0; i < oldsize; i++) {
+            arrayV[i] = buckets[oldBuf[i] & 0xff];
+        }
+        arrayV[oldsize] = 0;
+
+        for (int i = 1; i < 256; i++) {
+            if (buckets[i] == buckets[i - 1] + 1) {
+                arrayI[buckets[i]] = -1;
+            }
+        }
+
+        arrayI[0] = -1;
+
+        for (int h = 1; arrayI[0] != -(oldsize + 1); h += h) {
+            int len = 0;
+            int i;
+            for (i = 0; i < oldsize + 1;) {
+                if (arrayI[i] < 0) {
+                    len -= arrayI[i];
+                    i -= arrayI[i];
+                } else {
+                    // if(len) I[i-len]=-len;
+                    if (len != 0) {
+                        arrayI[i - len] = -len;
+                    }
+                    len = arrayV[arrayI[i]] + 1 - i;
+                    split(arrayI, arrayV, i, len, h);
+                    i += len;
+                    len = 0;
+                }
+
+            }
+
+            if (len != 0) {
+                arrayI[i - len] = -len;
+            }
+        }
+
+        for (int i = 0; i < oldsize + 1; i++) {
+            arrayI[arrayV[i]] = i;
+        }
+    }
+
+
+
+    /**
+     * Sorts all suffixes of {@code text[0...n]} into {@code sa[0...n]}. A virtual sentinel which
+     * is smaller than any character is assumed to be at {@code text[n]}.
+     */
+    private static void sais(Text text, int[] sa, int n, int alphabetSize) {
+        // Bit i is set if suffix i is S-type. Suffix n - 1 is always L-type because of the sentinel.
+        long[] types = new long[(n + 63) >>> 6];
+        int next = text.get(n - 1);
+        boolean nextIsS = false;
+        for (int i = n - 2; i >= 0; --i) {
+            int curr = text.get(i);
+            boolean currIsS = curr < next || (curr == next && nextIsS);
+            if (currIsS) {
+                types[i >>> 6] |= 1L << i;
+            }
+            next = curr;
+            nextIsS = currIsS;
+        }
+
+        int[] buckets = new int[alphabetSize];
+
+        // Stage 1: sort all LMS-substrings.
+        Arrays.fill(sa, 0, n, -1);
+        getBuckets(text, n, buckets, true);
+        for (int i = 1; i < n; ++i) {
+            if (isLMS(types, i)) {
+                sa[--buckets[text.get(i)]] = i;
+            }
+        }
+        induce(text, sa, n, buckets, types);
+
+        int lmsCount = 0;
+        for (int i = 0; i < n; ++i) {
+            if (isLMS(types, sa[i])) {
+                sa[lmsCount++] = sa[i];
+            }
+        }
+
+        // Name LMS-substrings. LMS positions are at least 2 apart, so pos / 2 never conflicts.
+        Arrays.fill(sa, lmsCount, n, -1);
+        int nameCount = 0;
+        int prev = -1;
+        for (int i = 0; i < lmsCount; ++i) {
+            int pos = sa[i];
+            boolean isDiff = false;
+            for (int d = 0; ; ++d) {
+                if (prev == -1 || pos + d == n || prev + d == n
+                    || text.get(pos + d) != text.get(prev + d) || isS(types, pos + d) != isS(types, prev + d)) {
+                    isDiff = true;
+                    break;
+                }
+                if (d > 0 && isLMS(types, pos + d)) {
+                    break;
+                }
+            }
+            if (isDiff) {
+                ++nameCount;
+                prev = pos;
+            }
+            sa[lmsCount + (pos >>> 1)] = nameCount - 1;
+        }
+        for (int i = n - 1, j = n - 1; i >= lmsCount; --i) {
+            if (sa[i] >= 0) {
+                sa[j--] = sa[i];
+            }
+        }
+
+        // Stage 2: sort the reduced string stored in sa[n - lmsCount...n], result goes to sa[0...lmsCount].
+        int reducedOffset = n - lmsCount;
+        if (nameCount < lmsCount) {
+            sais(new IntText(sa, reducedOffset), sa, lmsCount, nameCount);
+        } else {
+            for (int i = 0; i < lmsCount; ++i) {
+                sa[sa[reducedOffset + i]] = i;
+            }
+        }
+
+        // Stage 3: induce the result from sorted LMS-suffixes.
+        for (int i = 1, j = reducedOffset; i < n; ++i) {
+            if (isLMS(types, i)) {
+                sa[j++] = i;
+            }
+        }
+        for (int i = 0; i < lmsCount; ++i) {
+            sa[i] = sa[reducedOffset + sa[i]];
+        }
+        Arrays.fill(sa, lmsCount, n, -1);
+        getBuckets(text, n, buckets, true);
+        for (int i = lmsCount - 1; i >= 0; --i) {
+            int pos = sa[i];
+            sa[i] = -1;
+            sa[--buckets[text.get(pos)]] = pos;
+        }
+        induce(text, sa, n, buckets, types);
+    }
+
+    private static void induce(Text text, int[] sa, int n, int[] buckets, long[] types) {
+        getBuckets(text, n, buckets, false);
+        // The sentinel comes first, it induces suffix n - 1.
+        sa[buckets[text.get(n - 1)]++] = n - 1;
+        for (int i = 0; i < n; ++i) {
+            int j = sa[i] - 1;
+            if (j >= 0 && !isS(types, j)) {
+                sa[buckets[text.get(j)]++] = j;
+            }
+        }
+        getBuckets(text, n, buckets, true);
+        for (int i = n - 1; i >= 0; --i) {
+            int j = sa[i] - 1;
+            if (j >= 0 && isS(types, j)) {
+                sa[--buckets[text.get(j)]] = j;
+            }
+        }
+    }
+
+    /**
+     * Fills {@code buckets} with the start (or end if {@code end} is true) of each character bucket.
+     */
+    private static void getBuckets(Text text, int n, int[] buckets, boolean end) {
+        Arrays.fill(buckets, 0);
+        for (int i = 0; i < n; ++i) {
+            ++buckets[text.get(i)];
+        }
+        int sum = 0;
+        for (int c = 0; c < buckets.length; ++c) {
+            int count = buckets[c];
+            sum += count;
+            buckets[c] = end ? sum : sum - count;
+        }
+    }
+
+    private static boolean isS(long[] types, int i) {
+        return (types[i >>> 6] & (1L << i)) != 0;
+    }
+
+    private static boolean isLMS(long[] types, int i) {
+        return i > 0 && isS(types, i) && !isS(types, i - 1);
+    }
+
+    private abstract static class Text {
+        abstract int get(int i);
+    }
+
+    private static final class ByteText extends Text {
+        private final byte[] buf;
+
+        ByteText(byte[] buf) {
+            this.buf = buf;
+        }
+
+        @Override
+        int get(int i) {
+            return buf[i] & 0xff;
+        }
+    }
+
+    private static final class IntText extends Text {
+        private final int[] buf;
+        private final int   offset;
+
+        IntText(int[] buf, int offset) {
+            this.buf = buf;
+            this.offset = offset;
+        }
+
+        @Override
+        int get(int i) {
+            return buf[offset + i];
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.bsdiff;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BSDiffTest {
+    private static final int BLOCK_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testDefaultModeRoundTrip() throws IOException {
+        Random random = new Random(1);
+        byte[] oldBuf = randomBytes(random, 20000);
+        byte[] newBuf = mutate(random, oldBuf);
+        assertRoundTrip(oldBuf, newBuf, 0, 1);
+    }
+
+    @Test
+    public void testBlockSplitRoundTrip() throws IOException {
+        Random random = new Random(2);
+        byte[] oldBuf = randomBytes(random, 20000);
+        byte[] newBuf = mutate(random, oldBuf);
+        assertRoundTrip(oldBuf, newBuf, BLOCK_SIZE, 1);
+        assertRoundTrip(oldBuf, newBuf, BLOCK_SIZE, 4);
+    }
+
+    @Test
+    public void testBlockSplitWithUnalignedLastBlock() throws IOException {
+        Random random = new Random(3);
+        byte[] oldBuf = randomBytes(random, 7 * BLOCK_SIZE + 123);
+        byte[] newBuf = mutate(random, oldBuf);
+        newBuf = Arrays.copyOf(newBuf, 5 * BLOCK_SIZE + 1);
+        assertRoundTrip(oldBuf, newBuf, BLOCK_SIZE, 3);
+    }
+
+    @Test
+    public void testBlockSplitWithSmallerOldFile() throws IOException {
+        Random random = new Random(4);
+        byte[] oldBuf = randomBytes(random, 3 * BLOCK_SIZE);
+        byte[] newBuf = new byte[10 * BLOCK_SIZE];
+        for (int i = 0; i < newBuf.length; i += oldBuf.length) {
+            System.arraycopy(oldBuf, 0, newBuf, i, Math.min(oldBuf.length, newBuf.length - i));
+        }
+        newBuf[5 * BLOCK_SIZE] ^= 0x55;
+        assertRoundTrip(oldBuf, newBuf, BLOCK_SIZE, 4);
+    }
+
+    @Test
+    public void testBlockSplitWithEmptyOldFile() throws IOException {
+        Random random = new Random(5);
+        assertRoundTrip(new byte[0], randomBytes(random, 4 * BLOCK_SIZE), BLOCK_SIZE, 2);
+    }
+
+    @Test
+    public void testFileDiffRoundTrip() throws IOException {
+        Random random = new Random(6);
+        byte[] oldBuf = randomBytes(random, 3 * BSDiff.DEFAULT_BLOCK_SIZE);
+        byte[] newBuf = mutate(random, oldBuf);
+        File oldFile = writeTempFile(oldBuf);
+        File newFile = writeTempFile(newBuf);
+        File diffFile = tempFolder.newFile();
+        BSDiff.bsdiff(oldFile, newFile, diffFile, 4);
+
+        File patchedFile = tempFolder.newFile();
+        assertEquals(BSPatch.RETURN_SUCCESS, BSPatch.patchStreaming(oldFile, patchedFile, diffFile));
+        assertArrayEquals(newBuf, readFile(patchedFile));
+    }
+
+    private void assertRoundTrip(byte[] oldBuf, byte[] newBuf, int blockSize, int threadCount) throws IOException {
+        byte[] diff = BSDiff.bsdiff(oldBuf, oldBuf.length, newBuf, newBuf.length, blockSize, threadCount);
+
+        assertArrayEquals(newBuf, BSPatch.patchFast(oldBuf, oldBuf.length, diff, diff.length, 0));
+
+        File oldFile = writeTempFile(oldBuf);
+        File diffFile = writeTempFile(diff);
+        File patchedFile = tempFolder.newFile();
+        assertEquals(BSPatch.RETURN_SUCCESS, BSPatch.patchStreaming(oldFile, patchedFile, diffFile));
+        assertArrayEquals(newBuf, readFile(patchedFile));
+    }
+
+    private static byte[] randomBytes(Random random, int size) {
+        byte[] result = new byte[size];
+        random.nextBytes(result);
+        return result;
+    }
+
+    /**
+     * Returns a copy of {@code buf} with some bytes changed, inserted and removed, so that
+     * content of new blocks is shifted against the old file.
+     */
+    private static byte[] mutate(Random random, byte[] buf) {
+        byte[] result = new byte[buf.length + buf.length / 4];
+        int resultLen = 0;
+        int i = 0;
+        while (i < buf.length) {
+            int run = Math.min(buf.length - i, 1 + random.nextInt(700));
+            System.arraycopy(buf, i, result, resultLen, run);
+            resultLen += run;
+            i += run;
+            switch (random.nextInt(4)) {
+                case 0: {
+                    // Insert some new bytes.
+                    int len = Math.min(random.nextInt(64), result.length - resultLen);
+                    for (int j = 0; j < len; ++j) {
+                        result[resultLen++] = (byte) random.nextInt();
+                    }
+                    break;
+                }
+                case 1: {
+                    // Remove some old bytes.
+                    i += random.nextInt(64);
+                    break;
+                }
+                case 2: {
+                    // Change a byte in place.
+                    if (resultLen > 0) {
+                        result[resultLen - 1] ^= 0x5A;
+                    }
+                    break;
+                }
+                default: {
+                    break;
+                }
+            }
+        }
+        return Arrays.copyOf(result, resultLen);
+    }
+
+    private File writeTempFile(byte[] content) throws IOException {
+        File file = tempFolder.newFile();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] result = new byte[(int) raf.length()];
+            raf.readFully(result);
+            return result;
+        } finally {
+            raf.close();
+        }
+    }
+}
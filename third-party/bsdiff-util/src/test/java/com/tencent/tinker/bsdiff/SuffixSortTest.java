@@ -0,0 +1,85 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.bsdiff;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class SuffixSortTest {
+
+    @Test
+    public void testEmptyInput() {
+        assertSameAsQsufsort(new byte[0]);
+    }
+
+    @Test
+    public void testSingleByte() {
+        assertSameAsQsufsort(new byte[]{0});
+        assertSameAsQsufsort(new byte[]{(byte) 0xFF});
+    }
+
+    @Test
+    public void testAllEqualBytes() {
+        for (int size : new int[]{2, 3, 17, 1000}) {
+            byte[] buf = new byte[size];
+            assertSameAsQsufsort(buf);
+            Arrays.fill(buf, (byte) 0x80);
+            assertSameAsQsufsort(buf);
+        }
+    }
+
+    @Test
+    public void testRepeatedPattern() {
+        byte[] buf = new byte[4096];
+        for (int i = 0; i < buf.length; ++i) {
+            buf[i] = (byte) "abaab".charAt(i % 5);
+        }
+        assertSameAsQsufsort(buf);
+    }
+
+    @Test
+    public void testRandomInput() {
+        Random random = new Random(0x5EED);
+        for (int i = 0; i < 50; ++i) {
+            byte[] buf = new byte[random.nextInt(5000)];
+            // Small alphabets lead to long repeats and deep recursion of SA-IS.
+            int alphabetSize = (i % 2 == 0) ? 2 + random.nextInt(4) : 256;
+            for (int j = 0; j < buf.length; ++j) {
+                buf[j] = (byte) random.nextInt(alphabetSize);
+            }
+            assertSameAsQsufsort(buf);
+        }
+    }
+
+    @Test
+    public void testPrefixOfLargerBuffer() {
+        Random random = new Random(42);
+        byte[] buf = new byte[3000];
+        random.nextBytes(buf);
+        for (int size : new int[]{0, 1, 2, 1500}) {
+            assertArrayEquals(SuffixSort.qsufsort(buf, size), SuffixSort.sais(buf, size));
+        }
+    }
+
+    private static void assertSameAsQsufsort(byte[] buf) {
+        assertArrayEquals("size: " + buf.length, SuffixSort.qsufsort(buf, buf.length), SuffixSort.sais(buf, buf.length));
+    }
+}
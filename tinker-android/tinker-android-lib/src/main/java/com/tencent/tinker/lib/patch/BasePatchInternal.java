@@ -16,6 +16,7 @@
 
 package com.tencent.tinker.lib.patch;
 
+import com.tencent.tinker.bsdiff.BSPatch;
 import com.tencent.tinker.lib.util.TinkerLog;
 import com.tencent.tinker.loader.shareutil.ShareConstants;
 import com.tencent.tinker.loader.shareutil.SharePatchFileUtil;
@@ -25,6 +26,7 @@ import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
 
@@ -37,6 +39,7 @@ public class BasePatchInternal {
     protected static final String DEX_PATH             = ShareConstants.DEX_PATH;
     protected static final String SO_PATH              = ShareConstants.SO_PATH;
     protected static final String DEX_OPTIMIZE_PATH    = ShareConstants.DEX_OPTIMIZE_PATH;
+    protected static final String TEMP_PATH            = ShareConstants.PATCH_TEMP_PATH;
     protected static final int    MAX_EXTRACT_ATTEMPTS = ShareConstants.MAX_EXTRACT_ATTEMPTS;
     protected static final String DEX_META_FILE        = ShareConstants.DEX_META_FILE;
     protected static final String SO_META_FILE         = ShareConstants.SO_META_FILE;
@@ -87,6 +90,70 @@ public class BasePatchInternal {
         return isExtractionSuccessful;
     }
 
+    /**
+     * Directory for the intermediate files of one patch version. Nothing in it outlives a patch
+     * attempt, so it is wiped by {@link #cleanPatchTempDirectory(String)} whenever patching starts,
+     * which also removes the leftovers of a process killed in the middle of patching.
+     */
+    protected static File getPatchTempDirectory(String patchVersionDirectory) {
+        return new File(patchVersionDirectory + "/" + TEMP_PATH);
+    }
+
+    protected static void cleanPatchTempDirectory(String patchVersionDirectory) {
+        File tempDirectory = getPatchTempDirectory(patchVersionDirectory);
+        if (tempDirectory.exists()) {
+            TinkerLog.i(TAG, "clean patch temp directory: %s", tempDirectory.getPath());
+            SharePatchFileUtil.deleteDir(tempDirectory);
+        }
+    }
+
+    protected static void ensurePatchTempDirectory(File tempDirectory) throws IOException {
+        if (!tempDirectory.exists() && !tempDirectory.mkdirs() && !tempDirectory.isDirectory()) {
+            throw new IOException("create patch temp directory " + tempDirectory.getPath() + " failed");
+        }
+    }
+
+    /**
+     * Apply bsdiff patchEntry to oldEntry and write the result to patchedFile with
+     * {@link BSPatch#patchStreaming(File, File, File)}, so that heap usage does not grow with file size.
+     * Both entries are extracted to tempDirectory first since the patch engine reads files
+     * through channels, they are removed after patching.
+     */
+    protected static void bsPatchToFile(ZipFile oldZip, ZipEntry oldEntry, ZipFile patchZip, ZipEntry patchEntry,
+                                        File patchedFile, File tempDirectory) throws IOException {
+        ensurePatchTempDirectory(tempDirectory);
+        File tempOldFile = new File(tempDirectory, "old_" + patchedFile.getName());
+        File tempDiffFile = new File(tempDirectory, "diff_" + patchedFile.getName());
+        try {
+            extractToFile(oldZip, oldEntry, tempOldFile);
+            extractToFile(patchZip, patchEntry, tempDiffFile);
+            int result = BSPatch.patchStreaming(tempOldFile, patchedFile, tempDiffFile);
+            if (result != BSPatch.RETURN_SUCCESS) {
+                throw new IOException("bspatch " + patchedFile.getName() + " failed, result: " + result);
+            }
+        } finally {
+            SharePatchFileUtil.safeDeleteFile(tempOldFile);
+            SharePatchFileUtil.safeDeleteFile(tempDiffFile);
+        }
+    }
+
+    private static void extractToFile(ZipFile zipFile, ZipEntry entry, File extractTo) throws IOException {
+        InputStream is = null;
+        BufferedOutputStream out = null;
+        try {
+            is = zipFile.getInputStream(entry);
+            out = new BufferedOutputStream(new FileOutputStream(extractTo));
+            byte[] buffer = new byte[ShareConstants.BUFFER_SIZE];
+            int length;
+            while ((length = is.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+        } finally {
+            SharePatchFileUtil.closeQuietly(out);
+            SharePatchFileUtil.closeQuietly(is);
+        }
+    }
+
     public static int getMetaCorruptedCode(int type) {
         if (type == TYPE_DEX) {
             return ShareConstants.ERROR_PACKAGE_CHECK_DEX_META_CORRUPTED;
@@ -20,7 +20,6 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.os.SystemClock;
 
-import com.tencent.tinker.bsdiff.BSPatch;
 import com.tencent.tinker.lib.tinker.Tinker;
 import com.tencent.tinker.lib.util.TinkerLog;
 import com.tencent.tinker.loader.TinkerRuntimeException;
@@ -30,7 +29,6 @@ import com.tencent.tinker.loader.shareutil.ShareSecurityCheck;
 import com.tencent.tinker.loader.shareutil.ShareTinkerInternals;
 
 import java.io.File;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -64,10 +62,11 @@ public class BsDiffPatchInternal extends BasePatchInternal {
 
     private static boolean patchLibraryExtractViaBsDiff(Context context, String patchVersionDirectory, String meta, File patchFile) {
         String dir = patchVersionDirectory + "/" + SO_PATH + "/";
-        return extractBsDiffInternals(context, dir, meta, patchFile, TYPE_Library);
+        return extractBsDiffInternals(context, dir, meta, patchFile, getPatchTempDirectory(patchVersionDirectory), TYPE_Library);
     }
 
-    private static boolean extractBsDiffInternals(Context context, String dir, String meta, File patchFile, int type) {
+    private static boolean extractBsDiffInternals(Context context, String dir, String meta, File patchFile,
+                                                  File tempDirectory, int type) {
         //parse
         ArrayList<ShareBsDiffPatchInfo> patchList = new ArrayList<>();
 
@@ -175,16 +174,7 @@ public class BsDiffPatchInternal extends BasePatchInternal {
                         manager.getPatchReporter().onPatchTypeExtractFail(patchFile, extractedFile, info.name, type);
                         return false;
                     }
-                    InputStream oldStream = null;
-                    InputStream newStream = null;
-                    try {
-                        oldStream = apk.getInputStream(rawApkFileEntry);
-                        newStream = patch.getInputStream(patchFileEntry);
-                        BSPatch.patchFast(oldStream, newStream, extractedFile);
-                    } finally {
-                        SharePatchFileUtil.closeQuietly(oldStream);
-                        SharePatchFileUtil.closeQuietly(newStream);
-                    }
+                    bsPatchToFile(apk, rawApkFileEntry, patch, patchFileEntry, extractedFile, tempDirectory);
 
                     //go go go bsdiff get the
                     if (!SharePatchFileUtil.verifyFileMd5(extractedFile, fileMd5)) {
@@ -20,7 +20,9 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.os.SystemClock;
 
+import com.tencent.tinker.android.dex.Dex;
 import com.tencent.tinker.commons.dexpatcher.DexPatchApplier;
+import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.lib.tinker.Tinker;
 import com.tencent.tinker.lib.util.TinkerLog;
 import com.tencent.tinker.loader.TinkerParallelDexOptimizer;
@@ -37,6 +39,7 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
@@ -56,6 +59,9 @@ public class DexDiffPatchInternal extends BasePatchInternal {
     protected static final int WAIT_ASYN_OAT_TIME = 8 * 1000;
     protected static final int MAX_WAIT_COUNT     = 30;
 
+    // section dependencies rarely keep more threads busy, and patching competes with the foreground app
+    private static final int MAX_DEX_PATCH_THREAD_COUNT = 4;
+
     private static ArrayList<File> optFiles = new ArrayList<>();
     private static List<File> failOptDexFile = new Vector<>();
 
@@ -140,7 +146,7 @@ public class DexDiffPatchInternal extends BasePatchInternal {
         ///data/data/tinker.sample.android/tinker/patch-xxxxxxxx/dex/
         String dir = patchVersionDirectory + "/" + DEX_PATH + "/";
 
-        if (!extractDexDiffInternals(context, dir, meta, patchFile, TYPE_DEX)) {
+        if (!extractDexDiffInternals(context, dir, meta, patchFile, getPatchTempDirectory(patchVersionDirectory), TYPE_DEX)) {
             TinkerLog.w(TAG, "patch recover, extractDiffInternals fail");
             return false;
         }
@@ -266,7 +272,8 @@ public class DexDiffPatchInternal extends BasePatchInternal {
      * @param type
      * @return
      */
-    private static boolean extractDexDiffInternals(Context context, String dir, String meta, File patchFile, int type) {
+    private static boolean extractDexDiffInternals(Context context, String dir, String meta, File patchFile,
+                                                   File tempDirectory, int type) {
         //parse
         ArrayList<ShareDexDiffPatchInfo> patchList = new ArrayList<>();
         //将meta封装为对象
@@ -413,7 +420,7 @@ public class DexDiffPatchInternal extends BasePatchInternal {
                         return false;
                     }
                     //开始合成全量dex
-                    patchDexFile(apk, patch, rawApkFileEntry, patchFileEntry, info, extractedFile);
+                    patchDexFile(apk, patch, rawApkFileEntry, patchFileEntry, info, extractedFile, tempDirectory);
 
                     if (!SharePatchFileUtil.verifyDexFileMd5(extractedFile, extractedFileMd5)) {
                         TinkerLog.w(TAG, "Failed to recover dex file when verify patched dex: " + extractedFile.getPath());
@@ -536,6 +543,8 @@ public class DexDiffPatchInternal extends BasePatchInternal {
      *   Parsed patch info from package-meta.txt
      * @param patchedDexFile
      *   Patched dex file, may be a jar.
+     * @param tempDirectory
+     *   Directory for intermediate files of low memory mode.
      *
      * <b>Notice: patchFileEntry and smallPatchInfoFile cannot both be null.</b>
      *
@@ -543,7 +552,7 @@ public class DexDiffPatchInternal extends BasePatchInternal {
      */
     private static void patchDexFile(
             ZipFile baseApk, ZipFile patchPkg, ZipEntry oldDexEntry, ZipEntry patchFileEntry,
-            ShareDexDiffPatchInfo patchInfo,  File patchedDexFile) throws IOException {
+            ShareDexDiffPatchInfo patchInfo,  File patchedDexFile, File tempDirectory) throws IOException {
         InputStream oldDexStream = null;
         InputStream patchFileStream = null;
         try {
@@ -569,21 +578,23 @@ public class DexDiffPatchInternal extends BasePatchInternal {
                                 throw new TinkerRuntimeException("can't recognize zip dex format file:" + patchedDexFile.getAbsolutePath());
                             }
                             //具体实现
-                            new DexPatchApplier(zis, patchFileStream).executeAndSaveTo(zos);
+                            createDexPatchApplier(zis, patchFileStream).executeAndSaveTo(zos);
                         } finally {
                             SharePatchFileUtil.closeQuietly(zis);
                         }
                     } else {
                         //具体实现
-                        new DexPatchApplier(oldDexStream, patchFileStream).executeAndSaveTo(zos);
+                        createDexPatchApplier(oldDexStream, patchFileStream).executeAndSaveTo(zos);
                     }
                     zos.closeEntry();
                 } finally {
                     SharePatchFileUtil.closeQuietly(zos);
                 }
+            } else if (shouldPatchInLowMemoryMode(oldDexEntry)) {
+                patchRawDexFileInLowMemoryMode(oldDexStream, patchFileStream, patchedDexFile, tempDirectory);
             } else {
                 //具体实现
-                new DexPatchApplier(oldDexStream, patchFileStream).executeAndSaveTo(patchedDexFile);
+                createDexPatchApplier(oldDexStream, patchFileStream).executeAndSaveTo(patchedDexFile);
             }
         } finally {
             SharePatchFileUtil.closeQuietly(oldDexStream);
@@ -591,4 +602,74 @@ public class DexDiffPatchInternal extends BasePatchInternal {
         }
     }
 
+    private static DexPatchApplier createDexPatchApplier(InputStream oldDexStream, InputStream patchFileStream) throws IOException {
+        DexPatchApplier dexPatchApplier = new DexPatchApplier(oldDexStream, patchFileStream);
+        dexPatchApplier.setThreadCount(getDexPatchThreadCount());
+        return dexPatchApplier;
+    }
+
+    /**
+     * Independent data sections of one dex can be patched concurrently on multi-core devices,
+     * capped by {@link #MAX_DEX_PATCH_THREAD_COUNT}.
+     */
+    private static int getDexPatchThreadCount() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(MAX_DEX_PATCH_THREAD_COUNT, cores));
+    }
+
+    /**
+     * The default patch mode holds old dex, patch file and patched dex in heap at the same time,
+     * which easily runs out of memory on low-end devices with a large classes.dex.
+     */
+    private static boolean shouldPatchInLowMemoryMode(ZipEntry oldDexEntry) {
+        long oldDexSize = oldDexEntry.getSize();
+        if (oldDexSize <= 0) {
+            return false;
+        }
+        Runtime runtime = Runtime.getRuntime();
+        long availableHeap = runtime.maxMemory() - (runtime.totalMemory() - runtime.freeMemory());
+        return oldDexSize * 3 > availableHeap;
+    }
+
+    /**
+     * Extract old dex and dex patch to temp files under tempDirectory so that both can be read through
+     * memory-mapped buffers, and let patched dex be written into patchedDexFile directly.
+     */
+    private static void patchRawDexFileInLowMemoryMode(
+            InputStream oldDexStream, InputStream patchFileStream, File patchedDexFile, File tempDirectory) throws IOException {
+        ensurePatchTempDirectory(tempDirectory);
+        File tempOldDexFile = new File(tempDirectory, "old_" + patchedDexFile.getName());
+        File tempPatchFile = new File(tempDirectory, "patch_" + patchedDexFile.getName());
+        TinkerLog.w(TAG, "patch dex in low memory mode, temp old dex:%s", tempOldDexFile.getPath());
+        try {
+            writeStreamToFile(oldDexStream, tempOldDexFile);
+            DexPatchFile patchFile = null;
+            if (patchFileStream != null) {
+                writeStreamToFile(patchFileStream, tempPatchFile);
+                patchFile = DexPatchFile.mapFromFile(tempPatchFile);
+            }
+            //具体实现
+            DexPatchApplier dexPatchApplier = new DexPatchApplier(Dex.mapFromFile(tempOldDexFile), patchFile, true);
+            dexPatchApplier.setThreadCount(getDexPatchThreadCount());
+            dexPatchApplier.executeAndSaveTo(patchedDexFile);
+        } finally {
+            SharePatchFileUtil.safeDeleteFile(tempOldDexFile);
+            SharePatchFileUtil.safeDeleteFile(tempPatchFile);
+        }
+    }
+
+    private static void writeStreamToFile(InputStream is, File file) throws IOException {
+        OutputStream os = null;
+        try {
+            os = new BufferedOutputStream(new FileOutputStream(file));
+            byte[] buffer = new byte[16384];
+            int length;
+            while ((length = is.read(buffer)) > 0) {
+                os.write(buffer, 0, length);
+            }
+        } finally {
+            SharePatchFileUtil.closeQuietly(os);
+        }
+    }
+
 }
@@ -20,7 +20,6 @@ import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.os.SystemClock;
 
-import com.tencent.tinker.bsdiff.BSPatch;
 import com.tencent.tinker.commons.resutil.ResUtil;
 import com.tencent.tinker.commons.ziputil.TinkerZipEntry;
 import com.tencent.tinker.commons.ziputil.TinkerZipFile;
@@ -34,10 +33,8 @@ import com.tencent.tinker.loader.shareutil.ShareResPatchInfo;
 import com.tencent.tinker.loader.shareutil.ShareSecurityCheck;
 import com.tencent.tinker.loader.shareutil.ShareTinkerInternals;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
-import java.io.InputStream;
 import java.util.Enumeration;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -74,14 +71,15 @@ public class ResDiffPatchInternal extends BasePatchInternal {
                                                                String meta, File patchFile) {
         String dir = patchVersionDirectory + "/" + ShareConstants.RES_PATH + "/";
 
-        if (!extractResourceDiffInternals(context, dir, meta, patchFile, TYPE_RESOURCE)) {
+        if (!extractResourceDiffInternals(context, dir, meta, patchFile, getPatchTempDirectory(patchVersionDirectory), TYPE_RESOURCE)) {
             TinkerLog.w(TAG, "patch recover, extractDiffInternals fail");
             return false;
         }
         return true;
     }
 
-    private static boolean extractResourceDiffInternals(Context context, String dir, String meta, File patchFile, int type) {
+    private static boolean extractResourceDiffInternals(Context context, String dir, String meta, File patchFile,
+                                                        File tempDirectory, int type) {
         ShareResPatchInfo resPatchInfo = new ShareResPatchInfo();
         ShareResPatchInfo.parseAllResPatchInfo(meta, resPatchInfo);
         TinkerLog.i(TAG, "res dir: %s, meta: %s", dir, resPatchInfo.toString());
@@ -127,7 +125,7 @@ public class ResDiffPatchInternal extends BasePatchInternal {
             TinkerZipFile newApk = null;
             int totalEntryCount = 0;
             try {
-                out = new TinkerZipOutputStream(new BufferedOutputStream(new FileOutputStream(resOutput)));
+                out = new TinkerZipOutputStream(new FileOutputStream(resOutput));
                 oldApk = new TinkerZipFile(apkPath);
                 newApk = new TinkerZipFile(patchFile);
                 final Enumeration<? extends TinkerZipEntry> entries = oldApk.entries();
@@ -289,16 +287,7 @@ public class ResDiffPatchInternal extends BasePatchInternal {
                     manager.getPatchReporter().onPatchTypeExtractFail(patchFile, largeModeInfo.file, name, type);
                     return false;
                 }
-                InputStream oldStream = null;
-                InputStream newStream = null;
-                try {
-                    oldStream = apkFile.getInputStream(baseEntry);
-                    newStream = patchZipFile.getInputStream(patchEntry);
-                    BSPatch.patchFast(oldStream, newStream, largeModeInfo.file);
-                } finally {
-                    SharePatchFileUtil.closeQuietly(oldStream);
-                    SharePatchFileUtil.closeQuietly(newStream);
-                }
+                bsPatchToFile(apkFile, baseEntry, patchZipFile, patchEntry, largeModeInfo.file, tempDirectory);
                 //go go go bsdiff get the
                 if (!SharePatchFileUtil.verifyFileMd5(largeModeInfo.file, largeModeInfo.md5)) {
                     TinkerLog.w(TAG, "Failed to recover large modify file:%s", largeModeInfo.file.getPath());
@@ -110,6 +110,8 @@ public class UpgradePatch extends AbstractPatch {
         //it is a new patch, we first delete if there is any files
         //don't delete dir for faster retry
 //        SharePatchFileUtil.deleteDir(patchVersionDirectory);
+        //but intermediate files left by an interrupted patch process are useless
+        BasePatchInternal.cleanPatchTempDirectory(patchVersionDirectory);
 
         //copy file /data/data/tinker.sample.android/tinker/patch-xxxxxxxx/patch-xxxxxxxx.apk
         File destPatchFile = new File(patchVersionDirectory + "/" + SharePatchFileUtil.getPatchVersionFile(patchMd5));
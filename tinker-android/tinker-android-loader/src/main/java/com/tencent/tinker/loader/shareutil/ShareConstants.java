@@ -65,6 +65,9 @@ public class ShareConstants {
     public static final String RES_DEL_TITLE       = "delete:";
     public static final String RES_PATTERN_TITLE   = "pattern:";
 
+    // scratch files written while patching, under the patch version directory
+    public static final String PATCH_TEMP_PATH = "tmp";
+
     public static final String DEXMODE_RAW = "raw";
     public static final String DEXMODE_JAR = "jar";
     public static final String DEX_IN_JAR  = "classes.dex";
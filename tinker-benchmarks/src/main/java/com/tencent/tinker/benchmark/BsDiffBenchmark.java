@@ -0,0 +1,89 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.benchmark;
+
+import com.tencent.tinker.bsdiff.BSDiff;
+import com.tencent.tinker.bsdiff.BSPatch;
+import com.tencent.tinker.bsdiff.SuffixSort;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of bsdiff used by library and large resource patches, including
+ * the suffix sorting algorithms it can be built on.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BsDiffBenchmark {
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Corpus.Size size;
+
+    private byte[] oldBytes;
+    private byte[] newBytes;
+    private byte[] diffBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        byte[][] binaryPair = Corpus.getBinaryPair(size);
+        oldBytes = binaryPair[0];
+        newBytes = binaryPair[1];
+        diffBytes = bsdiff();
+    }
+
+    @Benchmark
+    public byte[] bsdiff() throws IOException {
+        return BSDiff.bsdiff(oldBytes, oldBytes.length, newBytes, newBytes.length);
+    }
+
+    @Benchmark
+    public byte[] bsdiffInBlocks() throws IOException {
+        return BSDiff.bsdiff(oldBytes, oldBytes.length, newBytes, newBytes.length,
+            Math.max(oldBytes.length / 4, 1), Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public byte[] patchFast() throws IOException {
+        return BSPatch.patchFast(oldBytes, oldBytes.length, diffBytes, diffBytes.length, 0);
+    }
+
+    @Benchmark
+    public int[] suffixSortByQsufsort() {
+        return SuffixSort.qsufsort(oldBytes, oldBytes.length);
+    }
+
+    @Benchmark
+    public int[] suffixSortBySais() {
+        return SuffixSort.sais(oldBytes, oldBytes.length);
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.benchmark;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Benchmark corpora of several sizes.
+ *
+ * Dex pairs are synthesized from generated classes by dx, apks and binaries are synthesized
+ * from the dex pairs. All of them are deterministic and cached under the directory given by
+ * system property {@code tinker.benchmark.corpus}, so they are generated only once. To benchmark
+ * with real world files, put them to the cache directory before running, e.g.
+ * {@code dex/large/old.dex}, {@code dex/large/new.dex} and {@code apk/large/app.apk}.
+ */
+public final class Corpus {
+    private static final String CORPUS_DIR_PROPERTY = "tinker.benchmark.corpus";
+    private static final String GEN_CLASS_PREFIX    = "com/tencent/tinker/benchmark/gen/C";
+    private static final int    FIELD_COUNT         = 3;
+    private static final int    METHOD_COUNT        = 6;
+
+    public enum Size {
+        SMALL(300, 256 * 1024),
+        MEDIUM(2000, 1024 * 1024),
+        LARGE(6000, 4 * 1024 * 1024);
+
+        final int classCount;
+        final int binarySize;
+
+        Size(int classCount, int binarySize) {
+            this.classCount = classCount;
+            this.binarySize = binarySize;
+        }
+
+        String dirName() {
+            return name().toLowerCase();
+        }
+    }
+
+    private Corpus() {
+    }
+
+    public static File getRootDir() {
+        return new File(System.getProperty(CORPUS_DIR_PROPERTY, "build/benchmark-corpus"));
+    }
+
+    /**
+     * Returns {old dex, new dex}. Compared with old dex, some classes of new dex are modified,
+     * added or removed.
+     */
+    public static synchronized File[] getDexPair(Size size) throws IOException {
+        File dir = new File(getRootDir(), "dex/" + size.dirName());
+        File oldDex = new File(dir, "old.dex");
+        File newDex = new File(dir, "new.dex");
+        if (!oldDex.isFile()) {
+            synthesizeDex(oldDex, size.classCount, false);
+        }
+        if (!newDex.isFile()) {
+            synthesizeDex(newDex, size.classCount, true);
+        }
+        return new File[]{oldDex, newDex};
+    }
+
+    /**
+     * Returns an apk with new dex of {@link #getDexPair(Size)}, stored and deflated resources and a library.
+     */
+    public static synchronized File getApk(Size size) throws IOException {
+        File apk = new File(getRootDir(), "apk/" + size.dirName() + "/app.apk");
+        if (!apk.isFile()) {
+            synthesizeApk(apk, size);
+        }
+        return apk;
+    }
+
+    /**
+     * Returns {old binary, new binary} of about {@code size.binarySize} bytes, which look like
+     * two versions of a native library.
+     */
+    public static byte[][] getBinaryPair(Size size) throws IOException {
+        byte[] seed = readFile(getDexPair(size)[0]);
+        Random random = new Random(size.binarySize);
+        ByteArrayOutputStream oldOut = new ByteArrayOutputStream(size.binarySize);
+        byte[] block = new byte[4096];
+        while (oldOut.size() < size.binarySize) {
+            if (random.nextInt(4) == 0) {
+                random.nextBytes(block);
+                oldOut.write(block, 0, block.length);
+            } else {
+                oldOut.write(seed, random.nextInt(seed.length - block.length), block.length);
+            }
+        }
+        byte[] oldBytes = oldOut.toByteArray();
+        return new byte[][]{oldBytes, mutate(oldBytes, random, oldBytes.length / 2048)};
+    }
+
+    public static byte[] readFile(File file) throws IOException {
+        InputStream is = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream((int) file.length());
+            byte[] buffer = new byte[16384];
+            int length;
+            while ((length = is.read(buffer)) != -1) {
+                out.write(buffer, 0, length);
+            }
+            return out.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+
+    private static byte[] mutate(byte[] src, Random random, int editCount) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(src.length + src.length / 16);
+        int averageGap = Math.max(1, src.length / Math.max(1, editCount));
+        int pos = 0;
+        while (pos < src.length) {
+            int next = Math.min(src.length, pos + random.nextInt(averageGap * 2));
+            out.write(src, pos, next - pos);
+            pos = next;
+            int length = 1 + random.nextInt(64);
+            switch (random.nextInt(3)) {
+                case 0:
+                    // insert
+                    for (int i = 0; i < length; ++i) {
+                        out.write(random.nextInt(256));
+                    }
+                    break;
+                case 1:
+                    // delete
+                    pos += length;
+                    break;
+                default:
+                    // modify
+                    for (int i = 0; i < length && pos < src.length; ++i, ++pos) {
+                        out.write(src[pos] + 1);
+                    }
+                    break;
+            }
+        }
+        return out.toByteArray();
+    }
+
+    private static void synthesizeDex(File dexFile, int classCount, boolean isNew) throws IOException {
+        ensureParentDir(dexFile);
+        File jarFile = new File(dexFile.getParentFile(), dexFile.getName() + ".jar");
+        JarOutputStream jos = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jarFile)));
+        try {
+            int totalCount = isNew ? classCount + classCount / 50 : classCount;
+            for (int i = 0; i < totalCount; ++i) {
+                int variant = 0;
+                if (isNew) {
+                    if (i % 97 == 1) {
+                        // removed class
+                        continue;
+                    }
+                    if (i % 19 == 2) {
+                        variant = 1;
+                    }
+                }
+                jos.putNextEntry(new JarEntry(GEN_CLASS_PREFIX + i + ".class"));
+                jos.write(generateClass(i, classCount, variant));
+                jos.closeEntry();
+            }
+        } finally {
+            jos.close();
+        }
+        try {
+            com.android.dx.command.dexer.Main.main(new String[]{
+                "--output=" + dexFile.getAbsolutePath(), jarFile.getAbsolutePath()
+            });
+        } finally {
+            jarFile.delete();
+        }
+        if (!dexFile.isFile()) {
+            throw new IOException("failed to synthesize " + dexFile);
+        }
+    }
+
+    private static byte[] generateClass(int index, int classCount, int variant) {
+        String className = GEN_CLASS_PREFIX + index;
+        ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+        cw.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC | Opcodes.ACC_SUPER, className, null, "java/lang/Object", null);
+        for (int i = 0; i < FIELD_COUNT; ++i) {
+            cw.visitField(Opcodes.ACC_PUBLIC, "f" + i, "I", null, null).visitEnd();
+        }
+
+        MethodVisitor mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "<init>", "()V", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ALOAD, 0);
+        mv.visitMethodInsn(Opcodes.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", false);
+        mv.visitInsn(Opcodes.RETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        mv = cw.visitMethod(Opcodes.ACC_PUBLIC | Opcodes.ACC_STATIC, "sm", "(I)I", null, null);
+        mv.visitCode();
+        mv.visitVarInsn(Opcodes.ILOAD, 0);
+        mv.visitLdcInsn(index + variant * 1000003);
+        mv.visitInsn(Opcodes.IMUL);
+        mv.visitLdcInsn("C" + index + "_" + variant);
+        mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I", false);
+        mv.visitInsn(Opcodes.IADD);
+        mv.visitInsn(Opcodes.IRETURN);
+        mv.visitMaxs(0, 0);
+        mv.visitEnd();
+
+        for (int i = 0; i < METHOD_COUNT; ++i) {
+            mv = cw.visitMethod(Opcodes.ACC_PUBLIC, "m" + i, "(I)I", null, null);
+            mv.visitCode();
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitLdcInsn(index * METHOD_COUNT + i + variant * 7);
+            mv.visitInsn(Opcodes.IMUL);
+            mv.visitVarInsn(Opcodes.ALOAD, 0);
+            mv.visitFieldInsn(Opcodes.GETFIELD, className, "f" + (i % FIELD_COUNT), "I");
+            mv.visitInsn(Opcodes.IADD);
+            mv.visitLdcInsn("s_" + index + "_" + i + (variant != 0 ? "_v" + variant : ""));
+            mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, "java/lang/String", "length", "()I", false);
+            mv.visitInsn(Opcodes.IADD);
+            if (i > 0) {
+                mv.visitVarInsn(Opcodes.ALOAD, 0);
+                mv.visitVarInsn(Opcodes.ILOAD, 1);
+                mv.visitMethodInsn(Opcodes.INVOKEVIRTUAL, className, "m" + (i - 1), "(I)I", false);
+                mv.visitInsn(Opcodes.IADD);
+            }
+            mv.visitVarInsn(Opcodes.ILOAD, 1);
+            mv.visitMethodInsn(Opcodes.INVOKESTATIC, GEN_CLASS_PREFIX + ((index * 7 + i) % classCount), "sm", "(I)I", false);
+            mv.visitInsn(Opcodes.IADD);
+            mv.visitInsn(Opcodes.IRETURN);
+            mv.visitMaxs(0, 0);
+            mv.visitEnd();
+        }
+        cw.visitEnd();
+        return cw.toByteArray();
+    }
+
+    private static void synthesizeApk(File apkFile, Size size) throws IOException {
+        ensureParentDir(apkFile);
+        Random random = new Random(size.classCount);
+        ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(apkFile)));
+        try {
+            addEntry(zos, "AndroidManifest.xml", generateText(random, 8192), false);
+            addEntry(zos, "classes.dex", readFile(getDexPair(size)[1]), false);
+            byte[][] binaryPair = getBinaryPair(size);
+            addEntry(zos, "resources.arsc", binaryPair[0], true);
+            addEntry(zos, "lib/armeabi/libbenchmark.so", binaryPair[1], false);
+            int resourceCount = size.classCount / 2;
+            for (int i = 0; i < resourceCount; ++i) {
+                byte[] image = new byte[1024 + random.nextInt(8192)];
+                random.nextBytes(image);
+                addEntry(zos, "res/drawable/image_" + i + ".png", image, true);
+                addEntry(zos, "res/layout/layout_" + i + ".xml", generateText(random, 512 + random.nextInt(4096)), false);
+            }
+        } finally {
+            zos.close();
+        }
+    }
+
+    private static byte[] generateText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length + 64);
+        while (sb.length() < length) {
+            sb.append("<View android:id=\"@+id/view_").append(random.nextInt(1000))
+                .append("\" android:layout_width=\"").append(random.nextBoolean() ? "match_parent" : "wrap_content")
+                .append("\"/>\n");
+        }
+        return sb.toString().getBytes();
+    }
+
+    private static void addEntry(ZipOutputStream zos, String name, byte[] data, boolean stored) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        if (stored) {
+            CRC32 crc = new CRC32();
+            crc.update(data);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(data.length);
+            entry.setCompressedSize(data.length);
+            entry.setCrc(crc.getValue());
+        }
+        zos.putNextEntry(entry);
+        zos.write(data);
+        zos.closeEntry();
+    }
+
+    private static void ensureParentDir(File file) throws IOException {
+        File parent = file.getParentFile();
+        if (!parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("failed to create " + parent);
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.benchmark;
+
+import com.tencent.tinker.android.dex.Dex;
+import com.tencent.tinker.build.dexpatcher.DexPatchGenerator;
+import com.tencent.tinker.build.util.DexClassesComparator;
+import com.tencent.tinker.commons.dexpatcher.DexPatchApplier;
+import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of dex diff on build side and dex patch on device side.
+ *
+ * Dexes are parsed from in-memory bytes in each invocation, so disk I/O is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DexPatchBenchmark {
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Corpus.Size size;
+
+    private byte[] oldDexBytes;
+    private byte[] newDexBytes;
+    private byte[] patchBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        File[] dexPair = Corpus.getDexPair(size);
+        oldDexBytes = Corpus.readFile(dexPair[0]);
+        newDexBytes = Corpus.readFile(dexPair[1]);
+        patchBytes = generatePatch().toByteArray();
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream generatePatch() throws IOException {
+        DexPatchGenerator generator = new DexPatchGenerator(new Dex(oldDexBytes), new Dex(newDexBytes));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(patchBytes != null ? patchBytes.length : 65536);
+        generator.executeAndSaveTo(out);
+        return out;
+    }
+
+    @Benchmark
+    public ByteArrayOutputStream applyPatch() throws IOException {
+        DexPatchApplier applier = new DexPatchApplier(new Dex(oldDexBytes), new DexPatchFile(ByteBuffer.wrap(patchBytes)));
+        ByteArrayOutputStream out = new ByteArrayOutputStream(newDexBytes.length);
+        applier.executeAndSaveTo(out);
+        return out;
+    }
+
+    @Benchmark
+    public Map<String, DexClassesComparator.DexClassInfo[]> compareClasses() throws IOException {
+        DexClassesComparator comparator = new DexClassesComparator("*");
+        comparator.startCheck(new Dex(oldDexBytes), new Dex(newDexBytes));
+        return comparator.getChangedClassDescToInfosMap();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.benchmark;
+
+import com.tencent.tinker.commons.resutil.ResUtil;
+import com.tencent.tinker.commons.ziputil.TinkerZipEntry;
+import com.tencent.tinker.commons.ziputil.TinkerZipFile;
+import com.tencent.tinker.commons.ziputil.TinkerZipOutputStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmark of copying all entries of an apk with {@link TinkerZipFile} and {@link TinkerZipOutputStream},
+ * which is what resource patching does on device.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZipCopyBenchmark {
+    @Param({"SMALL", "MEDIUM", "LARGE"})
+    public Corpus.Size size;
+
+    private File apkFile;
+    private File outputFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        apkFile = Corpus.getApk(size);
+        outputFile = File.createTempFile("tinker_benchmark_", ".apk");
+    }
+
+    @TearDown
+    public void tearDown() {
+        outputFile.delete();
+    }
+
+    @Benchmark
+    public long copyApk() throws IOException {
+        TinkerZipFile apk = new TinkerZipFile(apkFile);
+        TinkerZipOutputStream out = new TinkerZipOutputStream(new FileOutputStream(outputFile));
+        try {
+            Enumeration<? extends TinkerZipEntry> entries = apk.entries();
+            while (entries.hasMoreElements()) {
+                ResUtil.extractTinkerEntry(apk, entries.nextElement(), out);
+            }
+        } finally {
+            out.close();
+            apk.close();
+        }
+        return outputFile.length();
+    }
+}
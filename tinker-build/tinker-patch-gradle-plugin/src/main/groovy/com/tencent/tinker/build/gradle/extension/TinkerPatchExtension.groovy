@@ -50,11 +50,34 @@ public class TinkerPatchExtension {
      */
     boolean tinkerEnable
 
+    /**
+     * Worker threads used to diff dexes and resources in parallel,
+     * files larger than 8MB are also bsdiffed block by block if it is larger than 1
+     * default: 1, which means serial
+     */
+    int threadCount
+
+    /**
+     * Directory of the persistent build cache, diff outputs of unchanged inputs are reused from it
+     * default: "", which means disabled
+     */
+    String buildCacheDir
+
+    /**
+     * Deflate level of patch and resource zip entries by entry name pattern, from -1 (default level) to 9,
+     * 0 means STORED. The first matching pattern wins, such as ["assets/*.bin": 0, "*": 9]
+     * default: [:], which means all entries use the default level
+     */
+    Map<String, Integer> compressLevel
+
     public TinkerPatchExtension() {
         oldApk = ""
         ignoreWarning = false
         useSign = true
         tinkerEnable = true
+        threadCount = 1
+        buildCacheDir = ""
+        compressLevel = [:]
     }
 
     void checkParameter() {
@@ -67,6 +90,14 @@ public class TinkerPatchExtension {
         } else if (!apk.isFile()) {
             throw new GradleException("old apk ${oldApk} is a directory, you must set the correct old apk value!")
         }
+        if (threadCount <= 0) {
+            throw new GradleException("threadCount must be larger than 0!")
+        }
+        compressLevel.each { pattern, level ->
+            if (level < -1 || level > 9) {
+                throw new GradleException("compressLevel of ${pattern} must be from -1 to 9!")
+            }
+        }
 
     }
 
@@ -76,6 +107,9 @@ public class TinkerPatchExtension {
            | ignoreWarning = ${ignoreWarning}
            | tinkerEnable = ${tinkerEnable}
            | useSign = ${useSign}
+           | threadCount = ${threadCount}
+           | buildCacheDir = ${buildCacheDir}
+           | compressLevel = ${compressLevel}
         """.stripMargin()
     }
 }
\ No newline at end of file
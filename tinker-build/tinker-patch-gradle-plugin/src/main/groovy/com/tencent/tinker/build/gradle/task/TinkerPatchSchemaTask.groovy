@@ -77,6 +77,9 @@ public class TinkerPatchSchemaTask extends DefaultTask {
                .setConfigFields(new HashMap<String, String>(configuration.packageConfig.getFields()))
                .setSevenZipPath(configuration.sevenZip.path)
                .setUseSign(configuration.useSign)
+               .setThreadCount(configuration.threadCount)
+               .setBuildCacheDir(configuration.buildCacheDir)
+               .setCompressLevels(new LinkedHashMap<String, Integer>(configuration.compressLevel))
 
         InputParam inputParam = builder.create()
         Runner.gradleRun(inputParam);
@@ -33,6 +33,9 @@ import java.nio.file.Path;
 import java.nio.file.SimpleFileVisitor;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 
 /**
  * Created by zhangshaowen on 16/3/15.
@@ -67,23 +70,76 @@ public class ApkDecoder extends BaseDecoder {
         resDuplicateFiles = new ArrayList<>();
     }
 
-    private void unzipApkFile(File file, File destFile) throws TinkerPatchException, IOException {
+    private void checkApkFileName(File file) throws TinkerPatchException {
         String apkName = file.getName();
         if (!apkName.endsWith(TypedValue.FILE_APK)) {
             throw new TinkerPatchException(
                 String.format("input apk file path must end with .apk, yours %s\n", apkName)
             );
         }
+    }
 
-        String destPath = destFile.getAbsolutePath();
-        Logger.d("UnZipping apk to %s", destPath);
-        FileOperation.unZipAPk(file.getAbsoluteFile().getAbsolutePath(), destPath);
+    /**
+     * Instead of unzipping both apks, only extract entries which decoders may produce patch data from.
+     *
+     * All dex entries are extracted since dex decoder also deals with unchanged dexes. An entry matching
+     * lib or res pattern is skipped if it has the same crc and size in both apks, which is known from
+     * central directories without inflating it. Decoders would find such a pair unchanged and ignore it
+     * anyway, while old entries which are missing in new apk are still extracted to detect deleted resources.
+     */
+    private void unzipApkFiles(File oldFile, File newFile) throws IOException, TinkerPatchException {
+        checkApkFileName(oldFile);
+        checkApkFileName(newFile);
 
+        Logger.d("Extracting changed entries of apk to %s and %s", mOldApkDir.getAbsolutePath(), mNewApkDir.getAbsolutePath());
+        FileOperation.checkDirectory(mOldApkDir.getAbsolutePath());
+        FileOperation.checkDirectory(mNewApkDir.getAbsolutePath());
+
+        ZipFile oldZip = new ZipFile(oldFile);
+        ZipFile newZip = null;
+        try {
+            newZip = new ZipFile(newFile);
+            int skipped = 0;
+            Enumeration<? extends ZipEntry> newEntries = newZip.entries();
+            while (newEntries.hasMoreElements()) {
+                ZipEntry newEntry = newEntries.nextElement();
+                String name = newEntry.getName();
+                if (newEntry.isDirectory() || !isPatchCandidate(name)) {
+                    continue;
+                }
+                ZipEntry oldEntry = oldZip.getEntry(name);
+                if (oldEntry != null && !Utils.checkFileInPattern(config.mDexFilePattern, name)
+                    && oldEntry.getCrc() == newEntry.getCrc() && oldEntry.getSize() == newEntry.getSize()) {
+                    ++skipped;
+                    continue;
+                }
+                FileOperation.extractZipEntry(newZip, newEntry, new File(mNewApkDir, name));
+                if (oldEntry != null && !oldEntry.isDirectory()) {
+                    FileOperation.extractZipEntry(oldZip, oldEntry, new File(mOldApkDir, name));
+                }
+            }
+            Enumeration<? extends ZipEntry> oldEntries = oldZip.entries();
+            while (oldEntries.hasMoreElements()) {
+                ZipEntry oldEntry = oldEntries.nextElement();
+                String name = oldEntry.getName();
+                if (oldEntry.isDirectory() || !isPatchCandidate(name) || newZip.getEntry(name) != null) {
+                    continue;
+                }
+                FileOperation.extractZipEntry(oldZip, oldEntry, new File(mOldApkDir, name));
+            }
+            Logger.d("Skip extracting %d unchanged entries of apk", skipped);
+        } finally {
+            oldZip.close();
+            if (newZip != null) {
+                newZip.close();
+            }
+        }
     }
 
-    private void unzipApkFiles(File oldFile, File newFile) throws IOException, TinkerPatchException {
-        unzipApkFile(oldFile, this.mOldApkDir);
-        unzipApkFile(newFile, this.mNewApkDir);
+    private boolean isPatchCandidate(String name) {
+        return Utils.checkFileInPattern(config.mDexFilePattern, name)
+            || Utils.checkFileInPattern(config.mSoFilePattern, name)
+            || Utils.checkFileInPattern(config.mResFilePattern, name);
     }
 
     private void writeToLogFile(File oldFile, File newFile) throws IOException {
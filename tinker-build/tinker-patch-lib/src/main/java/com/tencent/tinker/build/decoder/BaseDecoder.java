@@ -16,7 +16,12 @@
 
 package com.tencent.tinker.build.decoder;
 
+import com.tencent.tinker.bsdiff.BSDiff;
 import com.tencent.tinker.build.patch.Configuration;
+import com.tencent.tinker.build.util.BuildCache;
+import com.tencent.tinker.build.util.ChangeDetector;
+import com.tencent.tinker.build.util.Logger;
+import com.tencent.tinker.build.util.MD5;
 import com.tencent.tinker.build.util.TinkerPatchException;
 
 import java.io.File;
@@ -33,6 +38,8 @@ public abstract class BaseDecoder {
 
     protected final File resultDir;
 
+    protected final BuildCache     buildCache;
+    protected final ChangeDetector changeDetector;
 
     public BaseDecoder(Configuration config) throws IOException {
         this.config = config;
@@ -40,6 +47,8 @@ public abstract class BaseDecoder {
 
         this.resultDir = config.mTempResultDir;
 
+        this.buildCache = new BuildCache(config.mBuildCacheDir);
+        this.changeDetector = new ChangeDetector(config.mOldApkFile, config.mNewApkFile);
     }
 
     public Configuration getConfig() {
@@ -70,6 +79,31 @@ public abstract class BaseDecoder {
         return config.mTempUnzipNewDir.toPath().relativize(newFile.getParentFile().toPath()).toString().replace("\\", "/");
     }
 
+    /**
+     * Bsdiff oldFile and newFile to diffFile, reuse the diff of a previous build from build cache if any.
+     */
+    protected void bsdiff(File oldFile, File newFile, String newMd5, File diffFile) throws IOException {
+        bsdiff(oldFile, newFile, newMd5, diffFile, config.mThreadCount);
+    }
+
+    /**
+     * Same as {@link #bsdiff(File, File, String, File)}, but diff blocks of a large file on at most
+     * {@code threadCount} threads. The diff only depends on config, not on {@code threadCount}.
+     */
+    protected void bsdiff(File oldFile, File newFile, String newMd5, File diffFile, int threadCount) throws IOException {
+        String cacheKey = null;
+        if (buildCache.isEnabled()) {
+            // Only block-split mode, which is enabled by threadCount, may change the diff of the same files.
+            cacheKey = BuildCache.newKey("bsdiff", MD5.getMD5(oldFile), newMd5, config.mThreadCount > 1);
+        }
+        if (buildCache.restore(cacheKey, diffFile)) {
+            Logger.d("Reuse bsdiff of %s from build cache.", getRelativePathStringToNewFile(newFile));
+            return;
+        }
+        BSDiff.bsdiff(oldFile, newFile, diffFile, config.mThreadCount > 1, threadCount);
+        buildCache.store(cacheKey, diffFile);
+    }
+
     /**
      * 就算前后两个文件都是一样,也会交到这个文件夹
      *
@@ -16,7 +16,6 @@
 
 package com.tencent.tinker.build.decoder;
 
-import com.tencent.tinker.bsdiff.BSDiff;
 import com.tencent.tinker.build.info.InfoWriter;
 import com.tencent.tinker.build.patch.Configuration;
 import com.tencent.tinker.build.util.FileOperation;
@@ -63,13 +62,12 @@ public class BsDiffDecoder extends BaseDecoder {
         if (newFile == null || !newFile.exists()) {
             return false;
         }
-        //new add file
-        String newMd5 = MD5.getMD5(newFile);
         File bsDiffFile = getOutputPath(newFile).toFile();
 
+        //new add file
         if (oldFile == null || !oldFile.exists()) {
             FileOperation.copyFileUsingStream(newFile, bsDiffFile);
-            writeLogFiles(newFile, null, null, newMd5);
+            writeLogFiles(newFile, null, null, MD5.getMD5(newFile));
             return true;
         }
 
@@ -79,21 +77,19 @@ public class BsDiffDecoder extends BaseDecoder {
         }
         if (oldFile.length() == 0 || newFile.length() == 0) {
             FileOperation.copyFileUsingStream(newFile, bsDiffFile);
-            writeLogFiles(newFile, null, null, newMd5);
+            writeLogFiles(newFile, null, null, MD5.getMD5(newFile));
             return true;
         }
 
-        //new add file
-        String oldMd5 = MD5.getMD5(oldFile);
-
-        if (oldMd5.equals(newMd5)) {
+        if (!changeDetector.isChanged(getRelativePathStringToNewFile(newFile), oldFile, newFile)) {
             return false;
         }
+        String newMd5 = MD5.getMD5(newFile);
 
         if (!bsDiffFile.getParentFile().exists()) {
             bsDiffFile.getParentFile().mkdirs();
         }
-        BSDiff.bsdiff(oldFile, newFile, bsDiffFile);
+        bsdiff(oldFile, newFile, newMd5, bsDiffFile);
 
         if (Utils.checkBsDiffFileSize(bsDiffFile, newFile)) {
             writeLogFiles(newFile, oldFile, bsDiffFile, newMd5);
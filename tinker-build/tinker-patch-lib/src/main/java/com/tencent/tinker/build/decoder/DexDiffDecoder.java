@@ -23,6 +23,8 @@ import com.tencent.tinker.android.dex.DexFormat;
 import com.tencent.tinker.build.dexpatcher.DexPatchGenerator;
 import com.tencent.tinker.build.info.InfoWriter;
 import com.tencent.tinker.build.patch.Configuration;
+import com.tencent.tinker.build.util.BuildCache;
+import com.tencent.tinker.build.util.DexCache;
 import com.tencent.tinker.build.util.DexClassesComparator;
 import com.tencent.tinker.build.util.DexClassesComparator.DexClassInfo;
 import com.tencent.tinker.build.util.ExcludedClassModifiedChecker;
@@ -34,10 +36,16 @@ import com.tencent.tinker.build.util.TypedValue;
 import com.tencent.tinker.build.util.Utils;
 import com.tencent.tinker.commons.dexpatcher.DexPatchApplier;
 import com.tencent.tinker.commons.dexpatcher.DexPatcherLogger.IDexPatcherLogger;
+import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -45,6 +53,12 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.jar.JarFile;
 import java.util.zip.ZipEntry;
 
@@ -57,6 +71,8 @@ public class DexDiffDecoder extends BaseDecoder {
     private final InfoWriter logWriter;
     private final InfoWriter metaWriter;
 
+    private final DexCache dexCache;
+
     private final ExcludedClassModifiedChecker excludedClassModifiedChecker;
 
     private final Map<String, String> addedClassDescToDexNameMap;
@@ -87,7 +103,9 @@ public class DexDiffDecoder extends BaseDecoder {
             this.dexPatcherLoggerBridge = new DexPatcherLoggerBridge(logWriter);
         }
 
-        excludedClassModifiedChecker = new ExcludedClassModifiedChecker(config);
+        dexCache = new DexCache();
+
+        excludedClassModifiedChecker = new ExcludedClassModifiedChecker(config, dexCache);
 
         addedClassDescToDexNameMap = new HashMap<>();
         deletedClassDescToDexNameMap = new HashMap<>();
@@ -261,13 +279,14 @@ public class DexDiffDecoder extends BaseDecoder {
     @SuppressWarnings("NewApi")
     private void generatePatchedDexInfoFile() {
         // Generate dex diff out and full patched dex if a pair of dex is different.
+        List<AbstractMap.SimpleEntry<File, File>> changedDexFilePairList = new ArrayList<>();
         for (AbstractMap.SimpleEntry<File, File> oldAndNewDexFilePair : oldAndNewDexFilePairList) {
             File oldFile = oldAndNewDexFilePair.getKey();
             File newFile = oldAndNewDexFilePair.getValue();
             final String dexName = getRelativeDexName(oldFile, newFile);
             RelatedInfo relatedInfo = dexNameToRelatedInfoMap.get(dexName);
             if (!relatedInfo.oldMd5.equals(relatedInfo.newMd5)) {
-                diffDexPairAndFillRelatedInfo(oldFile, newFile, relatedInfo);
+                changedDexFilePairList.add(oldAndNewDexFilePair);
             } else {
                 // In this case newDexFile is the same as oldDexFile, but we still
                 // need to treat it as patched dex file so that the SmallPatchGenerator
@@ -276,26 +295,123 @@ public class DexDiffDecoder extends BaseDecoder {
                 relatedInfo.newOrFullPatchedMd5 = relatedInfo.newMd5;
             }
         }
+
+        if (config.mThreadCount > 1 && changedDexFilePairList.size() > 1) {
+            diffDexPairsInParallel(changedDexFilePairList);
+        } else {
+            for (AbstractMap.SimpleEntry<File, File> changedDexFilePair : changedDexFilePairList) {
+                File oldFile = changedDexFilePair.getKey();
+                File newFile = changedDexFilePair.getValue();
+                RelatedInfo relatedInfo = dexNameToRelatedInfoMap.get(getRelativeDexName(oldFile, newFile));
+                diffDexPairAndFillRelatedInfo(oldFile, newFile, relatedInfo);
+            }
+        }
+    }
+
+    /**
+     * Diff and verify each pair of dexes on a bounded thread pool.
+     *
+     * Every pair writes to its own diff file and its own {@link RelatedInfo}, and dex meta
+     * is written later by {@code logDexesToDexMeta} in the order of {@code oldAndNewDexFilePairList},
+     * so the outputs are exactly the same as the ones generated in serial mode.
+     */
+    private void diffDexPairsInParallel(List<AbstractMap.SimpleEntry<File, File>> changedDexFilePairList) {
+        final int threadCount = Math.min(config.mThreadCount, changedDexFilePairList.size());
+        // Threads left over by dex pairs are shared by class comparisons of each pair.
+        final int verifyThreadCount = Math.max(1, config.mThreadCount / threadCount);
+        Logger.d("\nDiff %d changed dexes with %d threads.", changedDexFilePairList.size(), threadCount);
+
+        // Log lines are written here in list order to keep the log file stable.
+        for (AbstractMap.SimpleEntry<File, File> changedDexFilePair : changedDexFilePairList) {
+            logDiffStart(changedDexFilePair.getKey(), changedDexFilePair.getValue());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount);
+        try {
+            List<Future<Void>> futures = new ArrayList<>(changedDexFilePairList.size());
+            for (AbstractMap.SimpleEntry<File, File> changedDexFilePair : changedDexFilePairList) {
+                final File oldFile = changedDexFilePair.getKey();
+                final File newFile = changedDexFilePair.getValue();
+                final RelatedInfo relatedInfo = dexNameToRelatedInfoMap.get(getRelativeDexName(oldFile, newFile));
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        diffDexPairAndFillRelatedInfo(oldFile, newFile, relatedInfo, false, verifyThreadCount);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof TinkerPatchException) {
+                        throw (TinkerPatchException) cause;
+                    }
+                    throw new TinkerPatchException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TinkerPatchException(e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void logDiffStart(File oldDexFile, File newDexFile) {
+        logWriter.writeLineToInfoFile(
+                String.format(
+                        "Start diff between [%s] as old and [%s] as new:",
+                        getRelativeStringBy(oldDexFile, config.mTempUnzipOldDir),
+                        getRelativeStringBy(newDexFile, config.mTempUnzipNewDir)
+                )
+        );
     }
 
     private void diffDexPairAndFillRelatedInfo(File oldDexFile, File newDexFile, RelatedInfo relatedInfo) {
+        diffDexPairAndFillRelatedInfo(oldDexFile, newDexFile, relatedInfo, true, config.mThreadCount);
+    }
+
+    private void diffDexPairAndFillRelatedInfo(File oldDexFile, File newDexFile, RelatedInfo relatedInfo,
+                                               boolean logDiffStart, int verifyThreadCount) {
         File tempFullPatchDexPath = new File(config.mOutFolder + File.separator + TypedValue.DEX_TEMP_PATCH_DIR);
         final String dexName = getRelativeDexName(oldDexFile, newDexFile);
 
         File dexDiffOut = getOutputPath(newDexFile).toFile();
         ensureDirectoryExist(dexDiffOut.getParentFile());
 
+        File tempFullPatchedDexFile = new File(tempFullPatchDexPath, dexName);
+        if (!tempFullPatchedDexFile.exists()) {
+            ensureDirectoryExist(tempFullPatchedDexFile.getParentFile());
+        }
+
+        // Diff and patched dex only depend on contents of both dexes, loader patterns and the
+        // tool version newKey adds, and a cached pair was verified by checkDexChange when it was stored.
+        String cacheKey = BuildCache.newKey(
+                "dexdiff", relatedInfo.oldMd5, relatedInfo.newMd5, new TreeSet<>(config.mDexLoaderPattern)
+        );
+        if (buildCache.restore(cacheKey, dexDiffOut, tempFullPatchedDexFile)) {
+            if (logDiffStart) {
+                logDiffStart(oldDexFile, newDexFile);
+            }
+            relatedInfo.dexDiffFile = dexDiffOut;
+            relatedInfo.dexDiffMd5 = MD5.getMD5(dexDiffOut);
+            relatedInfo.newOrFullPatchedFile = tempFullPatchedDexFile;
+            relatedInfo.newOrFullPatchedMd5 = MD5.getMD5(tempFullPatchedDexFile);
+            Logger.d("\nReuse %s patch file and full dex file from build cache, patch md5:%s, full dex md5:%s",
+                    dexName, relatedInfo.dexDiffMd5, relatedInfo.newOrFullPatchedMd5);
+            return;
+        }
+
         try {
-            DexPatchGenerator dexPatchGen = new DexPatchGenerator(oldDexFile, newDexFile);
+            DexPatchGenerator dexPatchGen = new DexPatchGenerator(dexCache.get(oldDexFile), dexCache.get(newDexFile));
             dexPatchGen.setAdditionalRemovingClassPatterns(config.mDexLoaderPattern);
 
-            logWriter.writeLineToInfoFile(
-                    String.format(
-                            "Start diff between [%s] as old and [%s] as new:",
-                            getRelativeStringBy(oldDexFile, config.mTempUnzipOldDir),
-                            getRelativeStringBy(newDexFile, config.mTempUnzipNewDir)
-                    )
-            );
+            if (logDiffStart) {
+                logDiffStart(oldDexFile, newDexFile);
+            }
 
             dexPatchGen.executeAndSaveTo(dexDiffOut);
         } catch (Exception e) {
@@ -310,24 +426,30 @@ public class DexDiffDecoder extends BaseDecoder {
         relatedInfo.dexDiffMd5 = MD5.getMD5(dexDiffOut);
         Logger.d("\nGen %s patch file:%s, size:%d, md5:%s", dexName, relatedInfo.dexDiffFile.getAbsolutePath(), relatedInfo.dexDiffFile.length(), relatedInfo.dexDiffMd5);
 
-        File tempFullPatchedDexFile = new File(tempFullPatchDexPath, dexName);
-        if (!tempFullPatchedDexFile.exists()) {
-            ensureDirectoryExist(tempFullPatchedDexFile.getParentFile());
-        }
-
         try {
-            new DexPatchApplier(oldDexFile, dexDiffOut).executeAndSaveTo(tempFullPatchedDexFile);
+            // Patched dex is verified by parsing the buffer it was serialized from again, and its md5
+            // is computed while it is saved, so the saved file is never read back.
+            DexPatchApplier dexPatchApplier = new DexPatchApplier(dexCache.get(oldDexFile), new DexPatchFile(dexDiffOut));
+            MessageDigest patchedDexDigest = MessageDigest.getInstance("MD5");
+            OutputStream os = new DigestOutputStream(
+                    new BufferedOutputStream(new FileOutputStream(tempFullPatchedDexFile)), patchedDexDigest
+            );
+            try {
+                dexPatchApplier.executeAndSaveTo(os);
+            } finally {
+                os.close();
+            }
 
             Logger.d(
                     String.format("Verifying if patched new dex is logically the same as original new dex: %s ...", getRelativeStringBy(newDexFile, config.mTempUnzipNewDir))
             );
 
-            Dex origNewDex = new Dex(newDexFile);
-            Dex patchedNewDex = new Dex(tempFullPatchedDexFile);
-            checkDexChange(origNewDex, patchedNewDex);
+            Dex origNewDex = dexCache.get(newDexFile);
+            Dex patchedNewDex = new Dex(dexPatchApplier.getPatchedDex().asReadOnlyBuffer());
+            checkDexChange(origNewDex, patchedNewDex, verifyThreadCount);
 
             relatedInfo.newOrFullPatchedFile = tempFullPatchedDexFile;
-            relatedInfo.newOrFullPatchedMd5 = MD5.getMD5(tempFullPatchedDexFile);
+            relatedInfo.newOrFullPatchedMd5 = MD5.toHexString(patchedDexDigest.digest());
         } catch (Exception e) {
             e.printStackTrace();
             throw new TinkerPatchException(
@@ -339,6 +461,8 @@ public class DexDiffDecoder extends BaseDecoder {
             throw new TinkerPatchException("can not find the temporary full patched dex file:" + tempFullPatchedDexFile.getAbsolutePath());
         }
         Logger.d("\nGen %s for dalvik full dex file:%s, size:%d, md5:%s", dexName, tempFullPatchedDexFile.getAbsolutePath(), tempFullPatchedDexFile.length(), relatedInfo.newOrFullPatchedMd5);
+
+        buildCache.store(cacheKey, dexDiffOut, tempFullPatchedDexFile);
     }
 
     private void addTestDex() throws IOException {
@@ -397,8 +521,8 @@ public class DexDiffDecoder extends BaseDecoder {
      * and deleted class descriptor for further analysing in {@code checkCrossDexMovingClasses}.
      */
     private void collectAddedOrDeletedClasses(File oldFile, File newFile) throws IOException {
-        Dex oldDex = new Dex(oldFile);
-        Dex newDex = new Dex(newFile);
+        Dex oldDex = dexCache.get(oldFile);
+        Dex newDex = dexCache.get(newFile);
 
         Set<String> oldClassDescs = new HashSet<>();
         for (ClassDef oldClassDef : oldDex.classDefs()) {
@@ -456,8 +580,9 @@ public class DexDiffDecoder extends BaseDecoder {
         logToDexMeta(newFile, null, null, newMd5, newMd5, "0");
     }
 
-    private void checkDexChange(Dex originDex, Dex newDex) {
+    private void checkDexChange(Dex originDex, Dex newDex, int threadCount) {
         DexClassesComparator classesCmptor = new DexClassesComparator("*");
+        classesCmptor.setThreadCount(threadCount);
         classesCmptor.setIgnoredRemovedClassDescPattern(config.mDexLoaderPattern);
         classesCmptor.startCheck(originDex, newDex);
 
@@ -560,6 +685,8 @@ public class DexDiffDecoder extends BaseDecoder {
     public void clean() {
         metaWriter.close();
         logWriter.close();
+        Logger.d("Dex string cache used about %d KB heap.", dexCache.getStringCacheMemoryUsage() / 1024);
+        dexCache.clear();
     }
 
     private String getRawOrWrappedDexMD5(File dexOrJarFile) {
@@ -604,7 +731,8 @@ public class DexDiffDecoder extends BaseDecoder {
 
     private void ensureDirectoryExist(File dir) {
         if (!dir.exists()) {
-            if (!dir.mkdirs()) {
+            // Another diff task may create the same directory concurrently.
+            if (!dir.mkdirs() && !dir.isDirectory()) {
                 throw new TinkerPatchException("failed to create directory: " + dir);
             }
         }
@@ -16,7 +16,6 @@
 
 package com.tencent.tinker.build.decoder;
 
-import com.tencent.tinker.bsdiff.BSDiff;
 import com.tencent.tinker.build.apkparser.AndroidParser;
 import com.tencent.tinker.build.info.InfoWriter;
 import com.tencent.tinker.build.patch.Configuration;
@@ -37,6 +36,12 @@ import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by zhangshaowen on 16/8/8.
@@ -55,6 +60,12 @@ public class ResDiffDecoder extends BaseDecoder {
     private       HashMap<String, LargeModeInfo> largeModifiedMap;
     private ArrayList<String> deletedSet;
 
+    /**
+     * results of scheduled tasks in visiting order, null in serial mode
+     */
+    private List<Future<ResDiffResult>> pendingResults;
+    private ExecutorService             executor;
+
     public ResDiffDecoder(Configuration config, String metaPath, String logPath) throws IOException {
         super(config);
 
@@ -74,10 +85,14 @@ public class ResDiffDecoder extends BaseDecoder {
         largeModifiedSet = new ArrayList<>();
         largeModifiedMap = new HashMap<>();
         deletedSet = new ArrayList<>();
+        if (config.mThreadCount > 1) {
+            pendingResults = new ArrayList<>();
+        }
     }
 
     @Override
     public void clean() {
+        shutdownExecutor();
         metaWriter.close();
         logWriter.close();
     }
@@ -90,9 +105,15 @@ public class ResDiffDecoder extends BaseDecoder {
         return false;
     }
 
+    /**
+     * In serial mode returns whether the resource is recorded as added, modified or deleted.
+     * In parallel mode the resource is only scheduled here and its result is not known until
+     * {@link #onAllPatchesEnd()}, so true is returned for every scheduled resource, including
+     * ones that turn out to be unchanged or ignored.
+     */
     @Override
-    public boolean patch(File oldFile, File newFile) throws IOException, TinkerPatchException {
-        String name = getRelativePathStringToNewFile(newFile);
+    public boolean patch(final File oldFile, final File newFile) throws IOException, TinkerPatchException {
+        final String name = getRelativePathStringToNewFile(newFile);
 
         //actually, it won't go below
         if (newFile == null || !newFile.exists()) {
@@ -101,75 +122,175 @@ public class ResDiffDecoder extends BaseDecoder {
                 Logger.e("found delete resource: " + relativeStringByOldDir + " ,but it match ignore change pattern, just ignore!");
                 return false;
             }
-            deletedSet.add(relativeStringByOldDir);
-            writeResLog(newFile, oldFile, TypedValue.DEL);
-            return true;
+            final ResDiffResult result = new ResDiffResult(relativeStringByOldDir, TypedValue.DEL, oldFile, newFile);
+            return schedule(new Callable<ResDiffResult>() {
+                @Override
+                public ResDiffResult call() throws Exception {
+                    return result;
+                }
+            });
         }
 
-        File outputFile = getOutputPath(newFile).toFile();
+        final File outputFile = getOutputPath(newFile).toFile();
 
         if (oldFile == null || !oldFile.exists()) {
             if (Utils.checkFileInPattern(config.mResIgnoreChangePattern, name)) {
                 Logger.e("found add resource: " + name + " ,but it match ignore change pattern, just ignore!");
                 return false;
             }
-            FileOperation.copyFileUsingStream(newFile, outputFile);
-            addedSet.add(name);
-            writeResLog(newFile, oldFile, TypedValue.ADD);
-            return true;
+            return schedule(new Callable<ResDiffResult>() {
+                @Override
+                public ResDiffResult call() throws Exception {
+                    FileOperation.copyFileUsingStream(newFile, outputFile);
+                    return new ResDiffResult(name, TypedValue.ADD, oldFile, newFile);
+                }
+            });
         }
         //both file length is 0
         if (oldFile.length() == 0 && newFile.length() == 0) {
             return false;
         }
-        //new add file
-        String newMd5 = MD5.getMD5(newFile);
-        String oldMd5 = MD5.getMD5(oldFile);
+        return schedule(new Callable<ResDiffResult>() {
+            @Override
+            public ResDiffResult call() throws Exception {
+                return diffModifiedFile(name, oldFile, newFile, outputFile);
+            }
+        });
+    }
 
-        //oldFile or newFile may be 0b length
-        if (oldMd5 != null && oldMd5.equals(newMd5)) {
-            return false;
+    /**
+     * @return null if the resource is unchanged or its change should be ignored.
+     */
+    private ResDiffResult diffModifiedFile(String name, File oldFile, File newFile, File outputFile) throws IOException {
+        if (!changeDetector.isChanged(name, oldFile, newFile)) {
+            return null;
         }
         if (Utils.checkFileInPattern(config.mResIgnoreChangePattern, name)) {
             Logger.d("found modify resource: " + name + ", but it match ignore change pattern, just ignore!");
-            return false;
+            return null;
         }
         if (name.equals(TypedValue.RES_MANIFEST)) {
             Logger.d("found modify resource: " + name + ", but it is AndroidManifest.xml, just ignore!");
-            return false;
+            return null;
         }
         if (name.equals(TypedValue.RES_ARSC)) {
             if (AndroidParser.resourceTableLogicalChange(config)) {
                 Logger.d("found modify resource: " + name + ", but it is logically the same as original new resources.arsc, just ignore!");
-                return false;
+                return null;
             }
         }
-        dealWithModeFile(name, newMd5, oldFile, newFile, outputFile);
-        return true;
+        return dealWithModeFile(name, oldFile, newFile, outputFile);
     }
 
-    private boolean dealWithModeFile(String name, String newMd5, File oldFile, File newFile, File outputFile) throws IOException {
+    private ResDiffResult dealWithModeFile(String name, File oldFile, File newFile, File outputFile) throws IOException {
         if (checkLargeModFile(newFile)) {
             if (!outputFile.getParentFile().exists()) {
                 outputFile.getParentFile().mkdirs();
             }
-            BSDiff.bsdiff(oldFile, newFile, outputFile);
+            String newMd5 = MD5.getMD5(newFile);
+            // Resources are already diffed on config.mThreadCount threads in parallel mode,
+            // don't start another pool for each large file.
+            bsdiff(oldFile, newFile, newMd5, outputFile, 1);
             //treat it as normal modify
             if (Utils.checkBsDiffFileSize(outputFile, newFile)) {
-                LargeModeInfo largeModeInfo = new LargeModeInfo();
-                largeModeInfo.path = newFile;
-                largeModeInfo.crc = FileOperation.getFileCrc32(newFile);
-                largeModeInfo.md5 = newMd5;
-                largeModifiedSet.add(name);
-                largeModifiedMap.put(name, largeModeInfo);
-                writeResLog(newFile, oldFile, TypedValue.LARGE_MOD);
-                return true;
+                ResDiffResult result = new ResDiffResult(name, TypedValue.LARGE_MOD, oldFile, newFile);
+                result.largeModeInfo = new LargeModeInfo();
+                result.largeModeInfo.path = newFile;
+                result.largeModeInfo.crc = FileOperation.getFileCrc32(newFile);
+                result.largeModeInfo.md5 = newMd5;
+                return result;
             }
         }
-        modifiedSet.add(name);
         FileOperation.copyFileUsingStream(newFile, outputFile);
-        writeResLog(newFile, oldFile, TypedValue.MOD);
-        return false;
+        return new ResDiffResult(name, TypedValue.MOD, oldFile, newFile);
+    }
+
+    /**
+     * Run task at once in serial mode, or on the worker pool if threadCount is larger than 1.
+     * In the later case results are applied by {@link #applyPendingResults()} in the order they
+     * were scheduled, so sets, meta and log files are the same as the ones in serial mode.
+     *
+     * @return the real result in serial mode, always true in parallel mode.
+     */
+    private boolean schedule(Callable<ResDiffResult> task) throws IOException, TinkerPatchException {
+        if (pendingResults == null) {
+            ResDiffResult result;
+            try {
+                result = task.call();
+            } catch (IOException | TinkerPatchException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new TinkerPatchException(e);
+            }
+            if (result == null) {
+                return false;
+            }
+            applyResult(result);
+            return true;
+        }
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(config.mThreadCount);
+        }
+        pendingResults.add(executor.submit(task));
+        return true;
+    }
+
+    private void applyPendingResults() throws IOException, TinkerPatchException {
+        if (pendingResults == null) {
+            return;
+        }
+        try {
+            for (Future<ResDiffResult> future : pendingResults) {
+                ResDiffResult result;
+                try {
+                    result = future.get();
+                } catch (ExecutionException e) {
+                    Throwable cause = e.getCause();
+                    if (cause instanceof IOException) {
+                        throw (IOException) cause;
+                    }
+                    if (cause instanceof TinkerPatchException) {
+                        throw (TinkerPatchException) cause;
+                    }
+                    throw new TinkerPatchException(cause);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new TinkerPatchException(e);
+                }
+                if (result != null) {
+                    applyResult(result);
+                }
+            }
+        } finally {
+            pendingResults.clear();
+            shutdownExecutor();
+        }
+    }
+
+    private void applyResult(ResDiffResult result) throws IOException {
+        switch (result.mode) {
+            case TypedValue.ADD:
+                addedSet.add(result.name);
+                break;
+            case TypedValue.MOD:
+                modifiedSet.add(result.name);
+                break;
+            case TypedValue.LARGE_MOD:
+                largeModifiedSet.add(result.name);
+                largeModifiedMap.put(result.name, result.largeModeInfo);
+                break;
+            case TypedValue.DEL:
+                deletedSet.add(result.name);
+                break;
+        }
+        writeResLog(result.newFile, result.oldFile, result.mode);
+    }
+
+    private void shutdownExecutor() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
     }
 
     private void writeResLog(File newFile, File oldFile, int mode) throws IOException {
@@ -223,6 +344,8 @@ public class ResDiffDecoder extends BaseDecoder {
 
     @Override
     public void onAllPatchesEnd() throws IOException, TinkerPatchException {
+        applyPendingResults();
+
         //only there is only deleted set, we just ignore
         if (addedSet.isEmpty() && modifiedSet.isEmpty() && largeModifiedSet.isEmpty()) {
             return;
@@ -279,7 +402,7 @@ public class ResDiffDecoder extends BaseDecoder {
         final File tempResFiles = config.mTempResultDir;
 
         //gen zip resources_out.zip
-        FileOperation.zipInputDir(tempResFiles, tempResZip);
+        FileOperation.zipInputDir(tempResFiles, tempResZip, config.mThreadCount, config.mCompressLevels);
         File extractToZip = new File(config.mOutFolder + File.separator + TypedValue.RES_OUT);
 
         String resZipMd5 = Utils.genResOutputFile(extractToZip, tempResZip, config,
@@ -397,6 +520,21 @@ public class ResDiffDecoder extends BaseDecoder {
         public String md5 = null;
     }
 
+    private static final class ResDiffResult {
+        final String name;
+        final int    mode;
+        final File   oldFile;
+        final File   newFile;
+        LargeModeInfo largeModeInfo;
+
+        ResDiffResult(String name, int mode, File oldFile, File newFile) {
+            this.name = name;
+            this.mode = mode;
+            this.oldFile = oldFile;
+            this.newFile = newFile;
+        }
+    }
+
     class DeletedResVisitor extends SimpleFileVisitor<Path> {
         Configuration     config;
         Path              newApkPath;
@@ -31,9 +31,11 @@ import com.tencent.tinker.android.dex.MethodId;
 import com.tencent.tinker.android.dex.ProtoId;
 import com.tencent.tinker.android.dex.SizeOf;
 import com.tencent.tinker.android.dex.StringData;
+import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.TypeList;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
+import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
+import com.tencent.tinker.commons.dexpatcher.util.DenseIndexMap;
 import com.tencent.tinker.build.dexpatcher.algorithms.diff.AnnotationSectionDiffAlgorithm;
 import com.tencent.tinker.build.dexpatcher.algorithms.diff.AnnotationSetRefListSectionDiffAlgorithm;
 import com.tencent.tinker.build.dexpatcher.algorithms.diff.AnnotationSetSectionDiffAlgorithm;
@@ -50,7 +52,7 @@ import com.tencent.tinker.build.dexpatcher.algorithms.diff.StaticValueSectionDif
 import com.tencent.tinker.build.dexpatcher.algorithms.diff.StringDataSectionDiffAlgorithm;
 import com.tencent.tinker.build.dexpatcher.algorithms.diff.TypeIdSectionDiffAlgorithm;
 import com.tencent.tinker.build.dexpatcher.algorithms.diff.TypeListSectionDiffAlgorithm;
-import com.tencent.tinker.build.dexpatcher.util.PatternUtils;
+import com.tencent.tinker.build.dexpatcher.util.ClassDescMatcher;
 import com.tencent.tinker.commons.dexpatcher.DexPatcherLogger;
 import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.commons.dexpatcher.struct.PatchOperation;
@@ -66,7 +68,6 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 
 /**
@@ -115,14 +116,14 @@ public class DexPatchGenerator {
     private int patchedDexSize = 0;
 
     public DexPatchGenerator(File oldDexFile, File newDexFile) throws IOException {
-        this(new Dex(oldDexFile), new Dex(newDexFile));
+        this(Dex.mapFromFile(oldDexFile), Dex.mapFromFile(newDexFile));
     }
 
     /**
      * Notice: you should close inputstream manually.
      */
     public DexPatchGenerator(File oldDexFile, InputStream newDexStream) throws IOException {
-        this(new Dex(oldDexFile), new Dex(newDexStream));
+        this(Dex.mapFromFile(oldDexFile), new Dex(newDexStream));
     }
 
     /**
@@ -136,10 +137,10 @@ public class DexPatchGenerator {
         this.oldDex = oldDex;
         this.newDex = newDex;
 
-        SparseIndexMap oldToNewIndexMap = new SparseIndexMap();
-        SparseIndexMap oldToPatchedIndexMap = new SparseIndexMap();
-        SparseIndexMap newToPatchedIndexMap = new SparseIndexMap();
-        SparseIndexMap selfIndexMapForSkip = new SparseIndexMap();
+        AbstractIndexMap oldToNewIndexMap = new DenseIndexMap();
+        AbstractIndexMap oldToPatchedIndexMap = new DenseIndexMap();
+        AbstractIndexMap newToPatchedIndexMap = new DenseIndexMap();
+        AbstractIndexMap selfIndexMapForSkip = new DenseIndexMap();
 
         additionalRemovingClassPatternSet = new HashSet<>();
 
@@ -251,17 +252,11 @@ public class DexPatchGenerator {
     }
 
     public void addAdditionalRemovingClassPattern(String pattern) {
-        this.additionalRemovingClassPatternSet.add(
-                PatternUtils.dotClassNamePatternToDescriptorRegEx(pattern)
-        );
+        this.additionalRemovingClassPatternSet.add(pattern);
     }
 
     public void setAdditionalRemovingClassPatterns(Collection<String> patterns) {
-        for (String pattern : patterns) {
-            this.additionalRemovingClassPatternSet.add(
-                    PatternUtils.dotClassNamePatternToDescriptorRegEx(pattern)
-            );
-        }
+        this.additionalRemovingClassPatternSet.addAll(patterns);
     }
 
     public void clearAdditionalRemovingClassPatterns() {
@@ -291,21 +286,16 @@ public class DexPatchGenerator {
     public void executeAndSaveTo(OutputStream out) throws IOException {
         // Firstly, collect information of items we want to remove additionally
         // in new dex and set them to corresponding diff algorithm implementations.
-        Pattern[] classNamePatterns = new Pattern[this.additionalRemovingClassPatternSet.size()];
-        int classNamePatternCount = 0;
-        for (String regExStr : this.additionalRemovingClassPatternSet) {
-            classNamePatterns[classNamePatternCount++] = Pattern.compile(regExStr);
-        }
-
-        List<Integer> typeIdOfClassDefsToRemove = new ArrayList<>(classNamePatternCount);
-        List<Integer> offsetOfClassDatasToRemove = new ArrayList<>(classNamePatternCount);
-        for (ClassDef classDef : this.newDex.classDefs()) {
-            String typeName = this.newDex.typeNames().get(classDef.typeIndex);
-            for (Pattern pattern : classNamePatterns) {
-                if (pattern.matcher(typeName).matches()) {
+        ClassDescMatcher classNameMatcher = new ClassDescMatcher(this.additionalRemovingClassPatternSet);
+
+        List<Integer> typeIdOfClassDefsToRemove = new ArrayList<>();
+        List<Integer> offsetOfClassDatasToRemove = new ArrayList<>();
+        if (!classNameMatcher.isEmpty()) {
+            for (ClassDef classDef : this.newDex.classDefs()) {
+                String typeName = this.newDex.typeNames().get(classDef.typeIndex);
+                if (classNameMatcher.matches(typeName)) {
                     typeIdOfClassDefsToRemove.add(classDef.typeIndex);
                     offsetOfClassDatasToRemove.add(classDef.classDataOffset);
-                    break;
                 }
             }
         }
@@ -542,27 +532,79 @@ public class DexPatchGenerator {
         buffer.writeInt(this.patchedEncodedArrayItemsOffset);
         buffer.writeInt(this.patchedAnnotationsDirectoryItemsOffset);
         buffer.write(this.oldDex.computeSignature(false));
+
+        // Chunk offset of each section, so that patch applier can patch independent
+        // sections concurrently. We will return here to fill offsets later.
+        final short[] chunkSectionTypes = {
+                TableOfContents.SECTION_TYPE_STRINGDATAS,
+                TableOfContents.SECTION_TYPE_TYPEIDS,
+                TableOfContents.SECTION_TYPE_TYPELISTS,
+                TableOfContents.SECTION_TYPE_PROTOIDS,
+                TableOfContents.SECTION_TYPE_FIELDIDS,
+                TableOfContents.SECTION_TYPE_METHODIDS,
+                TableOfContents.SECTION_TYPE_ANNOTATIONS,
+                TableOfContents.SECTION_TYPE_ANNOTATIONSETS,
+                TableOfContents.SECTION_TYPE_ANNOTATIONSETREFLISTS,
+                TableOfContents.SECTION_TYPE_ANNOTATIONSDIRECTORIES,
+                TableOfContents.SECTION_TYPE_DEBUGINFOS,
+                TableOfContents.SECTION_TYPE_CODES,
+                TableOfContents.SECTION_TYPE_CLASSDATA,
+                TableOfContents.SECTION_TYPE_ENCODEDARRAYS,
+                TableOfContents.SECTION_TYPE_CLASSDEFS
+        };
+        final int[] chunkOffsets = new int[chunkSectionTypes.length];
+        buffer.writeUleb128(chunkSectionTypes.length);
+        int posOfChunkOffsetTable = buffer.position();
+        for (short chunkSectionType : chunkSectionTypes) {
+            buffer.writeShort(chunkSectionType);
+            buffer.writeInt(0);
+        }
+
         int firstChunkOffset = buffer.position();
         buffer.position(posOfFirstChunkOffsetField);
         buffer.writeInt(firstChunkOffset);
         buffer.position(firstChunkOffset);
 
+        int chunkIndex = 0;
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.stringDataSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.typeIdSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.typeListSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.protoIdSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.fieldIdSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.methodIdSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.annotationSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.annotationSetSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.annotationSetRefListSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.annotationsDirectorySectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.debugInfoSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.codeSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.classDataSectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.encodedArraySectionDiffAlg.getPatchOperationList());
+        chunkOffsets[chunkIndex++] = buffer.position();
         writePatchOperations(buffer, this.classDefSectionDiffAlg.getPatchOperationList());
 
+        int endOfChunks = buffer.position();
+        buffer.position(posOfChunkOffsetTable);
+        for (int i = 0; i < chunkSectionTypes.length; ++i) {
+            buffer.writeShort(chunkSectionTypes[i]);
+            buffer.writeInt(chunkOffsets[i]);
+        }
+        buffer.position(endOfChunks);
+
         byte[] bufferData = buffer.array();
         os.write(bufferData);
         os.flush();
@@ -20,14 +20,14 @@ import com.tencent.tinker.android.dex.Annotation;
 import com.tencent.tinker.android.dex.Dex;
 import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
+import com.tencent.tinker.build.dexpatcher.util.ItemFingerprints;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 /**
  * Created by tangyinsheng on 2016/6/30.
  */
 public class AnnotationSectionDiffAlgorithm extends DexSectionDiffAlgorithm<Annotation> {
-    public AnnotationSectionDiffAlgorithm(Dex oldDex, Dex newDex, SparseIndexMap oldToNewIndexMap, SparseIndexMap oldToPatchedIndexMap, SparseIndexMap newToPatchedIndexMap, SparseIndexMap selfIndexMapForSkip) {
+    public AnnotationSectionDiffAlgorithm(Dex oldDex, Dex newDex, AbstractIndexMap oldToNewIndexMap, AbstractIndexMap oldToPatchedIndexMap, AbstractIndexMap newToPatchedIndexMap, AbstractIndexMap selfIndexMapForSkip) {
         super(oldDex, newDex, oldToNewIndexMap, oldToPatchedIndexMap, newToPatchedIndexMap, selfIndexMapForSkip);
     }
 
@@ -52,14 +52,24 @@ public class AnnotationSectionDiffAlgorithm extends DexSectionDiffAlgorithm<Anno
     }
 
     @Override
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected boolean isItemFingerprintSupported() {
+        return true;
+    }
+
+    @Override
+    protected long getItemFingerprint(Annotation item) {
+        return ItemFingerprints.of(item);
+    }
+
+    @Override
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         if (oldOffset != newOffset) {
-            sparseIndexMap.mapAnnotationOffset(oldOffset, newOffset);
+            indexMap.mapAnnotationOffset(oldOffset, newOffset);
         }
     }
 
     @Override
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
-        sparseIndexMap.markAnnotationDeleted(deletedOffset);
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
+        indexMap.markAnnotationDeleted(deletedOffset);
     }
 }
@@ -21,13 +21,12 @@ import com.tencent.tinker.android.dex.Dex;
 import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 /**
  * Created by tangyinsheng on 2016/6/30.
  */
 public class AnnotationSetRefListSectionDiffAlgorithm extends DexSectionDiffAlgorithm<AnnotationSetRefList> {
-    public AnnotationSetRefListSectionDiffAlgorithm(Dex oldDex, Dex newDex, SparseIndexMap oldToNewIndexMap, SparseIndexMap oldToPatchedIndexMap, SparseIndexMap newToPatchedIndexMap, SparseIndexMap selfIndexMapForSkip) {
+    public AnnotationSetRefListSectionDiffAlgorithm(Dex oldDex, Dex newDex, AbstractIndexMap oldToNewIndexMap, AbstractIndexMap oldToPatchedIndexMap, AbstractIndexMap newToPatchedIndexMap, AbstractIndexMap selfIndexMapForSkip) {
         super(oldDex, newDex, oldToNewIndexMap, oldToPatchedIndexMap, newToPatchedIndexMap, selfIndexMapForSkip);
     }
 
@@ -52,14 +51,14 @@ public class AnnotationSetRefListSectionDiffAlgorithm extends DexSectionDiffAlgo
     }
 
     @Override
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         if (oldOffset != newOffset) {
-            sparseIndexMap.mapAnnotationSetRefListOffset(oldOffset, newOffset);
+            indexMap.mapAnnotationSetRefListOffset(oldOffset, newOffset);
         }
     }
 
     @Override
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
-        sparseIndexMap.markAnnotationSetRefListDeleted(deletedOffset);
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
+        indexMap.markAnnotationSetRefListDeleted(deletedOffset);
     }
 }
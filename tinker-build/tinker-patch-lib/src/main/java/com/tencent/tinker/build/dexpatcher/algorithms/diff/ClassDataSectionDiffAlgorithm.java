@@ -21,8 +21,8 @@ import com.tencent.tinker.android.dex.Dex;
 import com.tencent.tinker.android.dex.SizeOf;
 import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
+import com.tencent.tinker.build.dexpatcher.util.ItemFingerprints;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 import java.util.Collection;
 import java.util.HashSet;
@@ -34,7 +34,7 @@ import java.util.Set;
 public class ClassDataSectionDiffAlgorithm extends DexSectionDiffAlgorithm<ClassData> {
     private Set<Integer> offsetOfClassDataToRemoveSet = new HashSet<>();
 
-    public ClassDataSectionDiffAlgorithm(Dex oldDex, Dex newDex, SparseIndexMap oldToNewIndexMap, SparseIndexMap oldToPatchedIndexMap, SparseIndexMap newToPatchedIndexMap, SparseIndexMap selfIndexMapForSkip) {
+    public ClassDataSectionDiffAlgorithm(Dex oldDex, Dex newDex, AbstractIndexMap oldToNewIndexMap, AbstractIndexMap oldToPatchedIndexMap, AbstractIndexMap newToPatchedIndexMap, AbstractIndexMap selfIndexMapForSkip) {
         super(oldDex, newDex, oldToNewIndexMap, oldToPatchedIndexMap, newToPatchedIndexMap, selfIndexMapForSkip);
     }
 
@@ -67,6 +67,16 @@ public class ClassDataSectionDiffAlgorithm extends DexSectionDiffAlgorithm<Class
         return indexMap.adjust(item);
     }
 
+    @Override
+    protected boolean isItemFingerprintSupported() {
+        return true;
+    }
+
+    @Override
+    protected long getItemFingerprint(ClassData item) {
+        return ItemFingerprints.of(item);
+    }
+
     @Override
     public int getPatchedSectionSize() {
         // assume each uleb128 field's length may be inflate by 2 bytes.
@@ -79,14 +89,14 @@ public class ClassDataSectionDiffAlgorithm extends DexSectionDiffAlgorithm<Class
     }
 
     @Override
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         if (oldOffset != newOffset) {
-            sparseIndexMap.mapClassDataOffset(oldOffset, newOffset);
+            indexMap.mapClassDataOffset(oldOffset, newOffset);
         }
     }
 
     @Override
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
-        sparseIndexMap.markClassDataDeleted(deletedOffset);
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
+        indexMap.markClassDataDeleted(deletedOffset);
     }
 }
@@ -24,57 +24,61 @@ import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.android.dex.util.CompareUtils;
 import com.tencent.tinker.commons.dexpatcher.struct.PatchOperation;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
-import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Created by tangyinsheng on 2016/6/29.
  */
 public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
-    private static final AbstractMap.SimpleEntry[] EMPTY_ENTRY_ARRAY = new AbstractMap.SimpleEntry[0];
+    private static final Comparable<?>[] EMPTY_ITEM_ARRAY = new Comparable<?>[0];
+    private static final int[] EMPTY_INDEX_ARRAY = new int[0];
+    private static final long[] EMPTY_FINGERPRINT_ARRAY = new long[0];
+    /**
+     * Ranges shorter than this are sorted by insertion sort in {@code sortIndicesByItem}.
+     */
+    private static final int INSERTION_SORT_THRESHOLD = 7;
     protected final Dex oldDex;
     protected final Dex newDex;
     /**
-     * SparseIndexMap for mapping items between old dex and new dex.
+     * Index map for mapping items between old dex and new dex.
      * e.g. item.oldIndex => item.newIndex
      */
-    private final SparseIndexMap oldToNewIndexMap;
+    private final AbstractIndexMap oldToNewIndexMap;
     /**
-     * SparseIndexMap for mapping items between old dex and patched dex.
+     * Index map for mapping items between old dex and patched dex.
      * e.g. item.oldIndex => item.patchedIndex
      */
-    private final SparseIndexMap oldToPatchedIndexMap;
+    private final AbstractIndexMap oldToPatchedIndexMap;
     /**
-     * SparseIndexMap for mapping items between new dex and patched dex.
+     * Index map for mapping items between new dex and patched dex.
      * e.g. item.newIndex => item.newIndexInPatchedDex
      */
-    private final SparseIndexMap newToPatchedIndexMap;
+    private final AbstractIndexMap newToPatchedIndexMap;
     /**
-     * SparseIndexMap for mapping items in new dex when skip items.
+     * Index map for mapping items in new dex when skip items.
      */
-    private final SparseIndexMap selfIndexMapForSkip;
+    private final AbstractIndexMap selfIndexMapForSkip;
     private final List<PatchOperation<T>> patchOperationList;
-    private final Map<Integer, PatchOperation<T>> indexToDelOperationMap = new HashMap<>();
-    private final Map<Integer, PatchOperation<T>> indexToAddOperationMap = new HashMap<>();
-    private final Map<Integer, PatchOperation<T>> indexToReplaceOperationMap = new HashMap<>();
-    private final Map<Integer, Integer> oldIndexToNewIndexMap = new HashMap<>();
-    private final Map<Integer, Integer> oldOffsetToNewOffsetMap = new HashMap<>();
+    /**
+     * Patch operations indexed by their {@code index} field, a null slot means
+     * there is no such operation on that index.
+     */
+    private PatchOperation<T>[] indexToDelOperationArr = null;
+    private PatchOperation<T>[] indexToAddOperationArr = null;
+    private PatchOperation<T>[] indexToReplaceOperationArr = null;
+    /**
+     * For each old item, index and offset of the equal item in new dex. An old item
+     * which has no equal item in new dex keeps its own index and offset here.
+     */
+    private int[] oldIndexToNewIndexArr = EMPTY_INDEX_ARRAY;
+    private int[] oldIndexToNewOffsetArr = EMPTY_INDEX_ARRAY;
     private int patchedSectionSize;
-    private Comparator<AbstractMap.SimpleEntry<Integer, T>> comparatorForItemDiff = new Comparator<AbstractMap.SimpleEntry<Integer, T>>() {
-        @Override
-        public int compare(AbstractMap.SimpleEntry<Integer, T> o1, AbstractMap.SimpleEntry<Integer, T> o2) {
-            return o1.getValue().compareTo(o2.getValue());
-        }
-    };
     private Comparator<PatchOperation<T>> comparatorForPatchOperationOpt = new Comparator<PatchOperation<T>>() {
         @Override
         public int compare(PatchOperation<T> o1, PatchOperation<T> o2) {
@@ -112,17 +116,23 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
             return CompareUtils.sCompare(o1OrderId, o2OrderId);
         }
     };
-    private AbstractMap.SimpleEntry<Integer, T>[] adjustedOldIndexedItemsWithOrigOrder = null;
+    private T[] adjustedOldItemsWithOrigOrder = null;
+    /**
+     * Fingerprints of adjusted items indexed the same way as the items, or null
+     * if this section does not support fingerprints.
+     */
+    private long[] oldItemFingerprints = null;
+    private long[] newItemFingerprints = null;
     private int oldItemCount = 0;
     private int newItemCount = 0;
 
     public DexSectionDiffAlgorithm(
             Dex oldDex,
             Dex newDex,
-            SparseIndexMap oldToNewIndexMap,
-            SparseIndexMap oldToPatchedIndexMap,
-            SparseIndexMap newToPatchedIndexMap,
-            SparseIndexMap selfIndexMapForSkip
+            AbstractIndexMap oldToNewIndexMap,
+            AbstractIndexMap oldToPatchedIndexMap,
+            AbstractIndexMap newToPatchedIndexMap,
+            AbstractIndexMap selfIndexMapForSkip
     ) {
         this.oldDex = oldDex;
         this.newDex = newDex;
@@ -142,6 +152,22 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
         return this.patchedSectionSize;
     }
 
+    /**
+     * Fingerprints of adjusted old items in their original order, null if
+     * this section does not support fingerprints or {@code execute} was not called.
+     */
+    public long[] getOldItemFingerprints() {
+        return this.oldItemFingerprints;
+    }
+
+    /**
+     * Fingerprints of adjusted new items in their order after skipping, null if
+     * this section does not support fingerprints or {@code execute} was not called.
+     */
+    public long[] getNewItemFingerprints() {
+        return this.newItemFingerprints;
+    }
+
     /**
      * Get {@code Section} in {@code TableOfContents}.
      */
@@ -158,12 +184,28 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
     protected abstract int getItemSize(T item);
 
     /**
-     * Adjust {@code item} using specific {@code sparseIndexMap}
+     * Adjust {@code item} using specific {@code indexMap}
      */
     protected T adjustItem(AbstractIndexMap indexMap, T item) {
         return item;
     }
 
+    /**
+     * Indicate if items of this section have content fingerprints, see {@code getItemFingerprint}.
+     */
+    protected boolean isItemFingerprintSupported() {
+        return false;
+    }
+
+    /**
+     * Get content fingerprint of an adjusted {@code item}. Items which are equal by
+     * {@code compareTo} must have the same fingerprint, so that comparing fingerprints
+     * first and falling back to {@code compareTo} on ties is still a consistent order.
+     */
+    protected long getItemFingerprint(T item) {
+        return 0;
+    }
+
     /**
      * Indicate if {@code item} should be skipped in new dex.
      */
@@ -172,26 +214,26 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
     }
 
     /**
-     * Update index or offset mapping in {@code sparseIndexMap}.
+     * Update index or offset mapping in {@code indexMap}.
      */
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         // Should override by subclass if needed.
     }
 
     /**
-     * Mark deleted index or offset in {@code sparseIndexMap}.
+     * Mark deleted index or offset in {@code indexMap}.
      *
      * Here we mark deleted item for such a case like this:
      *   Item in DebugInfo section reference a string in StringData section
      *   by index X, while in patched dex, the referenced string is removed.
      *
-     * The {@code sparseIndexMap} must be aware of this case and return -1
+     * The {@code indexMap} must be aware of this case and return -1
      * instead of the original value X.
      *
      * Further more, the special value -1 is not chosen by our inspiration but
      * the definition of NO_INDEX in document of dex file format.
      */
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
         // Should override by subclass if needed.
     }
 
@@ -209,20 +251,38 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
         }
     }
 
-    @SuppressWarnings("unchecked,NewApi")
-    private AbstractMap.SimpleEntry<Integer, T>[] collectSectionItems(Dex dex, boolean isOldDex) {
+    // Items are always Comparable at runtime, so an erased Comparable array is a valid T[].
+    @SuppressWarnings("unchecked")
+    private T[] newItemArray(int length) {
+        return (T[]) (length == 0 ? EMPTY_ITEM_ARRAY : new Comparable<?>[length]);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> PatchOperation<E>[] newPatchOperationArray(int length) {
+        return (PatchOperation<E>[]) new PatchOperation<?>[length];
+    }
+
+    /**
+     * Items are collected in their original order, so the index of an item
+     * in returned array is exactly its index in old dex or in new dex after skipping.
+     *
+     * If fingerprints are supported, fingerprints of collected items are also
+     * computed here and kept in {@code oldItemFingerprints} or {@code newItemFingerprints}.
+     */
+    private T[] collectSectionItems(Dex dex, boolean isOldDex) {
         TableOfContents.Section tocSec = getTocSection(dex);
         if (!tocSec.exists()) {
-            return EMPTY_ENTRY_ARRAY;
+            setItemFingerprints(isOldDex, isItemFingerprintSupported() ? EMPTY_FINGERPRINT_ARRAY : null);
+            return newItemArray(0);
         }
         Dex.Section dexSec = dex.openSection(tocSec);
         int itemCount = tocSec.size;
-        List<AbstractMap.SimpleEntry<Integer, T>> result = new ArrayList<>(itemCount);
+        T[] result = newItemArray(itemCount);
+        int resultCount = 0;
         if (isOldDex) {
             for (int i = 0; i < itemCount; ++i) {
                 T nextItem = nextItem(dexSec);
-                T adjustedItem = adjustItem(oldToPatchedIndexMap, nextItem);
-                result.add(new AbstractMap.SimpleEntry<>(i, adjustedItem));
+                result[resultCount++] = adjustItem(oldToPatchedIndexMap, nextItem);
             }
         } else {
             int i = 0;
@@ -242,31 +302,123 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
                 }
                 if (nextItem != null) {
                     int offsetAfterSkip = getItemOffsetOrIndex(indexAfterSkip, nextItem);
-                    T adjustedItem = adjustItem(newToPatchedIndexMap, adjustItem(selfIndexMapForSkip, nextItem));
-                    int currentOutIndex = result.size();
-                    result.add(new AbstractMap.SimpleEntry<>(currentOutIndex, adjustedItem));
+                    result[resultCount++] = adjustItem(newToPatchedIndexMap, adjustItem(selfIndexMapForSkip, nextItem));
                     updateIndexOrOffset(selfIndexMapForSkip, indexBeforeSkip, offsetBeforeSkip, indexAfterSkip, offsetAfterSkip);
                 }
                 i = indexAfterSkip;
                 ++i;
             }
         }
-        return result.toArray(new AbstractMap.SimpleEntry[0]);
+        if (resultCount != itemCount) {
+            result = Arrays.copyOf(result, resultCount);
+        }
+        long[] fingerprints = null;
+        if (isItemFingerprintSupported()) {
+            fingerprints = new long[resultCount];
+            for (int i = 0; i < resultCount; ++i) {
+                fingerprints[i] = getItemFingerprint(result[i]);
+            }
+        }
+        setItemFingerprints(isOldDex, fingerprints);
+        return result;
     }
 
-    public void execute() {
-        this.patchOperationList.clear();
+    private void setItemFingerprints(boolean isOldDex, long[] fingerprints) {
+        if (isOldDex) {
+            this.oldItemFingerprints = fingerprints;
+        } else {
+            this.newItemFingerprints = fingerprints;
+        }
+    }
+
+    /**
+     * Compare {@code itemsA[a]} with {@code itemsB[b]}, fingerprints are compared first
+     * if available, only items with the same fingerprint are compared by {@code compareTo}.
+     */
+    private int compareItems(T[] itemsA, long[] fingerprintsA, int a, T[] itemsB, long[] fingerprintsB, int b) {
+        if (fingerprintsA != null && fingerprintsB != null) {
+            long fingerprintA = fingerprintsA[a];
+            long fingerprintB = fingerprintsB[b];
+            if (fingerprintA != fingerprintB) {
+                return CompareUtils.sCompare(fingerprintA, fingerprintB);
+            }
+        }
+        return itemsA[a].compareTo(itemsB[b]);
+    }
 
-        this.adjustedOldIndexedItemsWithOrigOrder = collectSectionItems(this.oldDex, true);
-        this.oldItemCount = this.adjustedOldIndexedItemsWithOrigOrder.length;
+    /**
+     * Return indices of {@code items} ordered by the items they point to.
+     *
+     * The sort is stable, indices of equal items keep their original order. When
+     * {@code fingerprints} is not null items are ordered by fingerprint first, which
+     * still puts equal items next to each other in the same order.
+     */
+    private int[] sortIndicesByItem(T[] items, long[] fingerprints) {
+        int itemCount = items.length;
+        int[] indices = new int[itemCount];
+        for (int i = 0; i < itemCount; ++i) {
+            indices[i] = i;
+        }
+        mergeSortIndices(indices.clone(), indices, 0, itemCount, items, fingerprints);
+        return indices;
+    }
 
-        AbstractMap.SimpleEntry<Integer, T>[] adjustedOldIndexedItems = new AbstractMap.SimpleEntry[this.oldItemCount];
-        System.arraycopy(this.adjustedOldIndexedItemsWithOrigOrder, 0, adjustedOldIndexedItems, 0, this.oldItemCount);
-        Arrays.sort(adjustedOldIndexedItems, this.comparatorForItemDiff);
+    /**
+     * Sort {@code src[lo, hi)} into {@code dest[lo, hi)}, both arrays must
+     * hold the same values in this range when called.
+     */
+    private void mergeSortIndices(int[] src, int[] dest, int lo, int hi, T[] items, long[] fingerprints) {
+        int length = hi - lo;
+        if (length < INSERTION_SORT_THRESHOLD) {
+            for (int i = lo; i < hi; ++i) {
+                for (int j = i; j > lo && compareItems(items, fingerprints, dest[j - 1], items, fingerprints, dest[j]) > 0; --j) {
+                    int temp = dest[j];
+                    dest[j] = dest[j - 1];
+                    dest[j - 1] = temp;
+                }
+            }
+            return;
+        }
 
-        AbstractMap.SimpleEntry<Integer, T>[] adjustedNewIndexedItems = collectSectionItems(this.newDex, false);
-        this.newItemCount = adjustedNewIndexedItems.length;
-        Arrays.sort(adjustedNewIndexedItems, this.comparatorForItemDiff);
+        int mid = (lo + hi) >>> 1;
+        mergeSortIndices(dest, src, lo, mid, items, fingerprints);
+        mergeSortIndices(dest, src, mid, hi, items, fingerprints);
+
+        // Two halves are already in order, just copy them.
+        if (compareItems(items, fingerprints, src[mid - 1], items, fingerprints, src[mid]) <= 0) {
+            System.arraycopy(src, lo, dest, lo, length);
+            return;
+        }
+
+        for (int i = lo, p = lo, q = mid; i < hi; ++i) {
+            if (q >= hi || (p < mid && compareItems(items, fingerprints, src[p], items, fingerprints, src[q]) <= 0)) {
+                dest[i] = src[p++];
+            } else {
+                dest[i] = src[q++];
+            }
+        }
+    }
+
+    public void execute() {
+        this.patchOperationList.clear();
+
+        this.adjustedOldItemsWithOrigOrder = collectSectionItems(this.oldDex, true);
+        this.oldItemCount = this.adjustedOldItemsWithOrigOrder.length;
+        final T[] adjustedOldItems = this.adjustedOldItemsWithOrigOrder;
+        final long[] oldFingerprints = this.oldItemFingerprints;
+        int[] sortedOldIndices = sortIndicesByItem(adjustedOldItems, oldFingerprints);
+
+        final T[] adjustedNewItems = collectSectionItems(this.newDex, false);
+        this.newItemCount = adjustedNewItems.length;
+        final long[] newFingerprints = this.newItemFingerprints;
+        int[] sortedNewIndices = sortIndicesByItem(adjustedNewItems, newFingerprints);
+
+        this.oldIndexToNewIndexArr = new int[this.oldItemCount];
+        this.oldIndexToNewOffsetArr = new int[this.oldItemCount];
+        for (int i = 0; i < this.oldItemCount; ++i) {
+            this.oldIndexToNewIndexArr[i] = i;
+            this.oldIndexToNewOffsetArr[i] = getItemOffsetOrIndex(i, adjustedOldItems[i]);
+        }
 
         int oldCursor = 0;
         int newCursor = 0;
@@ -274,46 +426,36 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
             if (oldCursor >= this.oldItemCount) {
                 // rest item are all newItem.
                 while (newCursor < this.newItemCount) {
-                    AbstractMap.SimpleEntry<Integer, T> newIndexedItem = adjustedNewIndexedItems[newCursor++];
-                    this.patchOperationList.add(new PatchOperation<>(PatchOperation.OP_ADD, newIndexedItem.getKey(), newIndexedItem.getValue()));
+                    int newIndex = sortedNewIndices[newCursor++];
+                    this.patchOperationList.add(new PatchOperation<>(PatchOperation.OP_ADD, newIndex, adjustedNewItems[newIndex]));
                 }
             } else
             if (newCursor >= newItemCount) {
                 // rest item are all oldItem.
                 while (oldCursor < oldItemCount) {
-                    AbstractMap.SimpleEntry<Integer, T> oldIndexedItem = adjustedOldIndexedItems[oldCursor++];
-                    int deletedIndex = oldIndexedItem.getKey();
-                    int deletedOffset = getItemOffsetOrIndex(deletedIndex, oldIndexedItem.getValue());
+                    int deletedIndex = sortedOldIndices[oldCursor++];
+                    int deletedOffset = getItemOffsetOrIndex(deletedIndex, adjustedOldItems[deletedIndex]);
                     this.patchOperationList.add(new PatchOperation<T>(PatchOperation.OP_DEL, deletedIndex));
                     markDeletedIndexOrOffset(this.oldToPatchedIndexMap, deletedIndex, deletedOffset);
                 }
             } else {
-                AbstractMap.SimpleEntry<Integer, T> oldIndexedItem = adjustedOldIndexedItems[oldCursor];
-                AbstractMap.SimpleEntry<Integer, T> newIndexedItem = adjustedNewIndexedItems[newCursor];
-                int cmpRes = oldIndexedItem.getValue().compareTo(newIndexedItem.getValue());
+                int oldIndex = sortedOldIndices[oldCursor];
+                int newIndex = sortedNewIndices[newCursor];
+                T oldItem = adjustedOldItems[oldIndex];
+                T newItem = adjustedNewItems[newIndex];
+                int cmpRes = compareItems(adjustedOldItems, oldFingerprints, oldIndex, adjustedNewItems, newFingerprints, newIndex);
                 if (cmpRes < 0) {
-                    int deletedIndex = oldIndexedItem.getKey();
-                    int deletedOffset = getItemOffsetOrIndex(deletedIndex, oldIndexedItem.getValue());
-                    this.patchOperationList.add(new PatchOperation<T>(PatchOperation.OP_DEL, deletedIndex));
-                    markDeletedIndexOrOffset(this.oldToPatchedIndexMap, deletedIndex, deletedOffset);
+                    int deletedOffset = getItemOffsetOrIndex(oldIndex, oldItem);
+                    this.patchOperationList.add(new PatchOperation<T>(PatchOperation.OP_DEL, oldIndex));
+                    markDeletedIndexOrOffset(this.oldToPatchedIndexMap, oldIndex, deletedOffset);
                     ++oldCursor;
                 } else
                 if (cmpRes > 0) {
-                    this.patchOperationList.add(new PatchOperation<>(PatchOperation.OP_ADD, newIndexedItem.getKey(), newIndexedItem.getValue()));
+                    this.patchOperationList.add(new PatchOperation<>(PatchOperation.OP_ADD, newIndex, newItem));
                     ++newCursor;
                 } else {
-                    int oldIndex = oldIndexedItem.getKey();
-                    int newIndex = newIndexedItem.getKey();
-                    int oldOffset = getItemOffsetOrIndex(oldIndexedItem.getKey(), oldIndexedItem.getValue());
-                    int newOffset = getItemOffsetOrIndex(newIndexedItem.getKey(), newIndexedItem.getValue());
-
-                    if (oldIndex != newIndex) {
-                        this.oldIndexToNewIndexMap.put(oldIndex, newIndex);
-                    }
-
-                    if (oldOffset != newOffset) {
-                        this.oldOffsetToNewOffsetMap.put(oldOffset, newOffset);
-                    }
+                    this.oldIndexToNewIndexArr[oldIndex] = newIndex;
+                    this.oldIndexToNewOffsetArr[oldIndex] = getItemOffsetOrIndex(newIndex, newItem);
 
                     ++oldCursor;
                     ++newCursor;
@@ -348,70 +490,63 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
         }
 
         // Finally we record some information for the final calculations.
-        patchOperationIt = this.patchOperationList.iterator();
-        while (patchOperationIt.hasNext()) {
-            PatchOperation<T> patchOperation = patchOperationIt.next();
+        // Any del or replace index is an old index, any add or replace index is a new index.
+        int maxItemCount = Math.max(this.oldItemCount, this.newItemCount);
+        this.indexToDelOperationArr = newPatchOperationArray(this.oldItemCount);
+        this.indexToAddOperationArr = newPatchOperationArray(this.newItemCount);
+        this.indexToReplaceOperationArr = newPatchOperationArray(maxItemCount);
+        for (PatchOperation<T> patchOperation : this.patchOperationList) {
             switch (patchOperation.op) {
                 case PatchOperation.OP_DEL: {
-                    indexToDelOperationMap.put(patchOperation.index, patchOperation);
+                    indexToDelOperationArr[patchOperation.index] = patchOperation;
                     break;
                 }
                 case PatchOperation.OP_ADD: {
-                    indexToAddOperationMap.put(patchOperation.index, patchOperation);
+                    indexToAddOperationArr[patchOperation.index] = patchOperation;
                     break;
                 }
                 case PatchOperation.OP_REPLACE: {
-                    indexToReplaceOperationMap.put(patchOperation.index, patchOperation);
+                    indexToReplaceOperationArr[patchOperation.index] = patchOperation;
                     break;
                 }
             }
         }
     }
 
+    private static <E> E getOperationAt(E[] indexToOperationArr, int index) {
+        return (index < indexToOperationArr.length ? indexToOperationArr[index] : null);
+    }
+
     public void simulatePatchOperation(int baseOffset) {
         boolean isNeedToMakeAlign = getTocSection(this.oldDex).isElementFourByteAligned;
         int oldIndex = 0;
         int patchedIndex = 0;
         int patchedOffset = baseOffset;
         while (oldIndex < this.oldItemCount || patchedIndex < this.newItemCount) {
-            if (this.indexToAddOperationMap.containsKey(patchedIndex)) {
-                PatchOperation<T> patchOperation = this.indexToAddOperationMap.get(patchedIndex);
-                if (isNeedToMakeAlign) {
-                    patchedOffset = SizeOf.roundToTimesOfFour(patchedOffset);
-                }
-                T newItem = patchOperation.newItem;
-                int itemSize = getItemSize(newItem);
-                updateIndexOrOffset(
-                        this.newToPatchedIndexMap,
-                        0,
-                        getItemOffsetOrIndex(patchOperation.index, newItem),
-                        0,
-                        patchedOffset
-                );
-                ++patchedIndex;
-                patchedOffset += itemSize;
-            } else
-            if (this.indexToReplaceOperationMap.containsKey(patchedIndex)) {
-                PatchOperation<T> patchOperation = this.indexToReplaceOperationMap.get(patchedIndex);
+            PatchOperation<T> addOrReplaceOperation = getOperationAt(this.indexToAddOperationArr, patchedIndex);
+            if (addOrReplaceOperation == null) {
+                addOrReplaceOperation = getOperationAt(this.indexToReplaceOperationArr, patchedIndex);
+            }
+            if (addOrReplaceOperation != null) {
                 if (isNeedToMakeAlign) {
                     patchedOffset = SizeOf.roundToTimesOfFour(patchedOffset);
                 }
-                T newItem = patchOperation.newItem;
+                T newItem = addOrReplaceOperation.newItem;
                 int itemSize = getItemSize(newItem);
                 updateIndexOrOffset(
                         this.newToPatchedIndexMap,
                         0,
-                        getItemOffsetOrIndex(patchOperation.index, newItem),
+                        getItemOffsetOrIndex(addOrReplaceOperation.index, newItem),
                         0,
                         patchedOffset
                 );
                 ++patchedIndex;
                 patchedOffset += itemSize;
             } else
-            if (this.indexToDelOperationMap.containsKey(oldIndex)) {
+            if (getOperationAt(this.indexToDelOperationArr, oldIndex) != null) {
                 ++oldIndex;
             } else
-            if (this.indexToReplaceOperationMap.containsKey(oldIndex)) {
+            if (getOperationAt(this.indexToReplaceOperationArr, oldIndex) != null) {
                 ++oldIndex;
             } else
             if (oldIndex < this.oldItemCount) {
@@ -419,7 +554,7 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
                     patchedOffset = SizeOf.roundToTimesOfFour(patchedOffset);
                 }
 
-                T oldItem = this.adjustedOldIndexedItemsWithOrigOrder[oldIndex].getValue();
+                T oldItem = this.adjustedOldItemsWithOrigOrder[oldIndex];
                 int itemSize = getItemSize(oldItem);
 
                 int oldOffset = getItemOffsetOrIndex(oldIndex, oldItem);
@@ -432,20 +567,10 @@ public abstract class DexSectionDiffAlgorithm<T extends Comparable<T>> {
                         patchedOffset
                 );
 
-                int newIndex = oldIndex;
-                if (this.oldIndexToNewIndexMap.containsKey(oldIndex)) {
-                    newIndex = this.oldIndexToNewIndexMap.get(oldIndex);
-                }
-
-                int newOffset = oldOffset;
-                if (this.oldOffsetToNewOffsetMap.containsKey(oldOffset)) {
-                    newOffset = this.oldOffsetToNewOffsetMap.get(oldOffset);
-                }
-
                 updateIndexOrOffset(
                         this.newToPatchedIndexMap,
-                        newIndex,
-                        newOffset,
+                        this.oldIndexToNewIndexArr[oldIndex],
+                        this.oldIndexToNewOffsetArr[oldIndex],
                         patchedIndex,
                         patchedOffset
                 );
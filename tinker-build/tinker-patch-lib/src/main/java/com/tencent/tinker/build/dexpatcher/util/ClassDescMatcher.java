@@ -0,0 +1,305 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.build.dexpatcher.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Matches class descriptors against a group of dot class name patterns at once.
+ *
+ * Each pattern is converted by {@link PatternUtils#dotClassNamePatternToDescriptorRegEx} first.
+ * Regexes without wildcards are kept in a hash set, the others are stored in a trie by their
+ * literal prefixes, with the rest after the first wildcard matched by a small automaton. So a
+ * descriptor is matched by walking it along the trie once instead of running every regex on it.
+ * Regexes using any other syntax are still matched by {@link Pattern}.
+ *
+ * The result is always the same as matching the descriptor with all the converted regexes.
+ */
+public final class ClassDescMatcher {
+    private static final int TOKEN_ANY_CHARS = -1;   // .*
+    private static final int TOKEN_ANY_CHAR_OPT = -2; // .?
+
+    private final Set<String> exactDescs = new HashSet<>();
+    private final TrieNode root = new TrieNode('\0');
+    private final List<Pattern> fallbackPatterns = new ArrayList<>();
+    private boolean isEmpty = true;
+
+    public ClassDescMatcher(Collection<String> dotClassNamePatterns) {
+        for (String dotClassNamePattern : dotClassNamePatterns) {
+            addPattern(dotClassNamePattern);
+        }
+    }
+
+    public ClassDescMatcher(String... dotClassNamePatterns) {
+        for (String dotClassNamePattern : dotClassNamePatterns) {
+            addPattern(dotClassNamePattern);
+        }
+    }
+
+    public boolean isEmpty() {
+        return isEmpty;
+    }
+
+    public boolean matches(String classDesc) {
+        if (isEmpty) {
+            return false;
+        }
+        if (exactDescs.contains(classDesc)) {
+            return true;
+        }
+        TrieNode node = root;
+        int length = classDesc.length();
+        for (int i = 0; node != null; ++i) {
+            for (Tail tail : node.tails) {
+                if (tail.matches(classDesc, i)) {
+                    return true;
+                }
+            }
+            if (i == length) {
+                break;
+            }
+            node = node.getChild(classDesc.charAt(i));
+        }
+        for (Pattern pattern : fallbackPatterns) {
+            if (pattern.matcher(classDesc).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void addPattern(String dotClassNamePattern) {
+        String regEx = PatternUtils.dotClassNamePatternToDescriptorRegEx(dotClassNamePattern);
+        isEmpty = false;
+        int[] tokens = tokenize(regEx);
+        if (tokens == null) {
+            fallbackPatterns.add(Pattern.compile(regEx));
+            return;
+        }
+        int prefixLength = 0;
+        while (prefixLength < tokens.length && tokens[prefixLength] >= 0) {
+            ++prefixLength;
+        }
+        if (prefixLength == tokens.length) {
+            exactDescs.add(new String(tokens, 0, tokens.length));
+            return;
+        }
+        TrieNode node = root;
+        for (int i = 0; i < prefixLength; ++i) {
+            node = node.getOrCreateChild((char) tokens[i]);
+        }
+        int[] tail = new int[tokens.length - prefixLength];
+        System.arraycopy(tokens, prefixLength, tail, 0, tail.length);
+        node.tails.add(new Tail(tail));
+    }
+
+    /**
+     * Split {@code regEx} into literal chars and wildcards.
+     *
+     * @return null if {@code regEx} uses syntax other than literal chars, escaped chars,
+     * {@code .*}, {@code .?} and anchors at both ends.
+     */
+    private static int[] tokenize(String regEx) {
+        int start = 0;
+        int end = regEx.length();
+        if (end > 0 && regEx.charAt(0) == '^') {
+            ++start;
+        }
+        if (end - start > 0 && regEx.charAt(end - 1) == '$' && !isEscaped(regEx, end - 1)) {
+            --end;
+        }
+        int[] tokens = new int[end - start];
+        int tokenCount = 0;
+        for (int i = start; i < end; ++i) {
+            char ch = regEx.charAt(i);
+            if (ch == '\\') {
+                if (i + 1 >= end || Character.isLetterOrDigit(regEx.charAt(i + 1))) {
+                    return null;
+                }
+                tokens[tokenCount++] = regEx.charAt(++i);
+            } else if (ch == '.') {
+                if (i + 1 >= end) {
+                    return null;
+                }
+                char nextCh = regEx.charAt(++i);
+                if (nextCh == '*') {
+                    tokens[tokenCount++] = TOKEN_ANY_CHARS;
+                } else if (nextCh == '?') {
+                    tokens[tokenCount++] = TOKEN_ANY_CHAR_OPT;
+                } else {
+                    return null;
+                }
+            } else if ("^$|?*+()[]{}".indexOf(ch) >= 0) {
+                return null;
+            } else {
+                tokens[tokenCount++] = ch;
+            }
+        }
+        int[] result = new int[tokenCount];
+        System.arraycopy(tokens, 0, result, 0, tokenCount);
+        return result;
+    }
+
+    private static boolean isEscaped(String regEx, int index) {
+        int backslashCount = 0;
+        for (int i = index - 1; i >= 0 && regEx.charAt(i) == '\\'; --i) {
+            ++backslashCount;
+        }
+        return (backslashCount & 1) != 0;
+    }
+
+    /**
+     * Run {@code tail} as a nondeterministic automaton on {@code str} from {@code offset},
+     * where state i means the first i tokens have been matched.
+     */
+    private static boolean matchesTail(int[] tail, String str, int offset) {
+        int stateCount = tail.length + 1;
+        boolean[] states = new boolean[stateCount];
+        boolean[] nextStates = new boolean[stateCount];
+        states[0] = true;
+        closeStates(tail, states);
+        int length = str.length();
+        for (int i = offset; i < length; ++i) {
+            char ch = str.charAt(i);
+            boolean hasState = false;
+            for (int state = 0; state < tail.length; ++state) {
+                if (!states[state]) {
+                    continue;
+                }
+                int token = tail[state];
+                if (token == TOKEN_ANY_CHARS) {
+                    if (!isLineTerminator(ch)) {
+                        nextStates[state] = true;
+                        hasState = true;
+                    }
+                } else if (token == TOKEN_ANY_CHAR_OPT) {
+                    if (!isLineTerminator(ch)) {
+                        nextStates[state + 1] = true;
+                        hasState = true;
+                    }
+                } else if (token == ch) {
+                    nextStates[state + 1] = true;
+                    hasState = true;
+                }
+            }
+            if (!hasState) {
+                return false;
+            }
+            boolean[] temp = states;
+            states = nextStates;
+            nextStates = temp;
+            Arrays.fill(nextStates, false);
+            closeStates(tail, states);
+        }
+        return states[tail.length];
+    }
+
+    /**
+     * Wildcards can match nothing, so states before them also reach states after them.
+     */
+    private static void closeStates(int[] tail, boolean[] states) {
+        for (int state = 0; state < tail.length; ++state) {
+            if (states[state] && tail[state] < 0) {
+                states[state + 1] = true;
+            }
+        }
+    }
+
+    /**
+     * Chars that '.' in {@link Pattern} does not match by default.
+     */
+    private static boolean isLineTerminator(char ch) {
+        return ch == '\n' || ch == '\r' || ch == '\u0085' || ch == '\u2028' || ch == '\u2029';
+    }
+
+    /**
+     * Tokens of a pattern from its first wildcard. The common form like {@code .*;}, which is
+     * a single {@code .*} followed by literal chars, is matched by comparing the suffix only.
+     */
+    private static final class Tail {
+        private final int[] tokens;
+        private final String literalSuffix;
+
+        Tail(int[] tokens) {
+            this.tokens = tokens;
+            String suffix = null;
+            if (tokens[0] == TOKEN_ANY_CHARS) {
+                StringBuilder sb = new StringBuilder(tokens.length - 1);
+                for (int i = 1; i < tokens.length && tokens[i] >= 0; ++i) {
+                    sb.append((char) tokens[i]);
+                }
+                if (sb.length() == tokens.length - 1) {
+                    suffix = sb.toString();
+                }
+            }
+            this.literalSuffix = suffix;
+        }
+
+        boolean matches(String str, int offset) {
+            if (literalSuffix == null) {
+                return matchesTail(tokens, str, offset);
+            }
+            int anyCharsEnd = str.length() - literalSuffix.length();
+            if (anyCharsEnd < offset || !str.startsWith(literalSuffix, anyCharsEnd)) {
+                return false;
+            }
+            for (int i = offset; i < anyCharsEnd; ++i) {
+                if (isLineTerminator(str.charAt(i))) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class TrieNode {
+        private final char ch;
+        private TrieNode[] children = new TrieNode[0];
+        private final List<Tail> tails = new ArrayList<>(0);
+
+        TrieNode(char ch) {
+            this.ch = ch;
+        }
+
+        TrieNode getChild(char ch) {
+            for (TrieNode child : children) {
+                if (child.ch == ch) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        TrieNode getOrCreateChild(char ch) {
+            TrieNode child = getChild(ch);
+            if (child == null) {
+                child = new TrieNode(ch);
+                TrieNode[] newChildren = new TrieNode[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, children.length);
+                newChildren[children.length] = child;
+                children = newChildren;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.build.dexpatcher.util;
+
+import com.tencent.tinker.android.dex.Annotation;
+import com.tencent.tinker.android.dex.ClassData;
+import com.tencent.tinker.android.dex.Code;
+import com.tencent.tinker.android.dex.DebugInfoItem;
+import com.tencent.tinker.android.dex.EncodedValue;
+
+/**
+ * 64-bit content fingerprints of dex items.
+ *
+ * A fingerprint only covers members that take part in {@code compareTo} of the item,
+ * so two items which compare equal always have the same fingerprint. Different
+ * fingerprints therefore prove two items are different, while equal fingerprints
+ * still need a deep comparison to be sure.
+ */
+public final class ItemFingerprints {
+    private static final long SEED = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private ItemFingerprints() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static long of(Code code) {
+        long h = SEED;
+        h = mix(h, code.registersSize);
+        h = mix(h, code.insSize);
+        h = mix(h, code.outsSize);
+        h = mix(h, code.debugInfoOffset);
+        h = mix(h, code.instructions);
+        h = mix(h, code.tries.length);
+        for (Code.Try tryItem : code.tries) {
+            h = mix(h, tryItem.startAddress);
+            h = mix(h, tryItem.instructionCount);
+            h = mix(h, tryItem.catchHandlerIndex);
+        }
+        h = mix(h, code.catchHandlers.length);
+        for (Code.CatchHandler catchHandler : code.catchHandlers) {
+            h = mix(h, catchHandler.typeIndexes);
+            h = mix(h, catchHandler.addresses);
+            h = mix(h, catchHandler.catchAllAddress);
+        }
+        return finish(h);
+    }
+
+    public static long of(ClassData classData) {
+        long h = SEED;
+        h = mix(h, classData.staticFields);
+        h = mix(h, classData.instanceFields);
+        h = mix(h, classData.directMethods);
+        h = mix(h, classData.virtualMethods);
+        return finish(h);
+    }
+
+    public static long of(DebugInfoItem debugInfoItem) {
+        long h = SEED;
+        h = mix(h, debugInfoItem.lineStart);
+        h = mix(h, debugInfoItem.parameterNames);
+        h = mix(h, debugInfoItem.infoSTM);
+        return finish(h);
+    }
+
+    /**
+     * Visibility is not covered since {@link Annotation#compareTo} ignores it.
+     */
+    public static long of(Annotation annotation) {
+        return of(annotation.encodedAnnotation);
+    }
+
+    public static long of(EncodedValue encodedValue) {
+        return finish(mix(SEED, encodedValue.data));
+    }
+
+    private static long mix(long h, int value) {
+        h = (h ^ (value & 0xFFFFFFFFL)) * PRIME;
+        return h ^ (h >>> 29);
+    }
+
+    private static long mix(long h, int[] values) {
+        h = mix(h, values.length);
+        for (int value : values) {
+            h = mix(h, value);
+        }
+        return h;
+    }
+
+    private static long mix(long h, short[] values) {
+        int length = values.length;
+        h = mix(h, length);
+        int i = 0;
+        for (; i + 1 < length; i += 2) {
+            h = mix(h, (values[i] & 0xFFFF) | (values[i + 1] << 16));
+        }
+        if (i < length) {
+            h = mix(h, values[i] & 0xFFFF);
+        }
+        return h;
+    }
+
+    private static long mix(long h, byte[] values) {
+        int length = values.length;
+        h = mix(h, length);
+        int i = 0;
+        for (; i + 3 < length; i += 4) {
+            h = mix(h, (values[i] & 0xFF) | ((values[i + 1] & 0xFF) << 8)
+                    | ((values[i + 2] & 0xFF) << 16) | (values[i + 3] << 24));
+        }
+        for (; i < length; ++i) {
+            h = mix(h, values[i] & 0xFF);
+        }
+        return h;
+    }
+
+    private static long mix(long h, ClassData.Field[] fields) {
+        h = mix(h, fields.length);
+        for (ClassData.Field field : fields) {
+            h = mix(h, field.fieldIndex);
+            h = mix(h, field.accessFlags);
+        }
+        return h;
+    }
+
+    private static long mix(long h, ClassData.Method[] methods) {
+        h = mix(h, methods.length);
+        for (ClassData.Method method : methods) {
+            h = mix(h, method.methodIndex);
+            h = mix(h, method.accessFlags);
+            h = mix(h, method.codeOffset);
+        }
+        return h;
+    }
+
+    private static long finish(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        return h ^ (h >>> 33);
+    }
+}
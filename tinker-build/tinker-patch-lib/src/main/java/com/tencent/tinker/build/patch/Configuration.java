@@ -17,6 +17,7 @@
 package com.tencent.tinker.build.patch;
 
 import com.tencent.tinker.build.util.FileOperation;
+import com.tencent.tinker.build.util.ParallelZipWriter;
 import com.tencent.tinker.build.util.TinkerPatchException;
 import com.tencent.tinker.build.util.TypedValue;
 import com.tencent.tinker.build.util.Utils;
@@ -34,6 +35,8 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.regex.Pattern;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -62,6 +65,9 @@ public class Configuration {
     protected static final String ATTR_IGNORE_WARNING    = "ignoreWarning";
     protected static final String ATTR_USE_SIGN          = "useSign";
     protected static final String ATTR_SEVEN_ZIP_PATH    = "sevenZipPath";
+    protected static final String ATTR_THREAD_COUNT      = "threadCount";
+    protected static final String ATTR_BUILD_CACHE_DIR   = "buildCacheDir";
+    protected static final String ATTR_COMPRESS_LEVEL    = "compressLevel";
     protected static final String ATTR_DEX_MODE          = "dexMode";
     protected static final String ATTR_PATTERN           = "pattern";
     protected static final String ATTR_RES_IGNORE_CHANGE = "ignoreChange";
@@ -83,6 +89,19 @@ public class Configuration {
     public File             mOldApkFile;
     public File             mNewApkFile;
     public boolean          mIgnoreWarning;
+    /**
+     * worker threads used by decoders which support parallel mode, 1 means serial
+     */
+    public int              mThreadCount;
+    /**
+     * directory of the persistent build cache shared between patch builds, null means disabled
+     */
+    public File             mBuildCacheDir;
+    /**
+     * deflate level of patch and resource zip entries by entry name pattern, the first matching
+     * pattern wins and other entries use the default level
+     */
+    public LinkedHashMap<Pattern, Integer> mCompressLevels;
 
     /**
      * lib config
@@ -148,6 +167,7 @@ public class Configuration {
         mResIgnoreChangePattern = new HashSet<>();
 
         mPackageFields = new HashMap<>();
+        mCompressLevels = new LinkedHashMap<>();
         mOutFolder = outputFile.getAbsolutePath();
         FileOperation.cleanDir(outputFile);
 
@@ -157,6 +177,7 @@ public class Configuration {
         mNewApkFile = newApkFile;
         mNewApkPath = newApkFile.getAbsolutePath();
         mLargeModSize = 100;
+        mThreadCount = 1;
         readXmlConfig(config);
         createTempDirectory();
         checkInputPatternParameter();
@@ -177,6 +198,7 @@ public class Configuration {
         mResIgnoreChangePattern = new HashSet<>();
 
         mPackageFields = new HashMap<>();
+        mCompressLevels = new LinkedHashMap<>();
 
         for (String item : param.soFilePattern) {
             addToPatterns(item, mSoFilePattern);
@@ -214,6 +236,15 @@ public class Configuration {
         mOutFolder = param.outFolder;
 
         mIgnoreWarning = param.ignoreWarning;
+        mThreadCount = param.threadCount > 0 ? param.threadCount : 1;
+        if (param.buildCacheDir != null && param.buildCacheDir.length() > 0) {
+            mBuildCacheDir = new File(param.buildCacheDir);
+        }
+        if (param.compressLevels != null) {
+            for (Map.Entry<String, Integer> entry : param.compressLevels.entrySet()) {
+                addCompressLevel(entry.getKey(), entry.getValue());
+            }
+        }
 
         mSevenZipPath = param.sevenZipPath;
         mPackageFields = param.configFields;
@@ -236,6 +267,11 @@ public class Configuration {
         sb.append("newApk:" + mNewApkPath + "\n");
         sb.append("outputFolder:" + mOutFolder + "\n");
         sb.append("isIgnoreWarning:" + mIgnoreWarning + "\n");
+        sb.append("threadCount:" + mThreadCount + "\n");
+        sb.append("buildCacheDir:" + mBuildCacheDir + "\n");
+        for (Map.Entry<Pattern, Integer> entry : mCompressLevels.entrySet()) {
+            sb.append("compressLevel:" + entry.getKey().toString() + " -> " + entry.getValue() + "\n");
+        }
         sb.append("7-ZipPath:" + mSevenZipPath + "\n");
         sb.append("useSignAPk:" + mUseSignAPk + "\n");
 
@@ -332,6 +368,9 @@ public class Configuration {
         if (mLargeModSize <= 0) {
             throw new TinkerPatchException("largeModSize must be larger than 0");
         }
+        if (mThreadCount <= 0) {
+            throw new TinkerPatchException("threadCount must be larger than 0");
+        }
 
     }
 
@@ -418,6 +457,14 @@ public class Configuration {
                         } else {
                             mSevenZipPath = "7za";
                         }
+                    } else if (tagName.equals(ATTR_THREAD_COUNT)) {
+                        mThreadCount = Integer.valueOf(value);
+                    } else if (tagName.equals(ATTR_BUILD_CACHE_DIR)) {
+                        mBuildCacheDir = new File(value);
+                    } else if (tagName.equals(ATTR_COMPRESS_LEVEL)) {
+                        // Without a pattern the level applies to all remaining entries.
+                        String pattern = check.getAttribute(ATTR_PATTERN);
+                        addCompressLevel(pattern.length() > 0 ? pattern : "*", Integer.valueOf(value));
                     } else {
                         System.err.println("unknown property tag " + tagName);
                     }
@@ -564,6 +611,17 @@ public class Configuration {
         }
     }
 
+    private void addCompressLevel(String pattern, int level) throws IOException {
+        try {
+            ParallelZipWriter.checkCompressLevel(level);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(
+                String.format("Invalid config: compressLevel of %s must be from -1 to 9, but it is %d\n", pattern, level)
+            );
+        }
+        mCompressLevels.put(Pattern.compile(Utils.convertToPatternString(pattern)), level);
+    }
+
     private void addToPatterns(String value, HashSet<Pattern> patterns) throws IOException {
         if (value.length() == 0) {
             throw new IOException(
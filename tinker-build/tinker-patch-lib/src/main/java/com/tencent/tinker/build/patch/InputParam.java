@@ -19,6 +19,7 @@ package com.tencent.tinker.build.patch;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 
 /**
  * Created by zhangshaowen on 1/9/16.
@@ -36,6 +37,12 @@ public class InputParam {
     public final String  storepass;
     public final boolean ignoreWarning;
     public final boolean useSign;
+    public final int     threadCount;
+    public final String  buildCacheDir;
+    /**
+     * tinkerPatch.compressLevel, entry name pattern to deflate level
+     */
+    public final LinkedHashMap<String, Integer> compressLevels;
 
     /**
      * tinkerPatch.dex
@@ -82,6 +89,9 @@ public class InputParam {
         String storepass,
         boolean ignoreWarning,
         boolean useSign,
+        int threadCount,
+        String buildCacheDir,
+        LinkedHashMap<String, Integer> compressLevels,
 
         ArrayList<String> dexFilePattern,
         ArrayList<String> dexLoaderPattern,
@@ -104,6 +114,9 @@ public class InputParam {
         this.storepass = storepass;
         this.ignoreWarning = ignoreWarning;
         this.useSign = useSign;
+        this.threadCount = threadCount;
+        this.buildCacheDir = buildCacheDir;
+        this.compressLevels = compressLevels;
 
         this.dexFilePattern = dexFilePattern;
         this.dexLoaderPattern = dexLoaderPattern;
@@ -133,6 +146,9 @@ public class InputParam {
         private String  storepass;
         private boolean ignoreWarning;
         private boolean useSign;
+        private int     threadCount;
+        private String  buildCacheDir;
+        private LinkedHashMap<String, Integer> compressLevels;
 
         /**
          * tinkerPatch.dex
@@ -268,6 +284,21 @@ public class InputParam {
             return this;
         }
 
+        public Builder setThreadCount(int threadCount) {
+            this.threadCount = threadCount;
+            return this;
+        }
+
+        public Builder setBuildCacheDir(String buildCacheDir) {
+            this.buildCacheDir = buildCacheDir;
+            return this;
+        }
+
+        public Builder setCompressLevels(LinkedHashMap<String, Integer> compressLevels) {
+            this.compressLevels = compressLevels;
+            return this;
+        }
+
         public InputParam create() {
             return new InputParam(
                     oldApk,
@@ -279,6 +310,9 @@ public class InputParam {
                     storepass,
                     ignoreWarning,
                     useSign,
+                    threadCount,
+                    buildCacheDir,
+                    compressLevels,
                     dexFilePattern,
                     dexLoaderPattern,
                     dexMode,
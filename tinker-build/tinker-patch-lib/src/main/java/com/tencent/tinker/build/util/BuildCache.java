@@ -0,0 +1,174 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.build.util;
+
+import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Persistent on-disk cache of decoder outputs shared between patch builds.
+ *
+ * An entry holds one or more output files and is keyed by the content hashes of its inputs
+ * together with every config value the outputs depend on, see {@link #newKey(String, Object...)}.
+ * Every key also contains the version of the build tool and of the dex patch format, so entries
+ * stored by another tinker version are never restored. Since keys never depend on paths or
+ * timestamps, an entry stays valid for as long as the cache directory is kept, and the directory
+ * can be removed at any time to drop all entries.
+ *
+ * If the build tool version is unknown, which happens when it does not run from its jar,
+ * the cache is disabled.
+ *
+ * Entries are published by an atomic rename, so concurrent builds sharing one cache directory
+ * never see partially written entries. Any failure of the cache itself is logged and treated as
+ * a miss, it never fails the build.
+ */
+public final class BuildCache {
+    /**
+     * Bump it whenever the layout of cache entries changes.
+     */
+    private static final String FORMAT_VERSION = "2";
+
+    /**
+     * Implementation-Version from the manifest of the jar this class is loaded from.
+     */
+    private static final String TOOL_VERSION = getToolVersion();
+
+    private static final AtomicBoolean UNKNOWN_VERSION_WARNED = new AtomicBoolean(false);
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final AtomicInteger TEMP_ID = new AtomicInteger();
+
+    private final File cacheDir;
+
+    /**
+     * @param cacheDir directory of the cache, null means the cache is disabled.
+     */
+    public BuildCache(File cacheDir) {
+        if (cacheDir != null && TOOL_VERSION == null) {
+            if (UNKNOWN_VERSION_WARNED.compareAndSet(false, true)) {
+                Logger.e("Warning: version of tinker build tool is unknown, build cache %s is disabled.", cacheDir);
+            }
+            cacheDir = null;
+        }
+        this.cacheDir = cacheDir;
+    }
+
+    public boolean isEnabled() {
+        return cacheDir != null;
+    }
+
+    private static String getToolVersion() {
+        Package pkg = BuildCache.class.getPackage();
+        return (pkg != null ? pkg.getImplementationVersion() : null);
+    }
+
+    /**
+     * Returns the key of an entry of {@code kind} built from {@code parts},
+     * or null if any part is null or the build tool version is unknown, which is treated as
+     * a miss by {@link #restore} and ignored by {@link #store}.
+     */
+    public static String newKey(String kind, Object... parts) {
+        if (TOOL_VERSION == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(FORMAT_VERSION)
+                .append('|').append(TOOL_VERSION)
+                .append('|').append(DexPatchFile.CURRENT_VERSION)
+                .append('|').append(kind);
+        for (Object part : parts) {
+            if (part == null) {
+                return null;
+            }
+            sb.append('|').append(part);
+        }
+        return MD5.getMessageDigest(sb.toString().getBytes(UTF_8));
+    }
+
+    /**
+     * Copies files of the entry of {@code key} to {@code outputs} in the same order they were stored.
+     *
+     * @return true if the entry exists and all its files were copied.
+     */
+    public boolean restore(String key, File... outputs) {
+        if (cacheDir == null || key == null) {
+            return false;
+        }
+        File entryDir = new File(cacheDir, key);
+        if (!entryDir.isDirectory()) {
+            return false;
+        }
+        try {
+            for (int i = 0; i < outputs.length; ++i) {
+                File cached = new File(entryDir, String.valueOf(i));
+                if (!cached.isFile()) {
+                    return false;
+                }
+                File parent = outputs[i].getParentFile();
+                if (parent != null && !parent.exists()) {
+                    parent.mkdirs();
+                }
+                Files.copy(cached.toPath(), outputs[i].toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+            // Let external cleanup jobs evict least recently used entries first.
+            entryDir.setLastModified(System.currentTimeMillis());
+            return true;
+        } catch (IOException e) {
+            Logger.e("Warning: failed to restore build cache entry %s, %s", key, e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Stores copies of {@code outputs} as the entry of {@code key}, an existing entry is kept as is.
+     */
+    public void store(String key, File... outputs) {
+        if (cacheDir == null || key == null) {
+            return;
+        }
+        File entryDir = new File(cacheDir, key);
+        if (entryDir.exists()) {
+            return;
+        }
+        File tempDir = new File(cacheDir, key + ".tmp" + TEMP_ID.incrementAndGet() + "_" + System.nanoTime());
+        try {
+            if (!tempDir.mkdirs()) {
+                throw new IOException("can not create " + tempDir.getAbsolutePath());
+            }
+            for (int i = 0; i < outputs.length; ++i) {
+                Files.copy(outputs[i].toPath(), new File(tempDir, String.valueOf(i)).toPath());
+            }
+            Files.move(tempDir.toPath(), entryDir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            // Another build may have published the same entry in the meantime, which is fine.
+            if (!entryDir.exists()) {
+                Logger.e("Warning: failed to store build cache entry %s, %s", key, e.getMessage());
+            }
+        } finally {
+            if (tempDir.exists()) {
+                FileOperation.deleteDir(tempDir);
+            }
+        }
+    }
+}
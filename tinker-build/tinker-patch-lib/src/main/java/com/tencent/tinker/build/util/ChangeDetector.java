@@ -0,0 +1,86 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.build.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Tiered change detection of files extracted from old and new apk.
+ *
+ * Two files are compared by their lengths first, then by crc32 of their zip entries which
+ * are read once from central directories of both apks, so no file content is read for most
+ * pairs. Only if the crc of either entry is unknown are md5 of both files computed.
+ */
+public final class ChangeDetector {
+    private final File oldApkFile;
+    private final File newApkFile;
+
+    private Map<String, Long> oldEntryCrcs;
+    private Map<String, Long> newEntryCrcs;
+
+    public ChangeDetector(File oldApkFile, File newApkFile) {
+        this.oldApkFile = oldApkFile;
+        this.newApkFile = newApkFile;
+    }
+
+    /**
+     * @param entryName name of the zip entry both files were extracted from.
+     */
+    public boolean isChanged(String entryName, File oldFile, File newFile) throws IOException {
+        if (oldFile.length() != newFile.length()) {
+            return true;
+        }
+        loadEntryCrcs();
+        Long oldCrc = oldEntryCrcs.get(entryName);
+        Long newCrc = newEntryCrcs.get(entryName);
+        if (oldCrc != null && newCrc != null) {
+            return oldCrc.longValue() != newCrc.longValue();
+        }
+        String oldMd5 = MD5.getMD5(oldFile);
+        return oldMd5 == null || !oldMd5.equals(MD5.getMD5(newFile));
+    }
+
+    private synchronized void loadEntryCrcs() throws IOException {
+        if (oldEntryCrcs == null) {
+            oldEntryCrcs = readEntryCrcs(oldApkFile);
+            newEntryCrcs = readEntryCrcs(newApkFile);
+        }
+    }
+
+    private static Map<String, Long> readEntryCrcs(File apkFile) throws IOException {
+        Map<String, Long> result = new HashMap<>();
+        ZipFile zipFile = new ZipFile(apkFile);
+        try {
+            Enumeration<? extends ZipEntry> entries = zipFile.entries();
+            while (entries.hasMoreElements()) {
+                ZipEntry entry = entries.nextElement();
+                if (!entry.isDirectory() && entry.getCrc() != -1) {
+                    result.put(entry.getName(), entry.getCrc());
+                }
+            }
+        } finally {
+            zipFile.close();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.build.util;
+
+import com.tencent.tinker.android.dex.Dex;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.SoftReference;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of parsed {@link Dex} instances shared by all consumers during one patch run,
+ * so that each dex file is parsed and hashed only once.
+ *
+ * Entries are keyed by file path, length and last modified time, which means a file
+ * rewritten during the run is parsed again. Cached dexes are softly referenced and
+ * at most {@code maxEntries} of them are kept, least recently used ones are evicted first.
+ *
+ * Since cached dexes are looked up over and over by all consumers, their string cache
+ * is enabled, see {@link Dex#enableStringCache()}.
+ */
+public final class DexCache {
+    private static final int DEFAULT_MAX_ENTRIES = 32;
+
+    private final Map<Key, SoftReference<Dex>> cache;
+
+    public DexCache() {
+        this(DEFAULT_MAX_ENTRIES);
+    }
+
+    public DexCache(final int maxEntries) {
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be larger than 0.");
+        }
+        this.cache = new LinkedHashMap<Key, SoftReference<Dex>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, SoftReference<Dex>> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the parsed dex of {@code file}, parses it if it was not cached yet.
+     */
+    public synchronized Dex get(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null.");
+        }
+        Key key = new Key(file);
+        SoftReference<Dex> ref = cache.get(key);
+        Dex dex = (ref != null ? ref.get() : null);
+        if (dex == null) {
+            dex = Dex.mapFromFile(file);
+            dex.enableStringCache();
+            cache.put(key, new SoftReference<>(dex));
+        }
+        return dex;
+    }
+
+    /**
+     * Returns estimated heap usage in bytes of string caches of all dexes still in this cache.
+     */
+    public synchronized long getStringCacheMemoryUsage() {
+        long result = 0;
+        for (SoftReference<Dex> ref : cache.values()) {
+            Dex dex = ref.get();
+            if (dex != null) {
+                result += dex.getStringCacheMemoryUsage();
+            }
+        }
+        return result;
+    }
+
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    private static final class Key {
+        private final String path;
+        private final long   length;
+        private final long   lastModified;
+
+        Key(File file) throws IOException {
+            this.path = file.getCanonicalPath();
+            this.length = file.length();
+            this.lastModified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return length == other.length && lastModified == other.lastModified && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = path.hashCode();
+            result = 31 * result + (int) (length ^ (length >>> 32));
+            result = 31 * result + (int) (lastModified ^ (lastModified >>> 32));
+            return result;
+        }
+    }
+}
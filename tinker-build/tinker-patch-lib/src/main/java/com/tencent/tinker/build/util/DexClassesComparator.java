@@ -36,7 +36,7 @@ import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.TypeList;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.android.dx.instruction.InstructionComparator;
-import com.tencent.tinker.build.dexpatcher.util.PatternUtils;
+import com.tencent.tinker.build.dexpatcher.util.ClassDescMatcher;
 import com.tencent.tinker.commons.dexpatcher.DexPatcherLogger;
 import com.tencent.tinker.commons.dexpatcher.DexPatcherLogger.IDexPatcherLogger;
 
@@ -48,10 +48,15 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Created by tangyinsheng on 2016/4/14.
@@ -63,12 +68,14 @@ public final class DexClassesComparator {
     private static final int DBG_FIRST_SPECIAL = 0x0A;  // the smallest special opcode
     private static final int DBG_LINE_BASE   = -4;      // the smallest line number increment
     private static final int DBG_LINE_RANGE  = 15;      // the number of line increments represented
+    // Each thread takes several batches so that threads finishing early can pick up the rest.
+    private static final int BATCHES_PER_THREAD = 4;
     private final List<DexClassInfo> addedClassInfoList = new ArrayList<>();
     private final List<DexClassInfo> deletedClassInfoList = new ArrayList<>();
-    // classDesc => [oldClassInfo, newClassInfo]
-    private final Map<String, DexClassInfo[]> changedClassDescToClassInfosMap = new HashMap<>();
-    private final Set<Pattern> patternsOfClassDescToCheck = new HashSet<>();
-    private final Set<Pattern> patternsOfIgnoredRemovedClassDesc = new HashSet<>();
+    // classDesc => [oldClassInfo, newClassInfo], in order of classDesc.
+    private final Map<String, DexClassInfo[]> changedClassDescToClassInfosMap = new LinkedHashMap<>();
+    private final ClassDescMatcher classDescToCheckMatcher;
+    private ClassDescMatcher ignoredRemovedClassDescMatcher = new ClassDescMatcher();
     private final Set<String> oldDescriptorOfClassesToCheck = new HashSet<>();
     private final Set<String> newDescriptorOfClassesToCheck = new HashSet<>();
     private final Map<String, DexClassInfo> oldClassDescriptorToClassInfoMap = new HashMap<>();
@@ -76,57 +83,31 @@ public final class DexClassesComparator {
     // Record class descriptors whose references key (index or offset) of methods and fields
     // are changed.
     private final Set<String> refAffectedClassDescs = new HashSet<>();
+    // Memorized results of id comparisons, one entry for each pair of compared dexes.
+    private final List<IdEquivalenceTables> idEquivalenceTablesList = new ArrayList<>();
+    private volatile IdEquivalenceTables lastIdEquivalenceTables = null;
     private final DexPatcherLogger logger = new DexPatcherLogger();
     private int compareMode = COMPARE_MODE_NORMAL;
+    private int threadCount = 1;
 
     public DexClassesComparator(String patternStringOfClassDescToCheck) {
-        patternsOfClassDescToCheck.add(
-            Pattern.compile(
-                PatternUtils.dotClassNamePatternToDescriptorRegEx(patternStringOfClassDescToCheck)
-            )
-        );
+        classDescToCheckMatcher = new ClassDescMatcher(patternStringOfClassDescToCheck);
     }
 
     public DexClassesComparator(String... patternStringsOfClassDescToCheck) {
-        for (String patternStr : patternStringsOfClassDescToCheck) {
-            patternsOfClassDescToCheck.add(
-                    Pattern.compile(
-                            PatternUtils.dotClassNamePatternToDescriptorRegEx(patternStr)
-                    )
-            );
-        }
+        classDescToCheckMatcher = new ClassDescMatcher(patternStringsOfClassDescToCheck);
     }
 
     public DexClassesComparator(Collection<String> patternStringsOfClassDescToCheck) {
-        for (String patternStr : patternStringsOfClassDescToCheck) {
-            patternsOfClassDescToCheck.add(
-                Pattern.compile(
-                    PatternUtils.dotClassNamePatternToDescriptorRegEx(patternStr)
-                )
-            );
-        }
+        classDescToCheckMatcher = new ClassDescMatcher(patternStringsOfClassDescToCheck);
     }
 
     public void setIgnoredRemovedClassDescPattern(String... patternStringsOfLoaderClassDesc) {
-        patternsOfIgnoredRemovedClassDesc.clear();
-        for (String patternStr : patternStringsOfLoaderClassDesc) {
-            patternsOfIgnoredRemovedClassDesc.add(
-                    Pattern.compile(
-                            PatternUtils.dotClassNamePatternToDescriptorRegEx(patternStr)
-                    )
-            );
-        }
+        ignoredRemovedClassDescMatcher = new ClassDescMatcher(patternStringsOfLoaderClassDesc);
     }
 
     public void setIgnoredRemovedClassDescPattern(Collection<String> patternStringsOfLoaderClassDesc) {
-        patternsOfIgnoredRemovedClassDesc.clear();
-        for (String patternStr : patternStringsOfLoaderClassDesc) {
-            patternsOfIgnoredRemovedClassDesc.add(
-                Pattern.compile(
-                    PatternUtils.dotClassNamePatternToDescriptorRegEx(patternStr)
-                )
-            );
-        }
+        ignoredRemovedClassDescMatcher = new ClassDescMatcher(patternStringsOfLoaderClassDesc);
     }
 
     public void setCompareMode(int mode) {
@@ -137,6 +118,20 @@ public final class DexClassesComparator {
         }
     }
 
+    /**
+     * Set how many threads can be used to compare classes in {@link #COMPARE_MODE_NORMAL},
+     * 1 by default which means all classes are compared in current thread.
+     *
+     * Changed classes are always collected in order of their descriptors, so the result
+     * does not depend on this value.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("threadCount must be larger than 0.");
+        }
+        this.threadCount = threadCount;
+    }
+
     public void setLogger(IDexPatcherLogger logger) {
         this.logger.setLoggerImpl(logger);
     }
@@ -153,8 +148,16 @@ public final class DexClassesComparator {
         return Collections.unmodifiableMap(changedClassDescToClassInfosMap);
     }
 
+    /**
+     * Dexes loaded from {@code oldDexFile} and {@code newDexFile} here have their
+     * string cache enabled, see {@link Dex#enableStringCache()}.
+     */
     public void startCheck(File oldDexFile, File newDexFile) throws IOException {
-        startCheck(new Dex(oldDexFile), new Dex(newDexFile));
+        Dex oldDex = Dex.mapFromFile(oldDexFile);
+        Dex newDex = Dex.mapFromFile(newDexFile);
+        oldDex.enableStringCache();
+        newDex.enableStringCache();
+        startCheck(oldDex, newDex);
     }
 
     public void startCheck(Dex oldDex, Dex newDex) {
@@ -171,6 +174,10 @@ public final class DexClassesComparator {
         oldClassDescriptorToClassInfoMap.clear();
         newClassDescriptorToClassInfoMap.clear();
         refAffectedClassDescs.clear();
+        synchronized (idEquivalenceTablesList) {
+            idEquivalenceTablesList.clear();
+            lastIdEquivalenceTables = null;
+        }
 
         // Map classDesc and typeIndex to classInfo
         // and collect typeIndex of classes to check in oldDexes.
@@ -178,7 +185,7 @@ public final class DexClassesComparator {
             int classDefIndex = 0;
             for (ClassDef oldClassDef : oldDex.classDefs()) {
                 String desc = oldDex.typeNames().get(oldClassDef.typeIndex);
-                if (Utils.isStringMatchesPatterns(desc, patternsOfClassDescToCheck)) {
+                if (classDescToCheckMatcher.matches(desc)) {
                     if (!oldDescriptorOfClassesToCheck.add(desc)) {
                         throw new IllegalStateException(
                                 String.format(
@@ -200,7 +207,7 @@ public final class DexClassesComparator {
             int classDefIndex = 0;
             for (ClassDef newClassDef : newDex.classDefs()) {
                 String desc = newDex.typeNames().get(newClassDef.typeIndex);
-                if (Utils.isStringMatchesPatterns(desc, patternsOfClassDescToCheck)) {
+                if (classDescToCheckMatcher.matches(desc)) {
                     if (!newDescriptorOfClassesToCheck.add(desc)) {
                         throw new IllegalStateException(
                                 String.format(
@@ -222,7 +229,7 @@ public final class DexClassesComparator {
         for (String desc : deletedClassDescs) {
             // These classes are deleted as we expect to, so we remove them
             // from result.
-            if (Utils.isStringMatchesPatterns(desc, patternsOfIgnoredRemovedClassDesc)) {
+            if (ignoredRemovedClassDescMatcher.matches(desc)) {
                 logger.i(TAG, "Ignored deleted class: %s", desc);
                 continue;
             } else {
@@ -239,28 +246,33 @@ public final class DexClassesComparator {
             addedClassInfoList.add(newClassDescriptorToClassInfoMap.get(desc));
         }
 
-        Set<String> mayBeChangedClassDescs = new HashSet<>(oldDescriptorOfClassesToCheck);
+        List<String> mayBeChangedClassDescs = new ArrayList<>(oldDescriptorOfClassesToCheck);
         mayBeChangedClassDescs.retainAll(newDescriptorOfClassesToCheck);
-
-        for (String desc : mayBeChangedClassDescs) {
-            DexClassInfo oldClassInfo = oldClassDescriptorToClassInfoMap.get(desc);
-            DexClassInfo newClassInfo = newClassDescriptorToClassInfoMap.get(desc);
-            switch (compareMode) {
-                case COMPARE_MODE_NORMAL: {
-                    if (!isSameClass(
-                            oldClassInfo.owner,
-                            newClassInfo.owner,
-                            oldClassInfo.classDef,
-                            newClassInfo.classDef
-                    )) {
+        Collections.sort(mayBeChangedClassDescs);
+
+        switch (compareMode) {
+            case COMPARE_MODE_NORMAL: {
+                boolean[] isSameClassResults = compareClasses(mayBeChangedClassDescs);
+                for (int i = 0; i < mayBeChangedClassDescs.size(); ++i) {
+                    if (!isSameClassResults[i]) {
+                        String desc = mayBeChangedClassDescs.get(i);
                         logger.i(TAG, "Changed class: %s", desc);
                         changedClassDescToClassInfosMap.put(
-                                desc, new DexClassInfo[]{oldClassInfo, newClassInfo}
+                                desc, new DexClassInfo[]{
+                                        oldClassDescriptorToClassInfoMap.get(desc),
+                                        newClassDescriptorToClassInfoMap.get(desc)
+                                }
                         );
                     }
-                    break;
                 }
-                case COMPARE_MODE_CAUSE_REF_CHANGE_ONLY: {
+                break;
+            }
+            case COMPARE_MODE_CAUSE_REF_CHANGE_ONLY: {
+                // Results of superclasses are memorized in refAffectedClassDescs and reused
+                // by their subclasses, so classes are checked one by one here.
+                for (String desc : mayBeChangedClassDescs) {
+                    DexClassInfo oldClassInfo = oldClassDescriptorToClassInfoMap.get(desc);
+                    DexClassInfo newClassInfo = newClassDescriptorToClassInfoMap.get(desc);
                     if (isClassChangeAffectedToRef(
                             oldClassInfo.owner,
                             newClassInfo.owner,
@@ -272,9 +284,75 @@ public final class DexClassesComparator {
                                 desc, new DexClassInfo[]{oldClassInfo, newClassInfo}
                         );
                     }
-                    break;
                 }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Compare each class in {@code classDescs} with {@link #isSameClass}, on {@code threadCount}
+     * threads if it is larger than 1.
+     *
+     * Comparing classes only reads both dexes, which is safe on multiple threads since
+     * each {@link Dex.Section} works on its own duplicate of the dex buffer.
+     *
+     * @return whether each class in {@code classDescs} is the same in old and new dexes.
+     */
+    private boolean[] compareClasses(final List<String> classDescs) {
+        final boolean[] results = new boolean[classDescs.size()];
+        int batchCount = Math.min(threadCount * BATCHES_PER_THREAD, classDescs.size());
+        if (threadCount <= 1 || batchCount <= 1) {
+            compareClasses(classDescs, 0, classDescs.size(), results);
+            return results;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threadCount, batchCount));
+        try {
+            List<Future<Void>> futures = new ArrayList<>(batchCount);
+            for (int i = 0; i < batchCount; ++i) {
+                final int start = (int) ((long) classDescs.size() * i / batchCount);
+                final int end = (int) ((long) classDescs.size() * (i + 1) / batchCount);
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        compareClasses(classDescs, start, end, results);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while comparing classes.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
             }
+        } finally {
+            executor.shutdownNow();
+        }
+        return results;
+    }
+
+    private void compareClasses(List<String> classDescs, int start, int end, boolean[] results) {
+        for (int i = start; i < end; ++i) {
+            String desc = classDescs.get(i);
+            DexClassInfo oldClassInfo = oldClassDescriptorToClassInfoMap.get(desc);
+            DexClassInfo newClassInfo = newClassDescriptorToClassInfoMap.get(desc);
+            results[i] = isSameClass(
+                    oldClassInfo.owner,
+                    newClassInfo.owner,
+                    oldClassInfo.classDef,
+                    newClassInfo.classDef
+            );
         }
     }
 
@@ -356,7 +434,7 @@ public final class DexClassesComparator {
             } else {
                 // If current comparing class is ignored, since it must be removed
                 // in patched dexes as we expected, here we ignore this kind of changes.
-                return !Utils.isStringMatchesPatterns(oldClassDesc, patternsOfIgnoredRemovedClassDesc);
+                return !ignoredRemovedClassDescMatcher.matches(oldClassDesc);
             }
         } else {
             if (!(oldTypeId == ClassDef.NO_INDEX && newTypeId == ClassDef.NO_INDEX)) {
@@ -609,10 +687,40 @@ public final class DexClassesComparator {
         return isSameEncodedValue(oldDex, newDex, oldReader, newReader);
     }
 
+    private IdEquivalenceTables getIdEquivalenceTables(Dex oldDex, Dex newDex) {
+        IdEquivalenceTables tables = lastIdEquivalenceTables;
+        if (tables != null && tables.oldDex == oldDex && tables.newDex == newDex) {
+            return tables;
+        }
+        synchronized (idEquivalenceTablesList) {
+            tables = null;
+            for (IdEquivalenceTables candidate : idEquivalenceTablesList) {
+                if (candidate.oldDex == oldDex && candidate.newDex == newDex) {
+                    tables = candidate;
+                    break;
+                }
+            }
+            if (tables == null) {
+                tables = new IdEquivalenceTables(oldDex, newDex);
+                idEquivalenceTablesList.add(tables);
+            }
+            lastIdEquivalenceTables = tables;
+            return tables;
+        }
+    }
+
     private boolean isSameClassDesc(Dex oldDex, Dex newDex, int oldTypeId, int newTypeId) {
+        IdEquivalenceTable table = getIdEquivalenceTables(oldDex, newDex).types;
+        int state = table.get(oldTypeId, newTypeId);
+        if (state != IdEquivalenceTable.UNKNOWN) {
+            return state == IdEquivalenceTable.SAME;
+        }
+
         String oldClassDesc = oldDex.typeNames().get(oldTypeId);
         String newClassDesc = newDex.typeNames().get(newTypeId);
-        return oldClassDesc.equals(newClassDesc);
+        boolean result = oldClassDesc.equals(newClassDesc);
+        table.put(oldTypeId, newTypeId, result);
+        return result;
     }
 
     private boolean isSameName(Dex oldDex, Dex newDex, int oldStringId, int newStringId) {
@@ -625,7 +733,15 @@ public final class DexClassesComparator {
             return false;
         }
 
-        return oldDex.strings().get(oldStringId).equals(newDex.strings().get(newStringId));
+        IdEquivalenceTable table = getIdEquivalenceTables(oldDex, newDex).strings;
+        int state = table.get(oldStringId, newStringId);
+        if (state != IdEquivalenceTable.UNKNOWN) {
+            return state == IdEquivalenceTable.SAME;
+        }
+
+        boolean result = oldDex.strings().get(oldStringId).equals(newDex.strings().get(newStringId));
+        table.put(oldStringId, newStringId, result);
+        return result;
     }
 
     private boolean isSameAnnotationDirectory(
@@ -714,6 +830,18 @@ public final class DexClassesComparator {
     }
 
     private boolean isSameFieldId(Dex oldDex, Dex newDex, int oldFieldIdIdx, int newFieldIdIdx) {
+        IdEquivalenceTable table = getIdEquivalenceTables(oldDex, newDex).fieldIds;
+        int state = table.get(oldFieldIdIdx, newFieldIdIdx);
+        if (state != IdEquivalenceTable.UNKNOWN) {
+            return state == IdEquivalenceTable.SAME;
+        }
+
+        boolean result = isSameFieldIdUncached(oldDex, newDex, oldFieldIdIdx, newFieldIdIdx);
+        table.put(oldFieldIdIdx, newFieldIdIdx, result);
+        return result;
+    }
+
+    private boolean isSameFieldIdUncached(Dex oldDex, Dex newDex, int oldFieldIdIdx, int newFieldIdIdx) {
         FieldId oldFieldId = oldDex.fieldIds().get(oldFieldIdIdx);
         FieldId newFieldId = newDex.fieldIds().get(newFieldIdIdx);
 
@@ -735,6 +863,18 @@ public final class DexClassesComparator {
     }
 
     private boolean isSameMethodId(Dex oldDex, Dex newDex, int oldMethodIdIdx, int newMethodIdIdx) {
+        IdEquivalenceTable table = getIdEquivalenceTables(oldDex, newDex).methodIds;
+        int state = table.get(oldMethodIdIdx, newMethodIdIdx);
+        if (state != IdEquivalenceTable.UNKNOWN) {
+            return state == IdEquivalenceTable.SAME;
+        }
+
+        boolean result = isSameMethodIdUncached(oldDex, newDex, oldMethodIdIdx, newMethodIdIdx);
+        table.put(oldMethodIdIdx, newMethodIdIdx, result);
+        return result;
+    }
+
+    private boolean isSameMethodIdUncached(Dex oldDex, Dex newDex, int oldMethodIdIdx, int newMethodIdIdx) {
         MethodId oldMethodId = oldDex.methodIds().get(oldMethodIdIdx);
         MethodId newMethodId = newDex.methodIds().get(newMethodIdIdx);
 
@@ -754,6 +894,18 @@ public final class DexClassesComparator {
     }
 
     private boolean isSameProtoId(Dex oldDex, Dex newDex, int oldProtoIdIdx, int newProtoIdIdx) {
+        IdEquivalenceTable table = getIdEquivalenceTables(oldDex, newDex).protoIds;
+        int state = table.get(oldProtoIdIdx, newProtoIdIdx);
+        if (state != IdEquivalenceTable.UNKNOWN) {
+            return state == IdEquivalenceTable.SAME;
+        }
+
+        boolean result = isSameProtoIdUncached(oldDex, newDex, oldProtoIdIdx, newProtoIdIdx);
+        table.put(oldProtoIdIdx, newProtoIdIdx, result);
+        return result;
+    }
+
+    private boolean isSameProtoIdUncached(Dex oldDex, Dex newDex, int oldProtoIdIdx, int newProtoIdIdx) {
         ProtoId oldProtoId = oldDex.protoIds().get(oldProtoIdIdx);
         ProtoId newProtoId = newDex.protoIds().get(newProtoIdIdx);
 
@@ -1430,6 +1582,73 @@ public final class DexClassesComparator {
         return true;
     }
 
+    /**
+     * Memorized results of comparisons between ids of one kind in an old dex and ids of
+     * the same kind in a new dex.
+     *
+     * Ids of one kind are unique in a dex, so an old id is the same as at most one new id.
+     * For each old id, the new id it is known to be the same as is recorded, or the last new id
+     * it is known to be different from if no such new id is found yet. Since every recorded value
+     * is a fact, racing threads which overwrite each other's records never break the results.
+     */
+    private static final class IdEquivalenceTable {
+        static final int UNKNOWN = 0;
+        static final int SAME = 1;
+        static final int DIFFERENT = 2;
+
+        // 0 for unknown, newId + 1 for same, -(newId + 1) for different.
+        private final int[] states;
+
+        IdEquivalenceTable(int oldIdCount) {
+            this.states = new int[oldIdCount];
+        }
+
+        int get(int oldId, int newId) {
+            if (oldId < 0 || oldId >= states.length || newId < 0) {
+                return UNKNOWN;
+            }
+            int state = states[oldId];
+            if (state == newId + 1) {
+                return SAME;
+            } else if (state > 0 || state == -(newId + 1)) {
+                return DIFFERENT;
+            } else {
+                return UNKNOWN;
+            }
+        }
+
+        void put(int oldId, int newId, boolean isSame) {
+            if (oldId < 0 || oldId >= states.length || newId < 0) {
+                return;
+            }
+            if (isSame) {
+                states[oldId] = newId + 1;
+            } else if (states[oldId] <= 0) {
+                states[oldId] = -(newId + 1);
+            }
+        }
+    }
+
+    private static final class IdEquivalenceTables {
+        final Dex oldDex;
+        final Dex newDex;
+        final IdEquivalenceTable strings;
+        final IdEquivalenceTable types;
+        final IdEquivalenceTable fieldIds;
+        final IdEquivalenceTable methodIds;
+        final IdEquivalenceTable protoIds;
+
+        IdEquivalenceTables(Dex oldDex, Dex newDex) {
+            this.oldDex = oldDex;
+            this.newDex = newDex;
+            this.strings = new IdEquivalenceTable(oldDex.strings().size());
+            this.types = new IdEquivalenceTable(oldDex.typeIds().size());
+            this.fieldIds = new IdEquivalenceTable(oldDex.fieldIds().size());
+            this.methodIds = new IdEquivalenceTable(oldDex.methodIds().size());
+            this.protoIds = new IdEquivalenceTable(oldDex.protoIds().size());
+        }
+    }
+
     public static final class DexClassInfo {
         public String classDesc = null;
         public int classDefIndex = ClassDef.NO_INDEX;
@@ -1479,7 +1698,8 @@ public final class DexClassesComparator {
             }
             this.dexes = new Dex[dexFiles.length];
             for (int i = 0; i < dexFiles.length; ++i) {
-                this.dexes[i] = new Dex(dexFiles[i]);
+                this.dexes[i] = Dex.mapFromFile(dexFiles[i]);
+                this.dexes[i].enableStringCache();
             }
         }
 
@@ -1489,7 +1709,8 @@ public final class DexClassesComparator {
             }
             this.dexes = new Dex[dexFileList.size()];
             for (int i = 0; i < this.dexes.length; ++i) {
-                this.dexes[i] = new Dex(dexFileList.get(i));
+                this.dexes[i] = Dex.mapFromFile(dexFileList.get(i));
+                this.dexes[i].enableStringCache();
             }
         }
 
@@ -1497,14 +1718,23 @@ public final class DexClassesComparator {
             throw new UnsupportedOperationException();
         }
 
+        /**
+         * Wraps {@code dexes} as they are, their string cache is left untouched.
+         */
         public static DexGroup wrap(Dex... dexes) {
             return new DexGroup(dexes);
         }
 
+        /**
+         * Maps each of {@code dexFiles} and enables its string cache, see {@link Dex#enableStringCache()}.
+         */
         public static DexGroup wrap(File... dexFiles) throws IOException {
             return new DexGroup(dexFiles);
         }
 
+        /**
+         * Maps each of {@code dexFileList} and enables its string cache, see {@link Dex#enableStringCache()}.
+         */
         public static DexGroup wrap(List<File> dexFileList) throws IOException {
             return new DexGroup(dexFileList);
         }
@@ -19,7 +19,7 @@ package com.tencent.tinker.build.util;
 import com.tencent.tinker.android.dex.ClassDef;
 import com.tencent.tinker.android.dex.Dex;
 import com.tencent.tinker.android.dex.DexFormat;
-import com.tencent.tinker.build.dexpatcher.util.PatternUtils;
+import com.tencent.tinker.build.dexpatcher.util.ClassDescMatcher;
 import com.tencent.tinker.build.patch.Configuration;
 import com.tencent.tinker.build.util.DexClassesComparator.DexClassInfo;
 
@@ -30,7 +30,6 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * Created by tangyinsheng on 2016/4/14.
@@ -46,7 +45,9 @@ public final class ExcludedClassModifiedChecker {
     private static final int STMCODE_ERROR_LOADER_CLASS_CHANGED                    = 0x07;
     private static final int STMCODE_END                                           = 0x08;
     private final Configuration config;
+    private final DexCache dexCache;
     private final DexClassesComparator dexCmptor;
+    private final ClassDescMatcher loaderClassDescMatcher;
     private Dex oldDex = null;
     private Dex newDex = null;
     private List<DexClassInfo> deletedClassInfos = null;
@@ -56,8 +57,15 @@ public final class ExcludedClassModifiedChecker {
     private Set<String> newClassesDescToCheck = new HashSet<>();
 
     public ExcludedClassModifiedChecker(Configuration config) {
+        this(config, new DexCache());
+    }
+
+    public ExcludedClassModifiedChecker(Configuration config, DexCache dexCache) {
         this.config = config;
+        this.dexCache = dexCache;
         this.dexCmptor = new DexClassesComparator(config.mDexLoaderPattern);
+        this.dexCmptor.setThreadCount(config.mThreadCount);
+        this.loaderClassDescMatcher = new ClassDescMatcher(config.mDexLoaderPattern);
     }
 
     public void checkIfExcludedClassWasModifiedInNewDex(File oldFile, File newFile) throws IOException, TinkerPatchException {
@@ -65,8 +73,8 @@ public final class ExcludedClassModifiedChecker {
             throw new TinkerPatchException("both oldFile and newFile are null.");
         }
 
-        oldDex = (oldFile != null ? new Dex(oldFile) : null);
-        newDex = (newFile != null ? new Dex(newFile) : null);
+        oldDex = (oldFile != null ? dexCache.get(oldFile) : null);
+        newDex = (newFile != null ? dexCache.get(newFile) : null);
 
         int stmCode = STMCODE_START;
 
@@ -117,20 +125,11 @@ public final class ExcludedClassModifiedChecker {
                             }
                         }
                     } else {
-                        Set<Pattern> patternsOfClassDescToCheck = new HashSet<>();
-                        for (String patternStr : config.mDexLoaderPattern) {
-                            patternsOfClassDescToCheck.add(
-                                Pattern.compile(
-                                    PatternUtils.dotClassNamePatternToDescriptorRegEx(patternStr)
-                                )
-                            );
-                        }
-
                         if (oldDex != null) {
                             oldClassesDescToCheck.clear();
                             for (ClassDef classDef : oldDex.classDefs()) {
                                 String desc = oldDex.typeNames().get(classDef.typeIndex);
-                                if (Utils.isStringMatchesPatterns(desc, patternsOfClassDescToCheck)) {
+                                if (loaderClassDescMatcher.matches(desc)) {
                                     oldClassesDescToCheck.add(desc);
                                 }
                             }
@@ -144,7 +143,7 @@ public final class ExcludedClassModifiedChecker {
                             newClassesDescToCheck.clear();
                             for (ClassDef classDef : newDex.classDefs()) {
                                 String desc = newDex.typeNames().get(classDef.typeIndex);
-                                if (Utils.isStringMatchesPatterns(desc, patternsOfClassDescToCheck)) {
+                                if (loaderClassDescMatcher.matches(desc)) {
                                     newClassesDescToCheck.add(desc);
                                 }
                             }
@@ -20,7 +20,6 @@ import com.tencent.tinker.build.patch.Configuration;
 
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -30,12 +29,14 @@ import java.io.InputStreamReader;
 import java.io.LineNumberReader;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
 import java.util.zip.CRC32;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
 
 public class FileOperation {
     public static final boolean fileExists(String filePath) {
@@ -204,38 +205,43 @@ public class FileOperation {
                     new File(filePath, entry.getName()).mkdirs();
                     continue;
                 }
-                BufferedInputStream bis = new BufferedInputStream(zipFile.getInputStream(entry));
+                extractZipEntry(zipFile, entry, new File(filePath + File.separator + entry.getName()));
+            }
+        } finally {
+            if (zipFile != null) {
+                zipFile.close();
+            }
+        }
+    }
 
-                File file = new File(filePath + File.separator + entry.getName());
+    /**
+     * extract one file entry of zipFile to dest, parent directories of dest are created if needed
+     */
+    public static void extractZipEntry(ZipFile zipFile, ZipEntry entry, File dest) throws IOException {
+        BufferedInputStream bis = new BufferedInputStream(zipFile.getInputStream(entry));
 
-                File parentFile = file.getParentFile();
-                if (parentFile != null && (!parentFile.exists())) {
-                    parentFile.mkdirs();
-                }
-                FileOutputStream fos = null;
-                BufferedOutputStream bos = null;
-                try {
-                    fos = new FileOutputStream(file);
-                    bos = new BufferedOutputStream(fos, TypedValue.BUFFER_SIZE);
+        File parentFile = dest.getParentFile();
+        if (parentFile != null && (!parentFile.exists())) {
+            parentFile.mkdirs();
+        }
+        FileOutputStream fos = null;
+        BufferedOutputStream bos = null;
+        try {
+            fos = new FileOutputStream(dest);
+            bos = new BufferedOutputStream(fos, TypedValue.BUFFER_SIZE);
 
-                    byte[] buf = new byte[TypedValue.BUFFER_SIZE];
-                    int len;
-                    while ((len = bis.read(buf, 0, TypedValue.BUFFER_SIZE)) != -1) {
-                        fos.write(buf, 0, len);
-                    }
-                } finally {
-                    if (bos != null) {
-                        bos.flush();
-                        bos.close();
-                    }
-                    if (bis != null) {
-                        bis.close();
-                    }
-                }
+            byte[] buf = new byte[TypedValue.BUFFER_SIZE];
+            int len;
+            while ((len = bis.read(buf, 0, TypedValue.BUFFER_SIZE)) != -1) {
+                fos.write(buf, 0, len);
             }
         } finally {
-            if (zipFile != null) {
-                zipFile.close();
+            if (bos != null) {
+                bos.flush();
+                bos.close();
+            }
+            if (bis != null) {
+                bis.close();
             }
         }
     }
@@ -248,64 +254,54 @@ public class FileOperation {
      * @throws IOException
      */
     public static void zipFiles(Collection<File> resFileList, File zipFile) throws IOException {
-        ZipOutputStream zipout = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(zipFile), TypedValue.BUFFER_SIZE));
+        zipFiles(resFileList, zipFile, 1);
+    }
+
+    /**
+     * zip list of file, entries are compressed on threadCount threads,
+     * the output is the same whatever threadCount is
+     *
+     * @see ParallelZipWriter
+     */
+    public static void zipFiles(Collection<File> resFileList, File zipFile, int threadCount) throws IOException {
+        zipFiles(resFileList, zipFile, threadCount, Collections.<Pattern, Integer>emptyMap());
+    }
+
+    /**
+     * Same as {@link #zipFiles(Collection, File, int)}, entries matching a pattern of
+     * compressLevels are compressed with its level
+     *
+     * @see ParallelZipWriter#setCompressLevels(Map)
+     */
+    public static void zipFiles(Collection<File> resFileList, File zipFile, int threadCount,
+                                Map<Pattern, Integer> compressLevels) throws IOException {
+        List<String> entryNames = new ArrayList<>();
+        List<File> entryFiles = new ArrayList<>();
         for (File resFile : resFileList) {
             if (resFile.exists()) {
-                zipFile(resFile, zipout, "");
+                collectZipEntries(resFile, "", entryNames, entryFiles);
             }
         }
-        zipout.close();
+        ParallelZipWriter writer = new ParallelZipWriter(threadCount);
+        writer.setCompressLevels(compressLevels);
+        writer.write(entryNames, entryFiles, zipFile);
     }
 
-    private static void zipFile(File resFile, ZipOutputStream zipout, String rootpath) throws IOException {
+    private static void collectZipEntries(File resFile, String rootpath, List<String> entryNames, List<File> entryFiles) {
         rootpath = rootpath + (rootpath.trim().length() == 0 ? "" : File.separator) + resFile.getName();
         if (resFile.isDirectory()) {
             File[] fileList = resFile.listFiles();
             for (File file : fileList) {
-                zipFile(file, zipout, rootpath);
+                collectZipEntries(file, rootpath, entryNames, entryFiles);
             }
         } else {
-            final byte[] fileContents = readContents(resFile);
             //linux format！！
             if (rootpath.contains("\\")) {
                 rootpath = rootpath.replace("\\", "/");
             }
-            ZipEntry entry = new ZipEntry(rootpath);
-//            if (compressMethod == ZipEntry.DEFLATED) {
-            entry.setMethod(ZipEntry.DEFLATED);
-//            } else {
-//                entry.setMethod(ZipEntry.STORED);
-//                entry.setSize(fileContents.length);
-//                final CRC32 checksumCalculator = new CRC32();
-//                checksumCalculator.update(fileContents);
-//                entry.setCrc(checksumCalculator.getValue());
-//            }
-            zipout.putNextEntry(entry);
-            zipout.write(fileContents);
-            zipout.flush();
-            zipout.closeEntry();
-        }
-    }
-
-    private static byte[] readContents(final File file) throws IOException {
-        final ByteArrayOutputStream output = new ByteArrayOutputStream();
-        final int bufferSize = TypedValue.BUFFER_SIZE;
-        try {
-            final FileInputStream in = new FileInputStream(file);
-            final BufferedInputStream bIn = new BufferedInputStream(in);
-            int length;
-            byte[] buffer = new byte[bufferSize];
-            byte[] bufferCopy;
-            while ((length = bIn.read(buffer, 0, bufferSize)) != -1) {
-                bufferCopy = new byte[length];
-                System.arraycopy(buffer, 0, bufferCopy, 0, length);
-                output.write(bufferCopy);
-            }
-            bIn.close();
-        } finally {
-            output.close();
+            entryNames.add(rootpath);
+            entryFiles.add(resFile);
         }
-        return output.toByteArray();
     }
 
     public static long getFileCrc32(File file) throws IOException {
@@ -365,13 +361,22 @@ public class FileOperation {
     }
 
     public static void zipInputDir(File inputDir, File outputFile) throws IOException {
+        zipInputDir(inputDir, outputFile, 1);
+    }
+
+    public static void zipInputDir(File inputDir, File outputFile, int threadCount) throws IOException {
+        zipInputDir(inputDir, outputFile, threadCount, Collections.<Pattern, Integer>emptyMap());
+    }
+
+    public static void zipInputDir(File inputDir, File outputFile, int threadCount,
+                                   Map<Pattern, Integer> compressLevels) throws IOException {
         File[] unzipFiles = inputDir.listFiles();
         List<File> collectFiles = new ArrayList<>();
         for (File f : unzipFiles) {
             collectFiles.add(f);
         }
 
-        FileOperation.zipFiles(collectFiles, outputFile);
+        FileOperation.zipFiles(collectFiles, outputFile, threadCount, compressLevels);
     }
 
     public static boolean sevenZipInputDir(File inputDir, File outputFile, Configuration config) {
@@ -272,6 +272,20 @@ public final class MD5 {
         }
     }
 
+    /**
+     * Format a digest computed elsewhere, e.g. by a {@link java.security.DigestOutputStream},
+     * the same way as the other methods here.
+     *
+     * @return md5 result in string format
+     */
+    public static String toHexString(byte[] hashValue) {
+        StringBuilder md5Str = new StringBuilder(hashValue.length * 2);
+        for (int i = 0; i < hashValue.length; i++) {
+            md5Str.append(Integer.toString((hashValue[i] & 0xff) + 0x100, 16).substring(1));
+        }
+        return md5Str.toString();
+    }
+
     public static String getMD5ExtendBytes(final File file, final int offset, final int length, byte[] extend) {
         if (file == null || !file.exists() || offset < 0 || length <= 0) {
             return null;
@@ -0,0 +1,225 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.build.util;
+
+import com.tencent.tinker.commons.ziputil.TinkerZipEntry;
+import com.tencent.tinker.commons.ziputil.TinkerZipOutputStream;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Zip writer which compresses entries independently on a thread pool.
+ *
+ * Each entry is read and deflated into memory by a worker with its crc and sizes computed
+ * up front, then appended by {@link TinkerZipOutputStream} in the order the entries were
+ * given, so the output is byte-for-byte the same whatever the thread count is. At most
+ * twice as many entries as threads are kept in memory at the same time.
+ *
+ * Entries whose extension is in the no-compress list of aapt, or which would not shrink
+ * by deflating, are STORED. Deflate level of other entries can be chosen by entry name,
+ * see {@link #setCompressLevels(Map)}.
+ */
+public final class ParallelZipWriter {
+    private static final Set<String> NO_COMPRESS_EXTENSIONS = new HashSet<>(Arrays.asList(
+        ".jpg", ".jpeg", ".png", ".gif", ".webp",
+        ".wav", ".mp2", ".mp3", ".ogg", ".aac", ".mpg", ".mpeg", ".mid", ".midi", ".smf", ".jet",
+        ".rtttl", ".imy", ".xmf", ".mp4", ".m4a", ".m4v", ".3gp", ".3gpp", ".3g2", ".3gpp2",
+        ".amr", ".awb", ".wma", ".wmv", ".webm", ".mkv"
+    ));
+
+    private final int threadCount;
+    private final Map<Pattern, Integer> compressLevels = new LinkedHashMap<>();
+
+    public ParallelZipWriter(int threadCount) {
+        this.threadCount = threadCount > 0 ? threadCount : 1;
+    }
+
+    /**
+     * Sets deflate levels of entries by name. An entry is compressed with the level of the first
+     * pattern in iteration order of {@code compressLevels} matching its whole name, or with
+     * {@link Deflater#DEFAULT_COMPRESSION} if none matches.
+     *
+     * @param compressLevels entry name pattern to deflate level from 0 to 9 or
+     *                       {@link Deflater#DEFAULT_COMPRESSION}, 0 means matched entries are STORED.
+     */
+    public void setCompressLevels(Map<Pattern, Integer> compressLevels) {
+        for (Map.Entry<Pattern, Integer> entry : compressLevels.entrySet()) {
+            checkCompressLevel(entry.getValue());
+        }
+        this.compressLevels.clear();
+        this.compressLevels.putAll(compressLevels);
+    }
+
+    public static void checkCompressLevel(int compressLevel) {
+        if (compressLevel < Deflater.DEFAULT_COMPRESSION || compressLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Bad compress level: " + compressLevel);
+        }
+    }
+
+    private int getCompressLevel(String entryName) {
+        for (Map.Entry<Pattern, Integer> entry : compressLevels.entrySet()) {
+            if (entry.getKey().matcher(entryName).matches()) {
+                return entry.getValue();
+            }
+        }
+        return Deflater.DEFAULT_COMPRESSION;
+    }
+
+    /**
+     * Writes {@code files} to {@code zipFile} as entries named by {@code entryNames}, in the given order.
+     */
+    public void write(List<String> entryNames, List<File> files, File zipFile) throws IOException {
+        if (entryNames.size() != files.size()) {
+            throw new IllegalArgumentException("entryNames and files must have the same size.");
+        }
+        TinkerZipOutputStream out = new TinkerZipOutputStream(
+            new BufferedOutputStream(new FileOutputStream(zipFile), TypedValue.BUFFER_SIZE)
+        );
+        ExecutorService executor = (threadCount > 1 ? Executors.newFixedThreadPool(threadCount) : null);
+        try {
+            ArrayDeque<Future<CompressedEntry>> window = new ArrayDeque<>();
+            for (int i = 0; i < files.size(); ++i) {
+                final String entryName = entryNames.get(i);
+                final File file = files.get(i);
+                if (executor == null) {
+                    writeEntry(out, compress(entryName, file));
+                    continue;
+                }
+                window.add(executor.submit(new Callable<CompressedEntry>() {
+                    @Override
+                    public CompressedEntry call() throws Exception {
+                        return compress(entryName, file);
+                    }
+                }));
+                if (window.size() > 2 * threadCount) {
+                    writeEntry(out, getResult(window.poll()));
+                }
+            }
+            while (!window.isEmpty()) {
+                writeEntry(out, getResult(window.poll()));
+            }
+        } finally {
+            if (executor != null) {
+                executor.shutdownNow();
+            }
+            out.close();
+        }
+    }
+
+    private CompressedEntry compress(String entryName, File file) throws IOException {
+        byte[] data = Files.readAllBytes(file.toPath());
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        CompressedEntry result = new CompressedEntry();
+        result.name = entryName;
+        result.crc = crc.getValue();
+        result.size = data.length;
+        result.method = TinkerZipEntry.STORED;
+        result.data = data;
+
+        int compressLevel = getCompressLevel(entryName);
+        if (compressLevel != Deflater.NO_COMPRESSION && !isNoCompressEntry(entryName)) {
+            byte[] deflated = deflate(data, compressLevel);
+            if (deflated.length < data.length) {
+                result.method = TinkerZipEntry.DEFLATED;
+                result.data = deflated;
+            }
+        }
+        return result;
+    }
+
+    private static byte[] deflate(byte[] data, int level) {
+        Deflater deflater = new Deflater(level, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream bos = new ByteArrayOutputStream(Math.max(data.length / 2, 64));
+            byte[] buffer = new byte[TypedValue.BUFFER_SIZE];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                bos.write(buffer, 0, count);
+            }
+            return bos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static boolean isNoCompressEntry(String entryName) {
+        int dotPos = entryName.lastIndexOf('.');
+        if (dotPos < 0 || dotPos < entryName.lastIndexOf('/')) {
+            return false;
+        }
+        return NO_COMPRESS_EXTENSIONS.contains(entryName.substring(dotPos).toLowerCase(Locale.US));
+    }
+
+    private static void writeEntry(TinkerZipOutputStream out, CompressedEntry entry) throws IOException {
+        TinkerZipEntry zipEntry = new TinkerZipEntry(entry.name);
+        zipEntry.setMethod(entry.method);
+        zipEntry.setCrc(entry.crc);
+        zipEntry.setSize(entry.size);
+        zipEntry.setCompressedSize(entry.data.length);
+        out.putNextEntry(zipEntry);
+        out.write(entry.data, 0, entry.data.length);
+        out.closeEntry();
+    }
+
+    private static CompressedEntry getResult(Future<CompressedEntry> future) throws IOException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new TinkerPatchException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TinkerPatchException(e);
+        }
+    }
+
+    private static final class CompressedEntry {
+        String name;
+        int    method;
+        long   crc;
+        long   size;
+        byte[] data;
+    }
+}
@@ -23,7 +23,6 @@ import com.tencent.tinker.commons.ziputil.TinkerZipEntry;
 import com.tencent.tinker.commons.ziputil.TinkerZipFile;
 import com.tencent.tinker.commons.ziputil.TinkerZipOutputStream;
 
-import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
@@ -116,7 +115,7 @@ public class Utils {
                                     ArrayList<String> largeModifiedSet, HashMap<String, ResDiffDecoder.LargeModeInfo> largeModifiedMap) throws IOException {
         TinkerZipFile oldApk = new TinkerZipFile(config.mOldApkFile);
         TinkerZipFile newApk = new TinkerZipFile(newZipFile);
-        TinkerZipOutputStream out = new TinkerZipOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+        TinkerZipOutputStream out = new TinkerZipOutputStream(new FileOutputStream(output));
 
         try {
             final Enumeration<? extends TinkerZipEntry> entries = oldApk.entries();
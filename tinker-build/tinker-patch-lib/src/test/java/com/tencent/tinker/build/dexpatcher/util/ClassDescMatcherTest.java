@@ -0,0 +1,160 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.build.dexpatcher.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link ClassDescMatcher} gives the same result as matching every pattern
+ * converted by {@link PatternUtils#dotClassNamePatternToDescriptorRegEx(String)} one by one.
+ */
+public class ClassDescMatcherTest {
+    private static final String[] CLASS_DESCS = {
+            "La;", "Lab;", "Lb;", "L;", "I", "[I", "[[I", "V",
+            "Lcom/a/B;", "Lcom/a/Bc;", "Lcom/a/BC;", "Lcom/a/B$1;", "Lcom/a/B$C;", "[Lcom/a/B;", "[[Lcom/a/B;",
+            "Lcom/a/b/B;", "Lcom/a/b/Bx;", "Lcom/a/b/c/B;", "Lcom/ab/B;", "Lcom/B;",
+            "Lcom/tencent/tinker/loader/A;", "Lcom/tencent/tinker/loader/a/B$C;", "Lcom/tencent/tinker/loaderX;",
+            "Lcom/tencent/tinker/loader/TinkerLoader;", "Lcom/tencent/tinker/TinkerLoader;",
+            "Lcom/tencent/tinker/lib/TinkerLoader;", "Lcom/tencent/tinker/Loader;",
+            "Ljava/lang/Object;", "Ljava/lang/String;", "Ljava/lang/reflect/Method;", "Ljava/util/List;",
+            "Landroid/support/v4/app/Fragment;", "Landroid/app/Activity;", "Lcom/foo/MainActivity;",
+            "Lcom/foo/Bar;", "Lcom/foo/Bar$Baz;", "Lcom/foo/app/MyApp;", "Lcom/foo/app/MyApp2;",
+    };
+
+    @Test
+    public void testSingleStar() {
+        assertSameAsPatterns("*");
+        assertSameAsPatterns("com.a.*");
+        assertSameAsPatterns("com.*.B");
+        assertSameAsPatterns("com.a.*.B*");
+        assertSameAsPatterns("*Activity");
+        assertSameAsPatterns("*$*");
+        assertSameAsPatterns("com.tencent.tinker.*Loader");
+    }
+
+    @Test
+    public void testDoubleStar() {
+        assertSameAsPatterns("**");
+        assertSameAsPatterns("com.tencent.tinker.loader.**");
+        assertSameAsPatterns("com.**.B");
+        assertSameAsPatterns("java.**");
+    }
+
+    @Test
+    public void testQuestionMark() {
+        assertSameAsPatterns("?");
+        assertSameAsPatterns("??");
+        assertSameAsPatterns("com.a.B?");
+        assertSameAsPatterns("com.a.B?c");
+        assertSameAsPatterns("com.foo.app.MyApp?");
+        assertSameAsPatterns("com.?.B");
+    }
+
+    @Test
+    public void testTrailingSemicolon() {
+        assertSameAsPatterns("Lcom/a/B;");
+        assertSameAsPatterns("Lcom/a/*;");
+        assertSameAsPatterns("Lcom/foo/Bar;", "Lcom/foo/Bar$Baz;");
+        assertSameAsPatterns("com.a.B;");
+        assertSameAsPatterns("com.a.*;");
+        assertSameAsPatterns("[Lcom/a/B;", "[[Lcom/a/B;");
+    }
+
+    @Test
+    public void testExactAndPrimitivePatterns() {
+        assertSameAsPatterns("com.a.B");
+        assertSameAsPatterns("com.a.B[][]");
+        assertSameAsPatterns("int", "int[]", "void");
+        assertSameAsPatterns("com.a.B$1");
+    }
+
+    @Test
+    public void testOtherRegexSyntax() {
+        assertSameAsPatterns("com.a.(B|C)");
+        assertSameAsPatterns("com.a.B+");
+        assertSameAsPatterns("com.a.B{1}");
+    }
+
+    @Test
+    public void testMixedGroup() {
+        assertSameAsPatterns("java.lang.*", "android.support.v4.*", "com.tencent.tinker.loader.*",
+                "Lcom/foo/Bar;", "com.tencent.tinker.*Loader", "com.foo.app.MyApp", "com.a.B?");
+        assertSameAsPatterns("a", "ab", "*b");
+    }
+
+    @Test
+    public void testRandomGroups() {
+        Random random = new Random(0xC1A55);
+        String[] parts = {"com", "a", "b", "B", "foo", "*", "**", "?", "$", "Bar", "tencent"};
+        for (int i = 0; i < 200; ++i) {
+            String[] group = new String[1 + random.nextInt(4)];
+            for (int j = 0; j < group.length; ++j) {
+                StringBuilder sb = new StringBuilder();
+                int partCount = 1 + random.nextInt(4);
+                for (int k = 0; k < partCount; ++k) {
+                    if (k > 0 && random.nextBoolean()) {
+                        sb.append('.');
+                    }
+                    sb.append(parts[random.nextInt(parts.length)]);
+                }
+                if (random.nextInt(8) == 0) {
+                    sb.append(';');
+                }
+                group[j] = sb.toString();
+            }
+            assertSameAsPatterns(group);
+        }
+    }
+
+    @Test
+    public void testEmpty() {
+        ClassDescMatcher matcher = new ClassDescMatcher(new ArrayList<String>());
+        assertTrue(matcher.isEmpty());
+        for (String classDesc : CLASS_DESCS) {
+            assertFalse(matcher.matches(classDesc));
+        }
+        assertFalse(new ClassDescMatcher("*").isEmpty());
+    }
+
+    private static void assertSameAsPatterns(String... dotClassNamePatterns) {
+        List<Pattern> patterns = new ArrayList<>(dotClassNamePatterns.length);
+        for (String dotClassNamePattern : dotClassNamePatterns) {
+            patterns.add(Pattern.compile(PatternUtils.dotClassNamePatternToDescriptorRegEx(dotClassNamePattern)));
+        }
+        ClassDescMatcher matcher = new ClassDescMatcher(Arrays.asList(dotClassNamePatterns));
+        for (String classDesc : CLASS_DESCS) {
+            boolean expected = false;
+            for (Pattern pattern : patterns) {
+                if (pattern.matcher(classDesc).matches()) {
+                    expected = true;
+                    break;
+                }
+            }
+            assertEquals(Arrays.toString(dotClassNamePatterns) + " on " + classDesc, expected, matcher.matches(classDesc));
+        }
+    }
+}
@@ -33,7 +33,8 @@ import com.tencent.tinker.android.dex.StringData;
 import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.TypeList;
 import com.tencent.tinker.android.dex.util.CompareUtils;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
+import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
+import com.tencent.tinker.commons.dexpatcher.util.DenseIndexMap;
 import com.tencent.tinker.commons.dexpatcher.algorithms.patch.AnnotationSectionPatchAlgorithm;
 import com.tencent.tinker.commons.dexpatcher.algorithms.patch.AnnotationSetRefListSectionPatchAlgorithm;
 import com.tencent.tinker.commons.dexpatcher.algorithms.patch.AnnotationSetSectionPatchAlgorithm;
@@ -59,17 +60,28 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Created by tangyinsheng on 2016/6/30.
  */
 public class DexPatchApplier {
     private final Dex oldDex;
-    private final Dex patchedDex;
+    private Dex patchedDex;
 
     private final DexPatchFile patchFile;
 
-    private final SparseIndexMap oldToPatchedIndexMap;
+    private final boolean lowMemoryMode;
+
+    private int threadCount = 1;
+
+    private final AbstractIndexMap oldToPatchedIndexMap;
 
     private DexSectionPatchAlgorithm<StringData> stringDataSectionPatchAlg;
     private DexSectionPatchAlgorithm<Integer> typeIdSectionPatchAlg;
@@ -88,7 +100,20 @@ public class DexPatchApplier {
     private DexSectionPatchAlgorithm<AnnotationsDirectory> annotationsDirectorySectionPatchAlg;
 
     public DexPatchApplier(File oldDexIn, File patchFileIn) throws IOException {
-        this(new Dex(oldDexIn), new DexPatchFile(patchFileIn));
+        this(oldDexIn, patchFileIn, false);
+    }
+
+    /**
+     * @param lowMemoryMode if true, old dex and patch file are read through memory-mapped
+     *                      buffers and {@link #executeAndSaveTo(File)} writes patched dex
+     *                      straight into the target file, so none of them is fully held in heap.
+     */
+    public DexPatchApplier(File oldDexIn, File patchFileIn, boolean lowMemoryMode) throws IOException {
+        this(
+                lowMemoryMode ? Dex.mapFromFile(oldDexIn) : new Dex(oldDexIn),
+                lowMemoryMode ? DexPatchFile.mapFromFile(patchFileIn) : new DexPatchFile(patchFileIn),
+                lowMemoryMode
+        );
     }
 
     public DexPatchApplier(InputStream oldDexIn, InputStream patchFileIn) throws IOException {
@@ -98,14 +123,148 @@ public class DexPatchApplier {
     public DexPatchApplier(
             Dex oldDexIn,
             DexPatchFile patchFileIn
+    ) {
+        this(oldDexIn, patchFileIn, false);
+    }
+
+    public DexPatchApplier(
+            Dex oldDexIn,
+            DexPatchFile patchFileIn,
+            boolean lowMemoryMode
     ) {
         this.oldDex = oldDexIn;
         this.patchFile = patchFileIn;
-        this.patchedDex = new Dex(patchFileIn.getPatchedDexSize());
-        this.oldToPatchedIndexMap = new SparseIndexMap();
+        this.lowMemoryMode = lowMemoryMode;
+        this.oldToPatchedIndexMap = new DenseIndexMap();
+    }
+
+    /**
+     * Set how many threads can be used to patch independent data sections,
+     * 1 by default which means all sections are patched in current thread.
+     *
+     * Only takes effect on patch files that record chunk offsets of each section.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("threadCount must be larger than 0.");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Returns the patched dex of the last {@code executeAndSaveTo} call, or null if nothing
+     * has been patched yet. Its table of contents is the one built while patching, use
+     * {@code new Dex(getPatchedDex().asReadOnlyBuffer())} to check what was actually written
+     * without loading the saved file again.
+     */
+    public Dex getPatchedDex() {
+        return this.patchedDex;
     }
 
     public void executeAndSaveTo(OutputStream out) throws IOException {
+        checkPatchApplicable();
+
+        this.patchedDex = new Dex(this.patchFile.getPatchedDexSize());
+
+        execute();
+
+        // Finally, write patched dex to file.
+        this.patchedDex.writeTo(out);
+    }
+
+    public void executeAndSaveTo(File file) throws IOException {
+        if (this.lowMemoryMode) {
+            checkPatchApplicable();
+
+            // Sections are written to their offsets in file directly, hashes are computed
+            // by reading them back through the same mapped buffer.
+            this.patchedDex = Dex.createMapped(file, this.patchFile.getPatchedDexSize());
+
+            execute();
+
+            this.patchedDex.flush();
+            return;
+        }
+
+        OutputStream os = null;
+        try {
+            os = new BufferedOutputStream(new FileOutputStream(file));
+            executeAndSaveTo(os);
+        } finally {
+            if (os != null) {
+                try {
+                    os.close();
+                } catch (Exception e) {
+                    // ignored.
+                }
+            }
+        }
+    }
+
+    /**
+     * Items in data sections refer to ids, which are all patched at this point, and to items
+     * in a few other data sections. Sections in different dependency chains are patched concurrently,
+     * each of them writes into its own pre-assigned region of patched dex.
+     */
+    private void executeDataSectionPatchAlgorithmsInParallel() throws IOException {
+        SectionPatchTask annotationTask = new SectionPatchTask(this.annotationSectionPatchAlg);
+        SectionPatchTask annotationSetTask = new SectionPatchTask(this.annotationSetSectionPatchAlg, annotationTask);
+        SectionPatchTask annotationSetRefListTask
+                = new SectionPatchTask(this.annotationSetRefListSectionPatchAlg, annotationSetTask);
+        SectionPatchTask annotationsDirectoryTask = new SectionPatchTask(
+                this.annotationsDirectorySectionPatchAlg, annotationSetTask, annotationSetRefListTask
+        );
+        SectionPatchTask debugInfoTask = new SectionPatchTask(this.debugInfoSectionPatchAlg);
+        SectionPatchTask codeTask = new SectionPatchTask(this.codeSectionPatchAlg, debugInfoTask);
+        SectionPatchTask classDataTask = new SectionPatchTask(this.classDataSectionPatchAlg, codeTask);
+        SectionPatchTask encodedArrayTask = new SectionPatchTask(this.encodedArraySectionPatchAlg);
+        SectionPatchTask classDefTask = new SectionPatchTask(
+                this.classDefSectionPatchAlg, annotationsDirectoryTask, classDataTask, encodedArrayTask
+        );
+
+        List<SectionPatchTask> tasks = Arrays.asList(
+                annotationTask, annotationSetTask, annotationSetRefListTask, annotationsDirectoryTask,
+                debugInfoTask, codeTask, classDataTask, encodedArrayTask, classDefTask
+        );
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(this.threadCount, tasks.size()));
+        CompletionService<SectionPatchTask> completionService = new ExecutorCompletionService<>(executor);
+        try {
+            int unfinishedCount = tasks.size();
+            int runningCount = 0;
+            while (unfinishedCount > 0) {
+                for (SectionPatchTask task : tasks) {
+                    if (!task.isSubmitted && task.isReady()) {
+                        task.isSubmitted = true;
+                        completionService.submit(task);
+                        ++runningCount;
+                    }
+                }
+                if (runningCount == 0) {
+                    throw new IllegalStateException("circular dependency found in section patch tasks.");
+                }
+                completionService.take().get().isFinished = true;
+                --runningCount;
+                --unfinishedCount;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while patching sections.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void checkPatchApplicable() throws IOException {
         // Before executing, we should check if this patch can be applied to
         // old dex we passed in.
         // 首先old apk的签名和patchfile所携带的old apk签名是否一致，不一致则抛出异常
@@ -126,7 +285,9 @@ public class DexPatchApplier {
                     )
             );
         }
+    }
 
+    private void execute() throws IOException {
         // Firstly, set sections' offset after patched, sort according to their offset so that
         // the dex lib of aosp can calculate section size.
         // patchedDex是最终合成的dex，首先设定各个区域的偏移量
@@ -231,15 +392,19 @@ public class DexPatchApplier {
         this.protoIdSectionPatchAlg.execute();
         this.fieldIdSectionPatchAlg.execute();
         this.methodIdSectionPatchAlg.execute();
-        this.annotationSectionPatchAlg.execute();
-        this.annotationSetSectionPatchAlg.execute();
-        this.annotationSetRefListSectionPatchAlg.execute();
-        this.annotationsDirectorySectionPatchAlg.execute();
-        this.debugInfoSectionPatchAlg.execute();
-        this.codeSectionPatchAlg.execute();
-        this.classDataSectionPatchAlg.execute();
-        this.encodedArraySectionPatchAlg.execute();
-        this.classDefSectionPatchAlg.execute();
+        if (this.threadCount > 1 && this.patchFile.hasChunkOffsets()) {
+            executeDataSectionPatchAlgorithmsInParallel();
+        } else {
+            this.annotationSectionPatchAlg.execute();
+            this.annotationSetSectionPatchAlg.execute();
+            this.annotationSetRefListSectionPatchAlg.execute();
+            this.annotationsDirectorySectionPatchAlg.execute();
+            this.debugInfoSectionPatchAlg.execute();
+            this.codeSectionPatchAlg.execute();
+            this.classDataSectionPatchAlg.execute();
+            this.encodedArraySectionPatchAlg.execute();
+            this.classDefSectionPatchAlg.execute();
+        }
 
         // Thirdly, write header, mapList. Calculate and write patched dex's sign and checksum.
         Dex.Section headerOut = this.patchedDex.openSection(patchedToc.header.off);
@@ -249,24 +414,32 @@ public class DexPatchApplier {
         patchedToc.writeMap(mapListOut);
 
         this.patchedDex.writeHashes();
-
-        // Finally, write patched dex to file.
-        this.patchedDex.writeTo(out);
     }
 
-    public void executeAndSaveTo(File file) throws IOException {
-        OutputStream os = null;
-        try {
-            os = new BufferedOutputStream(new FileOutputStream(file));
-            executeAndSaveTo(os);
-        } finally {
-            if (os != null) {
-                try {
-                    os.close();
-                } catch (Exception e) {
-                    // ignored.
+    private static final class SectionPatchTask implements Callable<SectionPatchTask> {
+        private final DexSectionPatchAlgorithm<?> algorithm;
+        private final SectionPatchTask[] dependencies;
+        private boolean isSubmitted = false;
+        private boolean isFinished = false;
+
+        SectionPatchTask(DexSectionPatchAlgorithm<?> algorithm, SectionPatchTask... dependencies) {
+            this.algorithm = algorithm;
+            this.dependencies = dependencies;
+        }
+
+        boolean isReady() {
+            for (SectionPatchTask dependency : this.dependencies) {
+                if (!dependency.isFinished) {
+                    return false;
                 }
             }
+            return true;
+        }
+
+        @Override
+        public SectionPatchTask call() {
+            this.algorithm.execute();
+            return this;
         }
     }
 }
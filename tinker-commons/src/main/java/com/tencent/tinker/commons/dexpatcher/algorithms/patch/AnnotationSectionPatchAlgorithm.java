@@ -22,7 +22,6 @@ import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 /**
  * Created by tangyinsheng on 2016/7/4.
@@ -35,7 +34,7 @@ public class AnnotationSectionPatchAlgorithm extends DexSectionPatchAlgorithm<An
             DexPatchFile patchFile,
             Dex oldDex,
             Dex patchedDex,
-            SparseIndexMap oldToPatchedIndexMap
+            AbstractIndexMap oldToPatchedIndexMap
     ) {
         super(patchFile, oldDex, oldToPatchedIndexMap);
 
@@ -72,14 +71,27 @@ public class AnnotationSectionPatchAlgorithm extends DexSectionPatchAlgorithm<An
     }
 
     @Override
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected boolean isItemAdjustmentIdentity(AbstractIndexMap indexMap) {
+        return indexMap.isStringIdsIdentity()
+                && indexMap.isTypeIdsIdentity()
+                && indexMap.isFieldIdsIdentity()
+                && indexMap.isMethodIdsIdentity();
+    }
+
+    @Override
+    protected int writeRawPatchedItems(byte[] rawItems, int itemCount) {
+        return writeRawItems(this.patchedAnnotationSec, this.patchedAnnotationTocSec, rawItems, itemCount);
+    }
+
+    @Override
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         if (oldOffset != newOffset) {
-            sparseIndexMap.mapAnnotationOffset(oldOffset, newOffset);
+            indexMap.mapAnnotationOffset(oldOffset, newOffset);
         }
     }
 
     @Override
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
-        sparseIndexMap.markAnnotationDeleted(deletedOffset);
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
+        indexMap.markAnnotationDeleted(deletedOffset);
     }
 }
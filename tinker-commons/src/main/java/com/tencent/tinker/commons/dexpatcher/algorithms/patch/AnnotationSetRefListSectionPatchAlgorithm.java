@@ -22,7 +22,6 @@ import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 /**
  * Created by tangyinsheng on 2016/7/4.
@@ -35,7 +34,7 @@ public class AnnotationSetRefListSectionPatchAlgorithm extends DexSectionPatchAl
             DexPatchFile patchFile,
             Dex oldDex,
             Dex patchedDex,
-            SparseIndexMap oldToPatchedIndexMap
+            AbstractIndexMap oldToPatchedIndexMap
     ) {
         super(patchFile, oldDex, oldToPatchedIndexMap);
 
@@ -74,14 +73,24 @@ public class AnnotationSetRefListSectionPatchAlgorithm extends DexSectionPatchAl
     }
 
     @Override
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected boolean isItemAdjustmentIdentity(AbstractIndexMap indexMap) {
+        return indexMap.isAnnotationSetOffsetsIdentity();
+    }
+
+    @Override
+    protected int writeRawPatchedItems(byte[] rawItems, int itemCount) {
+        return writeRawItems(this.patchedAnnotationSetRefListSec, this.patchedAnnotationSetRefListTocSec, rawItems, itemCount);
+    }
+
+    @Override
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         if (oldOffset != newOffset) {
-            sparseIndexMap.mapAnnotationSetRefListOffset(oldOffset, newOffset);
+            indexMap.mapAnnotationSetRefListOffset(oldOffset, newOffset);
         }
     }
 
     @Override
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
-        sparseIndexMap.markAnnotationSetRefListDeleted(deletedOffset);
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
+        indexMap.markAnnotationSetRefListDeleted(deletedOffset);
     }
 }
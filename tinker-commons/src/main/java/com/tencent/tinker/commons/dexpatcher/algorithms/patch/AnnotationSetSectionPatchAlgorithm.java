@@ -22,7 +22,6 @@ import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 /**
  * Created by tangyinsheng on 2016/7/4.
@@ -35,7 +34,7 @@ public class AnnotationSetSectionPatchAlgorithm extends DexSectionPatchAlgorithm
             DexPatchFile patchFile,
             Dex oldDex,
             Dex patchedDex,
-            SparseIndexMap oldToPatchedIndexMap
+            AbstractIndexMap oldToPatchedIndexMap
     ) {
         super(patchFile, oldDex, oldToPatchedIndexMap);
         if (patchedDex != null) {
@@ -71,14 +70,24 @@ public class AnnotationSetSectionPatchAlgorithm extends DexSectionPatchAlgorithm
     }
 
     @Override
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected boolean isItemAdjustmentIdentity(AbstractIndexMap indexMap) {
+        return indexMap.isAnnotationOffsetsIdentity();
+    }
+
+    @Override
+    protected int writeRawPatchedItems(byte[] rawItems, int itemCount) {
+        return writeRawItems(this.patchedAnnotationSetSec, this.patchedAnnotationSetTocSec, rawItems, itemCount);
+    }
+
+    @Override
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         if (oldOffset != newOffset) {
-            sparseIndexMap.mapAnnotationSetOffset(oldOffset, newOffset);
+            indexMap.mapAnnotationSetOffset(oldOffset, newOffset);
         }
     }
 
     @Override
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
-        sparseIndexMap.markAnnotationSetDeleted(deletedOffset);
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
+        indexMap.markAnnotationSetDeleted(deletedOffset);
     }
 }
@@ -22,7 +22,6 @@ import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 /**
  * Created by tangyinsheng on 2016/7/4.
@@ -35,7 +34,7 @@ public class AnnotationsDirectorySectionPatchAlgorithm extends DexSectionPatchAl
             DexPatchFile patchFile,
             Dex oldDex,
             Dex patchedDex,
-            SparseIndexMap oldToPatchedIndexMap
+            AbstractIndexMap oldToPatchedIndexMap
     ) {
         super(patchFile, oldDex, oldToPatchedIndexMap);
 
@@ -72,14 +71,27 @@ public class AnnotationsDirectorySectionPatchAlgorithm extends DexSectionPatchAl
     }
 
     @Override
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected boolean isItemAdjustmentIdentity(AbstractIndexMap indexMap) {
+        return indexMap.isAnnotationSetOffsetsIdentity()
+                && indexMap.isFieldIdsIdentity()
+                && indexMap.isMethodIdsIdentity()
+                && indexMap.isAnnotationSetRefListOffsetsIdentity();
+    }
+
+    @Override
+    protected int writeRawPatchedItems(byte[] rawItems, int itemCount) {
+        return writeRawItems(this.patchedAnnotationsDirectorySec, this.patchedAnnotationsDirectoryTocSec, rawItems, itemCount);
+    }
+
+    @Override
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         if (oldOffset != newOffset) {
-            sparseIndexMap.mapAnnotationsDirectoryOffset(oldOffset, newOffset);
+            indexMap.mapAnnotationsDirectoryOffset(oldOffset, newOffset);
         }
     }
 
     @Override
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
-        sparseIndexMap.markAnnotationsDirectoryDeleted(deletedOffset);
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
+        indexMap.markAnnotationsDirectoryDeleted(deletedOffset);
     }
 }
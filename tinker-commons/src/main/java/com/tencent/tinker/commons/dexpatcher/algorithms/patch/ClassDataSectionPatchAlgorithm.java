@@ -22,7 +22,6 @@ import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 /**
  * Created by tangyinsheng on 2016/7/4.
@@ -35,7 +34,7 @@ public class ClassDataSectionPatchAlgorithm extends DexSectionPatchAlgorithm<Cla
             DexPatchFile patchFile,
             Dex oldDex,
             Dex patchedDex,
-            SparseIndexMap oldToPatchedIndexMap
+            AbstractIndexMap oldToPatchedIndexMap
     ) {
         super(patchFile, oldDex, oldToPatchedIndexMap);
 
@@ -72,14 +71,26 @@ public class ClassDataSectionPatchAlgorithm extends DexSectionPatchAlgorithm<Cla
     }
 
     @Override
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected boolean isItemAdjustmentIdentity(AbstractIndexMap indexMap) {
+        return indexMap.isFieldIdsIdentity()
+                && indexMap.isMethodIdsIdentity()
+                && indexMap.isCodeOffsetsIdentity();
+    }
+
+    @Override
+    protected int writeRawPatchedItems(byte[] rawItems, int itemCount) {
+        return writeRawItems(this.patchedClassDataSec, this.patchedClassDataTocSec, rawItems, itemCount);
+    }
+
+    @Override
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         if (oldOffset != newOffset) {
-            sparseIndexMap.mapClassDataOffset(oldOffset, newOffset);
+            indexMap.mapClassDataOffset(oldOffset, newOffset);
         }
     }
 
     @Override
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
-        sparseIndexMap.markClassDataDeleted(deletedOffset);
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
+        indexMap.markClassDataDeleted(deletedOffset);
     }
 }
@@ -22,7 +22,6 @@ import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 /**
  * Created by tangyinsheng on 2016/7/4.
@@ -35,7 +34,7 @@ public class ClassDefSectionPatchAlgorithm extends DexSectionPatchAlgorithm<Clas
             DexPatchFile patchFile,
             Dex oldDex,
             Dex patchedDex,
-            SparseIndexMap oldToPatchedIndexMap
+            AbstractIndexMap oldToPatchedIndexMap
     ) {
         super(patchFile, oldDex, oldToPatchedIndexMap);
 
@@ -71,4 +70,19 @@ public class ClassDefSectionPatchAlgorithm extends DexSectionPatchAlgorithm<Clas
         ++this.patchedClassDefTocSec.size;
         return this.patchedClassDefSec.writeClassDef(patchedItem);
     }
+
+    @Override
+    protected boolean isItemAdjustmentIdentity(AbstractIndexMap indexMap) {
+        return indexMap.isTypeIdsIdentity()
+                && indexMap.isTypeListOffsetsIdentity()
+                && indexMap.isStringIdsIdentity()
+                && indexMap.isAnnotationsDirectoryOffsetsIdentity()
+                && indexMap.isClassDataOffsetsIdentity()
+                && indexMap.isStaticValuesOffsetsIdentity();
+    }
+
+    @Override
+    protected int writeRawPatchedItems(byte[] rawItems, int itemCount) {
+        return writeRawItems(this.patchedClassDefSec, this.patchedClassDefTocSec, rawItems, itemCount);
+    }
 }
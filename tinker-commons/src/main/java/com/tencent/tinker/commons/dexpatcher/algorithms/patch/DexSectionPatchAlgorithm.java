@@ -17,11 +17,11 @@
 package com.tencent.tinker.commons.dexpatcher.algorithms.patch;
 
 import com.tencent.tinker.android.dex.Dex;
+import com.tencent.tinker.android.dex.SizeOf;
 import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.commons.dexpatcher.struct.DexPatchFile;
 import com.tencent.tinker.commons.dexpatcher.util.AbstractIndexMap;
-import com.tencent.tinker.commons.dexpatcher.util.SparseIndexMap;
 
 import java.util.Arrays;
 
@@ -34,11 +34,11 @@ public abstract class DexSectionPatchAlgorithm<T extends Comparable<T>> {
     protected final Dex oldDex;
 
     /**
-     * SparseIndexMap for mapping old item to corresponding one in patched item.
+     * Index map for mapping old item to corresponding one in patched item.
      */
-    private final SparseIndexMap oldToPatchedIndexMap;
+    private final AbstractIndexMap oldToPatchedIndexMap;
 
-    public DexSectionPatchAlgorithm(DexPatchFile patchFile, Dex oldDex, SparseIndexMap oldToPatchedIndexMap) {
+    public DexSectionPatchAlgorithm(DexPatchFile patchFile, Dex oldDex, AbstractIndexMap oldToPatchedIndexMap) {
         this.patchFile = patchFile;
         this.oldDex = oldDex;
         this.oldToPatchedIndexMap = oldToPatchedIndexMap;
@@ -60,33 +60,33 @@ public abstract class DexSectionPatchAlgorithm<T extends Comparable<T>> {
     protected abstract int getItemSize(T item);
 
     /**
-     * Adjust {@code item} using specific {@code sparseIndexMap}
+     * Adjust {@code item} using specific {@code indexMap}
      */
     protected T adjustItem(AbstractIndexMap indexMap, T item) {
         return item;
     }
 
     /**
-     * Update index or offset mapping in {@code sparseIndexMap}.
+     * Update index or offset mapping in {@code indexMap}.
      */
-    protected void updateIndexOrOffset(SparseIndexMap sparseIndexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
+    protected void updateIndexOrOffset(AbstractIndexMap indexMap, int oldIndex, int oldOffset, int newIndex, int newOffset) {
         // Should override by subclass if needed.
     }
 
     /**
-     * Mark deleted index or offset in {@code sparseIndexMap}.
+     * Mark deleted index or offset in {@code indexMap}.
      *
      * Here we mark deleted item for such a case like this:
      *   Item in DebugInfo section reference a string in StringData section
      *   by index X, while in patched dex, the referenced string is removed.
      *
-     * The {@code sparseIndexMap} must be aware of this case and return -1
+     * The {@code indexMap} must be aware of this case and return -1
      * instead of the original value X.
      *
      * Further more, the special value -1 is not chosen by our inspiration but
      * the definition of NO_INDEX in document of dex file format.
      */
-    protected void markDeletedIndexOrOffset(SparseIndexMap sparseIndexMap, int deletedIndex, int deletedOffset) {
+    protected void markDeletedIndexOrOffset(AbstractIndexMap indexMap, int deletedIndex, int deletedOffset) {
         // Should override by subclass if needed.
     }
 
@@ -98,11 +98,52 @@ public abstract class DexSectionPatchAlgorithm<T extends Comparable<T>> {
      */
     protected abstract int writePatchedItem(T patchedItem);
 
-    private int[] readDeltaIndiciesOrOffsets(int count) {
+    /**
+     * Indicate if adjusting items of this section with {@code indexMap} changes nothing,
+     * which means none of the indices or offsets referred by items of this section is
+     * remapped or deleted. Sections that return true here should also override
+     * {@code writeRawPatchedItems}.
+     */
+    protected boolean isItemAdjustmentIdentity(AbstractIndexMap indexMap) {
+        return false;
+    }
+
+    /**
+     * Output {@code itemCount} unchanged old items encoded in {@code rawItems} as they are.
+     * <p/>
+     * Returns the offset where the first item is written, or -1 if raw items cannot be
+     * written by this section, in which case items are adjusted and written one by one.
+     */
+    protected int writeRawPatchedItems(byte[] rawItems, int itemCount) {
+        return -1;
+    }
+
+    /**
+     * Helper for {@code writeRawPatchedItems}, writes {@code rawItems} into {@code patchedSection}
+     * only if they take exactly the room reserved by {@code patchedTocSec}.
+     */
+    protected static int writeRawItems(
+            Dex.Section patchedSection, TableOfContents.Section patchedTocSec, byte[] rawItems, int itemCount
+    ) {
+        if (patchedSection == null || patchedTocSec == null) {
+            return -1;
+        }
+        int rawItemsSize = rawItems.length;
+        if (rawItemsSize > patchedTocSec.byteCount
+                || SizeOf.roundToTimesOfFour(rawItemsSize) < patchedTocSec.byteCount) {
+            return -1;
+        }
+        int off = patchedSection.position();
+        patchedSection.write(rawItems);
+        patchedTocSec.size += itemCount;
+        return off;
+    }
+
+    private int[] readDeltaIndiciesOrOffsets(DexDataBuffer patchBuffer, int count) {
         int[] result = new int[count];
         int lastVal = 0;
         for (int i = 0; i < count; ++i) {
-            int delta = patchFile.getBuffer().readSleb128();
+            int delta = patchBuffer.readSleb128();
             lastVal = lastVal + delta;
             result[i] = lastVal;
         }
@@ -123,17 +164,24 @@ public abstract class DexSectionPatchAlgorithm<T extends Comparable<T>> {
         }
     }
 
+    /**
+     * Patch this section. If {@code patchFile} records chunk offsets, this method only touches
+     * its own chunk and its own sections in patched dex, so it can run concurrently with
+     * algorithms of other sections once all sections it depends on are patched.
+     */
     public void execute() {
-        final int deletedItemCount = patchFile.getBuffer().readUleb128();
-        final int[] deletedIndices = readDeltaIndiciesOrOffsets(deletedItemCount);
+        final TableOfContents.Section tocSec = getTocSection(this.oldDex);
+        final DexDataBuffer patchBuffer = patchFile.getSectionChunkBuffer(tocSec.type);
 
-        final int addedItemCount = patchFile.getBuffer().readUleb128();
-        final int[] addedIndices = readDeltaIndiciesOrOffsets(addedItemCount);
+        final int deletedItemCount = patchBuffer.readUleb128();
+        final int[] deletedIndices = readDeltaIndiciesOrOffsets(patchBuffer, deletedItemCount);
 
-        final int replacedItemCount = patchFile.getBuffer().readUleb128();
-        final int[] replacedIndices = readDeltaIndiciesOrOffsets(replacedItemCount);
+        final int addedItemCount = patchBuffer.readUleb128();
+        final int[] addedIndices = readDeltaIndiciesOrOffsets(patchBuffer, addedItemCount);
+
+        final int replacedItemCount = patchBuffer.readUleb128();
+        final int[] replacedIndices = readDeltaIndiciesOrOffsets(patchBuffer, replacedItemCount);
 
-        final TableOfContents.Section tocSec = getTocSection(this.oldDex);
         Dex.Section oldSection = null;
 
         int oldItemCount = 0;
@@ -142,14 +190,64 @@ public abstract class DexSectionPatchAlgorithm<T extends Comparable<T>> {
             oldItemCount = tocSec.size;
         }
 
+        // A section without any operation whose items refer to nothing that moves is copied
+        // from old dex as it is, instead of adjusting and re-encoding its items one by one.
+        if (oldSection != null && deletedItemCount == 0 && addedItemCount == 0 && replacedItemCount == 0
+                && isItemAdjustmentIdentity(this.oldToPatchedIndexMap)
+                && copyUnchangedItems(oldSection, oldItemCount)) {
+            return;
+        }
+
         // Now rest data are added and replaced items arranged in the order of
         // added indices and replaced indices.
         doFullPatch(
-                oldSection, oldItemCount, deletedIndices, addedIndices, replacedIndices
+                patchBuffer, oldSection, oldItemCount, deletedIndices, addedIndices, replacedIndices
         );
     }
 
+    /**
+     * Copy all items in {@code oldSection} into patched dex as raw bytes. Items are only decoded
+     * to find out where each of them lies, so that their offsets can still be mapped when
+     * the section is placed elsewhere in patched dex.
+     * <p/>
+     * Returns false if this section cannot write raw items, in which case {@code oldSection} is
+     * rewound to its beginning.
+     */
+    private boolean copyUnchangedItems(Dex.Section oldSection, int oldItemCount) {
+        final int startPosition = oldSection.position();
+        final int[] oldOffsetsOrIndices = new int[oldItemCount];
+        boolean isOffsetBased = false;
+        for (int i = 0; i < oldItemCount; ++i) {
+            T oldItem = nextItem(oldSection);
+            isOffsetBased = (oldItem instanceof TableOfContents.Section.Item);
+            oldOffsetsOrIndices[i] = getItemOffsetOrIndex(i, oldItem);
+        }
+        final int endPosition = oldSection.position();
+
+        oldSection.position(startPosition);
+        byte[] rawItems = oldSection.readByteArray(endPosition - startPosition);
+        int patchedStartOffset = writeRawPatchedItems(rawItems, oldItemCount);
+        if (patchedStartOffset < 0) {
+            oldSection.position(startPosition);
+            return false;
+        }
+
+        final int offsetDelta = patchedStartOffset - startPosition;
+        for (int i = 0; i < oldItemCount; ++i) {
+            int oldOffsetOrIndex = oldOffsetsOrIndices[i];
+            updateIndexOrOffset(
+                    this.oldToPatchedIndexMap,
+                    i,
+                    oldOffsetOrIndex,
+                    i,
+                    isOffsetBased ? oldOffsetOrIndex + offsetDelta : oldOffsetOrIndex
+            );
+        }
+        return true;
+    }
+
     private void doFullPatch(
+            DexDataBuffer patchBuffer,
             Dex.Section oldSection,
             int oldItemCount,
             int[] deletedIndices,
@@ -169,13 +267,13 @@ public abstract class DexSectionPatchAlgorithm<T extends Comparable<T>> {
         int patchedIndex = 0;
         while (oldIndex < oldItemCount || patchedIndex < newItemCount) {
             if (addActionCursor < addedItemCount && addedIndices[addActionCursor] == patchedIndex) {
-                T addedItem = nextItem(patchFile.getBuffer());
+                T addedItem = nextItem(patchBuffer);
                 int patchedOffset = writePatchedItem(addedItem);
                 ++addActionCursor;
                 ++patchedIndex;
             } else
             if (replaceActionCursor < replacedItemCount && replacedIndices[replaceActionCursor] == patchedIndex) {
-                T replacedItem = nextItem(patchFile.getBuffer());
+                T replacedItem = nextItem(patchBuffer);
                 int patchedOffset = writePatchedItem(replacedItem);
                 ++replaceActionCursor;
                 ++patchedIndex;
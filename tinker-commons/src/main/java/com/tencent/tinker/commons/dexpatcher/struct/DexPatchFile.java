@@ -17,6 +17,7 @@
 package com.tencent.tinker.commons.dexpatcher.struct;
 
 import com.tencent.tinker.android.dex.SizeOf;
+import com.tencent.tinker.android.dex.TableOfContents;
 import com.tencent.tinker.android.dex.io.DexDataBuffer;
 import com.tencent.tinker.android.dex.util.CompareUtils;
 import com.tencent.tinker.android.dex.util.FileUtils;
@@ -32,7 +33,13 @@ import java.util.Arrays;
  */
 public final class DexPatchFile {
     public static final byte[] MAGIC = {0x44, 0x58, 0x44, 0x49, 0x46, 0x46}; // DXDIFF
-    public static final short CURRENT_VERSION = 0x0002;
+    public static final short CURRENT_VERSION = 0x0003;
+    /**
+     * Patch files of this version don't record where each section's chunk starts,
+     * so their chunks can only be read one after another through {@link #getBuffer()}.
+     */
+    public static final short VERSION_WITHOUT_CHUNK_OFFSETS = 0x0002;
+    private final ByteBuffer data;
     private final DexDataBuffer buffer;
     private short version;
     private int patchedDexSize;
@@ -55,17 +62,38 @@ public final class DexPatchFile {
     private int patchedEncodedArraySectionOffset;
     private int patchedAnnotationsDirectorySectionOffset;
     private byte[] oldDexSignature;
+    private short[] chunkSectionTypes;
+    private int[] chunkOffsets;
 
     public DexPatchFile(File file) throws IOException {
-        this.buffer = new DexDataBuffer(ByteBuffer.wrap(FileUtils.readFile(file)));
-        init();
+        this(ByteBuffer.wrap(FileUtils.readFile(file)));
     }
 
     public DexPatchFile(InputStream is) throws IOException {
-        this.buffer = new DexDataBuffer(ByteBuffer.wrap(FileUtils.readStream(is)));
+        this(ByteBuffer.wrap(FileUtils.readStream(is)));
+    }
+
+    /**
+     * Creates a patch file that reads from {@code data} directly, e.g. a buffer
+     * returned by {@link FileUtils#mapFileReadOnly(File)}.
+     */
+    public DexPatchFile(ByteBuffer data) {
+        this.data = data;
+        this.buffer = new DexDataBuffer(data.duplicate());
         init();
     }
 
+    /**
+     * Creates a patch file backed by a memory-mapped buffer of {@code file}, no heap copy
+     * of the patch content is made. Chunks are only read on demand while patching.
+     */
+    public static DexPatchFile mapFromFile(File file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("file is null.");
+        }
+        return new DexPatchFile(FileUtils.mapFileReadOnly(file));
+    }
+
     private void init() {
         byte[] magic = this.buffer.readByteArray(MAGIC.length);
         if (CompareUtils.uArrCompare(magic, MAGIC) != 0) {
@@ -73,7 +101,8 @@ public final class DexPatchFile {
         }
 
         this.version = this.buffer.readShort();
-        if (CompareUtils.uCompare(this.version, CURRENT_VERSION) != 0) {
+        if (CompareUtils.uCompare(this.version, CURRENT_VERSION) != 0
+                && CompareUtils.uCompare(this.version, VERSION_WITHOUT_CHUNK_OFFSETS) != 0) {
             throw new IllegalStateException("bad dex patch file version: " + this.version + ", expected: " + CURRENT_VERSION);
         }
 
@@ -98,9 +127,48 @@ public final class DexPatchFile {
         this.patchedAnnotationsDirectorySectionOffset = this.buffer.readInt();
         this.oldDexSignature = this.buffer.readByteArray(SizeOf.SIGNATURE);
 
+        if (hasChunkOffsets()) {
+            int chunkCount = this.buffer.readUleb128();
+            this.chunkSectionTypes = new short[chunkCount];
+            this.chunkOffsets = new int[chunkCount];
+            for (int i = 0; i < chunkCount; ++i) {
+                this.chunkSectionTypes[i] = this.buffer.readShort();
+                this.chunkOffsets[i] = this.buffer.readInt();
+            }
+        }
+
         this.buffer.position(firstChunkOffset);
     }
 
+    /**
+     * Returns true if this patch file records where each section's chunk starts,
+     * which makes it possible to patch sections independently.
+     */
+    public boolean hasChunkOffsets() {
+        return CompareUtils.uCompare(this.version, VERSION_WITHOUT_CHUNK_OFFSETS) != 0;
+    }
+
+    /**
+     * Returns a new buffer positioned at the beginning of the chunk of section {@code sectionType},
+     * which is one of the {@code SECTION_TYPE_*} constants in {@link TableOfContents}.
+     *
+     * If this patch file has no chunk offsets, the shared buffer returned by {@link #getBuffer()}
+     * is returned instead, in that case chunks must be consumed in the order they were written.
+     */
+    public DexDataBuffer getSectionChunkBuffer(short sectionType) {
+        if (!hasChunkOffsets()) {
+            return this.buffer;
+        }
+        for (int i = 0; i < this.chunkSectionTypes.length; ++i) {
+            if (this.chunkSectionTypes[i] == sectionType) {
+                ByteBuffer chunkData = this.data.duplicate(); // positioned ByteBuffers aren't thread safe
+                chunkData.position(this.chunkOffsets[i]);
+                return new DexDataBuffer(chunkData);
+            }
+        }
+        throw new IllegalStateException("no chunk of section type " + sectionType + " in dex patch file.");
+    }
+
     public short getVersion() {
         return version;
     }
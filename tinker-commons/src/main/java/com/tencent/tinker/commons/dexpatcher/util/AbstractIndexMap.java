@@ -75,6 +75,94 @@ public abstract class AbstractIndexMap {
 
     public abstract int adjustCodeOffset(int codeOffset);
 
+    public abstract void mapStringIds(int oldIndex, int newIndex);
+
+    public abstract void markStringIdDeleted(int index);
+
+    public abstract void mapTypeIds(int oldIndex, int newIndex);
+
+    public abstract void markTypeIdDeleted(int index);
+
+    public abstract void mapProtoIds(int oldIndex, int newIndex);
+
+    public abstract void markProtoIdDeleted(int index);
+
+    public abstract void mapFieldIds(int oldIndex, int newIndex);
+
+    public abstract void markFieldIdDeleted(int index);
+
+    public abstract void mapMethodIds(int oldIndex, int newIndex);
+
+    public abstract void markMethodIdDeleted(int index);
+
+    public abstract void mapTypeListOffset(int oldOffset, int newOffset);
+
+    public abstract void markTypeListDeleted(int offset);
+
+    public abstract void mapAnnotationOffset(int oldOffset, int newOffset);
+
+    public abstract void markAnnotationDeleted(int offset);
+
+    public abstract void mapAnnotationSetOffset(int oldOffset, int newOffset);
+
+    public abstract void markAnnotationSetDeleted(int offset);
+
+    public abstract void mapAnnotationSetRefListOffset(int oldOffset, int newOffset);
+
+    public abstract void markAnnotationSetRefListDeleted(int offset);
+
+    public abstract void mapAnnotationsDirectoryOffset(int oldOffset, int newOffset);
+
+    public abstract void markAnnotationsDirectoryDeleted(int offset);
+
+    public abstract void mapStaticValuesOffset(int oldOffset, int newOffset);
+
+    public abstract void markStaticValuesDeleted(int offset);
+
+    public abstract void mapClassDataOffset(int oldOffset, int newOffset);
+
+    public abstract void markClassDataDeleted(int offset);
+
+    public abstract void mapDebugInfoItemOffset(int oldOffset, int newOffset);
+
+    public abstract void markDebugInfoItemDeleted(int offset);
+
+    public abstract void mapCodeOffset(int oldOffset, int newOffset);
+
+    public abstract void markCodeDeleted(int offset);
+
+    /**
+     * Tell if all indices or offsets of a kind are still the same after adjusting,
+     * which means none of them is remapped or marked as deleted so far.
+     */
+    public abstract boolean isStringIdsIdentity();
+
+    public abstract boolean isTypeIdsIdentity();
+
+    public abstract boolean isProtoIdsIdentity();
+
+    public abstract boolean isFieldIdsIdentity();
+
+    public abstract boolean isMethodIdsIdentity();
+
+    public abstract boolean isTypeListOffsetsIdentity();
+
+    public abstract boolean isAnnotationOffsetsIdentity();
+
+    public abstract boolean isAnnotationSetOffsetsIdentity();
+
+    public abstract boolean isAnnotationSetRefListOffsetsIdentity();
+
+    public abstract boolean isAnnotationsDirectoryOffsetsIdentity();
+
+    public abstract boolean isStaticValuesOffsetsIdentity();
+
+    public abstract boolean isClassDataOffsetsIdentity();
+
+    public abstract boolean isDebugInfoItemOffsetsIdentity();
+
+    public abstract boolean isCodeOffsetsIdentity();
+
     public TypeList adjust(TypeList typeList) {
         if (typeList == TypeList.EMPTY) {
             return typeList;
@@ -0,0 +1,561 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.commons.dexpatcher.util;
+
+import com.tencent.tinker.android.utils.SparseIntArray;
+
+import java.util.Arrays;
+
+/**
+ * Index map backed by plain arrays.
+ *
+ * Indices of string, type, proto, field and method ids are dense from 0 to size - 1, so
+ * they are mapped through int arrays indexed by the old index directly. Offsets of data
+ * sections are sparse and mapped through open-addressing int hash tables. Both make
+ * mapping and adjusting O(1) instead of the binary searches and array insertions
+ * {@link SparseIndexMap} pays for.
+ *
+ * Each kind of index or offset lives in its own table, so a table may be updated by one
+ * thread while tables of other kinds are read by other threads.
+ *
+ * Dex indices and offsets are never negative. Negative keys are still accepted and
+ * kept in a {@link SparseIntArray} aside, so that this map behaves the same as
+ * {@link SparseIndexMap} for any key.
+ */
+public class DenseIndexMap extends AbstractIndexMap {
+    private final IndexTable stringIds = new IndexTable();
+    private final IndexTable typeIds = new IndexTable();
+    private final IndexTable protoIds = new IndexTable();
+    private final IndexTable fieldIds = new IndexTable();
+    private final IndexTable methodIds = new IndexTable();
+    private final OffsetTable typeListOffsets = new OffsetTable();
+    private final OffsetTable annotationOffsets = new OffsetTable();
+    private final OffsetTable annotationSetOffsets = new OffsetTable();
+    private final OffsetTable annotationSetRefListOffsets = new OffsetTable();
+    private final OffsetTable annotationsDirectoryOffsets = new OffsetTable();
+    private final OffsetTable staticValuesOffsets = new OffsetTable();
+    private final OffsetTable classDataOffsets = new OffsetTable();
+    private final OffsetTable debugInfoItemOffsets = new OffsetTable();
+    private final OffsetTable codeOffsets = new OffsetTable();
+
+    @Override
+    public void mapStringIds(int oldIndex, int newIndex) {
+        stringIds.map(oldIndex, newIndex);
+    }
+
+    @Override
+    public void markStringIdDeleted(int index) {
+        stringIds.markDeleted(index);
+    }
+
+    @Override
+    public void mapTypeIds(int oldIndex, int newIndex) {
+        typeIds.map(oldIndex, newIndex);
+    }
+
+    @Override
+    public void markTypeIdDeleted(int index) {
+        typeIds.markDeleted(index);
+    }
+
+    @Override
+    public void mapProtoIds(int oldIndex, int newIndex) {
+        protoIds.map(oldIndex, newIndex);
+    }
+
+    @Override
+    public void markProtoIdDeleted(int index) {
+        protoIds.markDeleted(index);
+    }
+
+    @Override
+    public void mapFieldIds(int oldIndex, int newIndex) {
+        fieldIds.map(oldIndex, newIndex);
+    }
+
+    @Override
+    public void markFieldIdDeleted(int index) {
+        fieldIds.markDeleted(index);
+    }
+
+    @Override
+    public void mapMethodIds(int oldIndex, int newIndex) {
+        methodIds.map(oldIndex, newIndex);
+    }
+
+    @Override
+    public void markMethodIdDeleted(int index) {
+        methodIds.markDeleted(index);
+    }
+
+    @Override
+    public void mapTypeListOffset(int oldOffset, int newOffset) {
+        typeListOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markTypeListDeleted(int offset) {
+        typeListOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public void mapAnnotationOffset(int oldOffset, int newOffset) {
+        annotationOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markAnnotationDeleted(int offset) {
+        annotationOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public void mapAnnotationSetOffset(int oldOffset, int newOffset) {
+        annotationSetOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markAnnotationSetDeleted(int offset) {
+        annotationSetOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public void mapAnnotationSetRefListOffset(int oldOffset, int newOffset) {
+        annotationSetRefListOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markAnnotationSetRefListDeleted(int offset) {
+        annotationSetRefListOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public void mapAnnotationsDirectoryOffset(int oldOffset, int newOffset) {
+        annotationsDirectoryOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markAnnotationsDirectoryDeleted(int offset) {
+        annotationsDirectoryOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public void mapStaticValuesOffset(int oldOffset, int newOffset) {
+        staticValuesOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markStaticValuesDeleted(int offset) {
+        staticValuesOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public void mapClassDataOffset(int oldOffset, int newOffset) {
+        classDataOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markClassDataDeleted(int offset) {
+        classDataOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public void mapDebugInfoItemOffset(int oldOffset, int newOffset) {
+        debugInfoItemOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markDebugInfoItemDeleted(int offset) {
+        debugInfoItemOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public void mapCodeOffset(int oldOffset, int newOffset) {
+        codeOffsets.map(oldOffset, newOffset);
+    }
+
+    @Override
+    public void markCodeDeleted(int offset) {
+        codeOffsets.markDeleted(offset);
+    }
+
+    @Override
+    public boolean isStringIdsIdentity() {
+        return stringIds.isIdentity();
+    }
+
+    @Override
+    public boolean isTypeIdsIdentity() {
+        return typeIds.isIdentity();
+    }
+
+    @Override
+    public boolean isProtoIdsIdentity() {
+        return protoIds.isIdentity();
+    }
+
+    @Override
+    public boolean isFieldIdsIdentity() {
+        return fieldIds.isIdentity();
+    }
+
+    @Override
+    public boolean isMethodIdsIdentity() {
+        return methodIds.isIdentity();
+    }
+
+    @Override
+    public boolean isTypeListOffsetsIdentity() {
+        return typeListOffsets.isIdentity();
+    }
+
+    @Override
+    public boolean isAnnotationOffsetsIdentity() {
+        return annotationOffsets.isIdentity();
+    }
+
+    @Override
+    public boolean isAnnotationSetOffsetsIdentity() {
+        return annotationSetOffsets.isIdentity();
+    }
+
+    @Override
+    public boolean isAnnotationSetRefListOffsetsIdentity() {
+        return annotationSetRefListOffsets.isIdentity();
+    }
+
+    @Override
+    public boolean isAnnotationsDirectoryOffsetsIdentity() {
+        return annotationsDirectoryOffsets.isIdentity();
+    }
+
+    @Override
+    public boolean isStaticValuesOffsetsIdentity() {
+        return staticValuesOffsets.isIdentity();
+    }
+
+    @Override
+    public boolean isClassDataOffsetsIdentity() {
+        return classDataOffsets.isIdentity();
+    }
+
+    @Override
+    public boolean isDebugInfoItemOffsetsIdentity() {
+        return debugInfoItemOffsets.isIdentity();
+    }
+
+    @Override
+    public boolean isCodeOffsetsIdentity() {
+        return codeOffsets.isIdentity();
+    }
+
+    @Override
+    public int adjustStringIndex(int stringIndex) {
+        return stringIds.adjust(stringIndex);
+    }
+
+    @Override
+    public int adjustTypeIdIndex(int typeIdIndex) {
+        return typeIds.adjust(typeIdIndex);
+    }
+
+    @Override
+    public int adjustProtoIdIndex(int protoIndex) {
+        return protoIds.adjust(protoIndex);
+    }
+
+    @Override
+    public int adjustFieldIdIndex(int fieldIndex) {
+        return fieldIds.adjust(fieldIndex);
+    }
+
+    @Override
+    public int adjustMethodIdIndex(int methodIndex) {
+        return methodIds.adjust(methodIndex);
+    }
+
+    @Override
+    public int adjustTypeListOffset(int typeListOffset) {
+        return typeListOffsets.adjust(typeListOffset);
+    }
+
+    @Override
+    public int adjustAnnotationOffset(int annotationOffset) {
+        return annotationOffsets.adjust(annotationOffset);
+    }
+
+    @Override
+    public int adjustAnnotationSetOffset(int annotationSetOffset) {
+        return annotationSetOffsets.adjust(annotationSetOffset);
+    }
+
+    @Override
+    public int adjustAnnotationSetRefListOffset(int annotationSetRefListOffset) {
+        return annotationSetRefListOffsets.adjust(annotationSetRefListOffset);
+    }
+
+    @Override
+    public int adjustAnnotationsDirectoryOffset(int annotationsDirectoryOffset) {
+        return annotationsDirectoryOffsets.adjust(annotationsDirectoryOffset);
+    }
+
+    @Override
+    public int adjustStaticValuesOffset(int staticValuesOffset) {
+        return staticValuesOffsets.adjust(staticValuesOffset);
+    }
+
+    @Override
+    public int adjustClassDataOffset(int classDataOffset) {
+        return classDataOffsets.adjust(classDataOffset);
+    }
+
+    @Override
+    public int adjustDebugInfoItemOffset(int debugInfoItemOffset) {
+        return debugInfoItemOffsets.adjust(debugInfoItemOffset);
+    }
+
+    @Override
+    public int adjustCodeOffset(int codeOffset) {
+        return codeOffsets.adjust(codeOffset);
+    }
+
+    /**
+     * Maps dense indices, an index that is neither mapped nor deleted
+     * is adjusted to itself.
+     */
+    private static final class IndexTable {
+        private static final int NO_MAPPING = Integer.MIN_VALUE;
+        private static final int INITIAL_CAPACITY = 64;
+
+        private int[] mappedIndices = null;
+        private boolean[] deletedFlags = null;
+        private int mappedCount = 0;
+        private int deletedCount = 0;
+        private SparseIntArray negativeMappings = null;
+
+        void map(int oldIndex, int newIndex) {
+            if (oldIndex < 0) {
+                negativeMappings = mapNegative(negativeMappings, oldIndex, newIndex);
+                return;
+            }
+            if (mappedIndices == null || oldIndex >= mappedIndices.length) {
+                int oldCapacity = (mappedIndices != null ? mappedIndices.length : 0);
+                mappedIndices = (mappedIndices != null
+                        ? Arrays.copyOf(mappedIndices, newCapacity(oldCapacity, oldIndex))
+                        : new int[newCapacity(0, oldIndex)]);
+                Arrays.fill(mappedIndices, oldCapacity, mappedIndices.length, NO_MAPPING);
+            }
+            if (mappedIndices[oldIndex] == NO_MAPPING) {
+                ++mappedCount;
+            }
+            mappedIndices[oldIndex] = newIndex;
+        }
+
+        void markDeleted(int index) {
+            if (index < 0) {
+                return;
+            }
+            if (deletedFlags == null || index >= deletedFlags.length) {
+                deletedFlags = (deletedFlags != null
+                        ? Arrays.copyOf(deletedFlags, newCapacity(deletedFlags.length, index))
+                        : new boolean[newCapacity(0, index)]);
+            }
+            if (!deletedFlags[index]) {
+                deletedFlags[index] = true;
+                ++deletedCount;
+            }
+        }
+
+        int adjust(int index) {
+            if (index < 0) {
+                return adjustNegative(negativeMappings, index);
+            }
+            if (mappedIndices != null && index < mappedIndices.length) {
+                int mappedIndex = mappedIndices[index];
+                if (mappedIndex != NO_MAPPING) {
+                    return mappedIndex;
+                }
+            }
+            if (deletedFlags != null && index < deletedFlags.length && deletedFlags[index]) {
+                return -1;
+            }
+            return index;
+        }
+
+        boolean isIdentity() {
+            return mappedCount == 0 && deletedCount == 0 && negativeMappings == null;
+        }
+
+        private static int newCapacity(int oldCapacity, int index) {
+            return Math.max(Math.max(INITIAL_CAPACITY, oldCapacity << 1), index + 1);
+        }
+    }
+
+    /**
+     * Maps sparse offsets, an offset that is neither mapped nor deleted
+     * is adjusted to itself.
+     */
+    private static final class OffsetTable {
+        private final IntHashTable mappedOffsets = new IntHashTable();
+        private final IntHashTable deletedOffsets = new IntHashTable();
+        private SparseIntArray negativeMappings = null;
+
+        void map(int oldOffset, int newOffset) {
+            if (oldOffset < 0) {
+                negativeMappings = mapNegative(negativeMappings, oldOffset, newOffset);
+                return;
+            }
+            mappedOffsets.put(oldOffset, newOffset);
+        }
+
+        void markDeleted(int offset) {
+            if (offset < 0) {
+                return;
+            }
+            deletedOffsets.put(offset, 0);
+        }
+
+        int adjust(int offset) {
+            if (offset < 0) {
+                return adjustNegative(negativeMappings, offset);
+            }
+            int slot = mappedOffsets.indexOf(offset);
+            if (slot >= 0) {
+                return mappedOffsets.valueAt(slot);
+            }
+            return (deletedOffsets.indexOf(offset) >= 0 ? -1 : offset);
+        }
+
+        boolean isIdentity() {
+            return mappedOffsets.size() == 0 && deletedOffsets.size() == 0 && negativeMappings == null;
+        }
+    }
+
+    /**
+     * Open-addressing hash table with linear probing from non-negative int keys to int values.
+     */
+    private static final class IntHashTable {
+        private static final int EMPTY_KEY = -1;
+        private static final int INITIAL_CAPACITY = 64;
+
+        private int[] keys = null;
+        private int[] values = null;
+        private int size = 0;
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the slot of {@code key}, or a negative value if {@code key} is absent.
+         */
+        int indexOf(int key) {
+            if (keys == null) {
+                return -1;
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (true) {
+                int currKey = keys[slot];
+                if (currKey == key) {
+                    return slot;
+                }
+                if (currKey == EMPTY_KEY) {
+                    return -1;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        int valueAt(int slot) {
+            return values[slot];
+        }
+
+        void put(int key, int value) {
+            if (keys == null) {
+                allocate(INITIAL_CAPACITY);
+            }
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (true) {
+                int currKey = keys[slot];
+                if (currKey == key) {
+                    values[slot] = value;
+                    return;
+                }
+                if (currKey == EMPTY_KEY) {
+                    keys[slot] = key;
+                    values[slot] = value;
+                    // Keep load factor under 0.5 so that probe sequences stay short.
+                    if (++size > (keys.length >>> 1)) {
+                        rehash();
+                    }
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private void allocate(int capacity) {
+            keys = new int[capacity];
+            values = new int[capacity];
+            Arrays.fill(keys, EMPTY_KEY);
+        }
+
+        private void rehash() {
+            int[] oldKeys = keys;
+            int[] oldValues = values;
+            allocate(oldKeys.length << 1);
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; ++i) {
+                int key = oldKeys[i];
+                if (key == EMPTY_KEY) {
+                    continue;
+                }
+                int slot = hash(key) & mask;
+                while (keys[slot] != EMPTY_KEY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+
+        private static int hash(int key) {
+            int h = key * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static SparseIntArray mapNegative(SparseIntArray negativeMappings, int oldKey, int newKey) {
+        if (negativeMappings == null) {
+            negativeMappings = new SparseIntArray();
+        }
+        negativeMappings.put(oldKey, newKey);
+        return negativeMappings;
+    }
+
+    private static int adjustNegative(SparseIntArray negativeMappings, int key) {
+        if (negativeMappings != null) {
+            int index = negativeMappings.indexOfKey(key);
+            if (index >= 0) {
+                return negativeMappings.valueAt(index);
+            }
+        }
+        // Negative keys are never marked deleted, as in SparseIndexMap.
+        return key;
+    }
+}
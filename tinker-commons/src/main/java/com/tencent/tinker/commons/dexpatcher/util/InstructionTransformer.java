@@ -22,6 +22,7 @@ import com.tencent.tinker.android.dx.instruction.InstructionPromoter;
 import com.tencent.tinker.android.dx.instruction.InstructionReader;
 import com.tencent.tinker.android.dx.instruction.InstructionVisitor;
 import com.tencent.tinker.android.dx.instruction.InstructionWriter;
+import com.tencent.tinker.android.dx.instruction.Opcodes;
 import com.tencent.tinker.android.dx.instruction.ShortArrayCodeInput;
 import com.tencent.tinker.android.dx.instruction.ShortArrayCodeOutput;
 
@@ -38,6 +39,11 @@ public final class InstructionTransformer {
     }
 
     public short[] transform(short[] encodedInstructions) throws DexException {
+        short[] result = transformIndexesInPlace(encodedInstructions);
+        if (result != null) {
+            return result;
+        }
+
         ShortArrayCodeOutput out = new ShortArrayCodeOutput(encodedInstructions.length);
         InstructionPromoter ipmo = new InstructionPromoter();
         InstructionWriter iw = new InstructionWriter(out, ipmo);
@@ -56,6 +62,148 @@ public final class InstructionTransformer {
         return out.getArray();
     }
 
+    /**
+     * Fast path of {@code transform}. Unless a const-string instruction needs to be promoted
+     * to const-string/jumbo, every instruction keeps its size and address after transformation,
+     * so only index operands have to be changed and we can do it on a copy of
+     * {@code encodedInstructions} without decoding and re-encoding whole instructions.
+     *
+     * @return transformed instructions, or null if any instruction needs promotion or
+     * cannot be recognized here, in which case the caller should fall back to the full path.
+     */
+    private short[] transformIndexesInPlace(short[] encodedInstructions) {
+        short[] result = encodedInstructions.clone();
+        int insnsSize = encodedInstructions.length;
+        int currentAddress = 0;
+        while (currentAddress < insnsSize) {
+            int opcodeUnit = encodedInstructions[currentAddress] & 0xFFFF;
+            int opcode = Opcodes.extractOpcodeFromUnit(opcodeUnit);
+            int insnSize = getInstructionSize(encodedInstructions, currentAddress, opcode);
+            if (insnSize <= 0 || insnSize > insnsSize - currentAddress) {
+                return null;
+            }
+            int indexType = InstructionCodec.getInstructionIndexType(opcode);
+            switch (indexType) {
+                case InstructionCodec.INDEX_TYPE_STRING_REF:
+                case InstructionCodec.INDEX_TYPE_TYPE_REF:
+                case InstructionCodec.INDEX_TYPE_FIELD_REF:
+                case InstructionCodec.INDEX_TYPE_METHOD_REF: {
+                    if (opcode == Opcodes.CONST_STRING_JUMBO) {
+                        int index = (encodedInstructions[currentAddress + 1] & 0xFFFF)
+                                | (encodedInstructions[currentAddress + 2] << 16);
+                        int mappedIndex = transformIndexIfNeeded(index, indexType);
+                        result[currentAddress + 1] = InstructionCodec.unit0(mappedIndex);
+                        result[currentAddress + 2] = InstructionCodec.unit1(mappedIndex);
+                    } else {
+                        int index = encodedInstructions[currentAddress + 1] & 0xFFFF;
+                        int mappedIndex = transformIndexIfNeeded(index, indexType);
+                        if (opcode == Opcodes.CONST_STRING && mappedIndex > 0xFFFF) {
+                            return null;
+                        }
+                        result[currentAddress + 1] = (short) mappedIndex;
+                    }
+                    break;
+                }
+                default: {
+                    break;
+                }
+            }
+            currentAddress += insnSize;
+        }
+        return result;
+    }
+
+    /**
+     * Get size in code units of instruction at {@code address}, or -1 if the size
+     * is unknown.
+     */
+    private static int getInstructionSize(short[] encodedInstructions, int address, int opcode) {
+        switch (InstructionCodec.getInstructionFormat(opcode)) {
+            case InstructionCodec.INSN_FORMAT_10T:
+            case InstructionCodec.INSN_FORMAT_10X:
+            case InstructionCodec.INSN_FORMAT_11N:
+            case InstructionCodec.INSN_FORMAT_11X:
+            case InstructionCodec.INSN_FORMAT_12X: {
+                return 1;
+            }
+            case InstructionCodec.INSN_FORMAT_20T:
+            case InstructionCodec.INSN_FORMAT_21C:
+            case InstructionCodec.INSN_FORMAT_21H:
+            case InstructionCodec.INSN_FORMAT_21S:
+            case InstructionCodec.INSN_FORMAT_21T:
+            case InstructionCodec.INSN_FORMAT_22B:
+            case InstructionCodec.INSN_FORMAT_22C:
+            case InstructionCodec.INSN_FORMAT_22S:
+            case InstructionCodec.INSN_FORMAT_22T:
+            case InstructionCodec.INSN_FORMAT_22X:
+            case InstructionCodec.INSN_FORMAT_23X: {
+                return 2;
+            }
+            case InstructionCodec.INSN_FORMAT_30T:
+            case InstructionCodec.INSN_FORMAT_31C:
+            case InstructionCodec.INSN_FORMAT_31I:
+            case InstructionCodec.INSN_FORMAT_31T:
+            case InstructionCodec.INSN_FORMAT_32X:
+            case InstructionCodec.INSN_FORMAT_35C:
+            case InstructionCodec.INSN_FORMAT_3RC: {
+                return 3;
+            }
+            case InstructionCodec.INSN_FORMAT_51L: {
+                return 5;
+            }
+            case InstructionCodec.INSN_FORMAT_PACKED_SWITCH_PAYLOAD: {
+                if (address + 1 >= encodedInstructions.length) {
+                    return -1;
+                }
+                int size = encodedInstructions[address + 1] & 0xFFFF;
+                return 4 + size * 2;
+            }
+            case InstructionCodec.INSN_FORMAT_SPARSE_SWITCH_PAYLOAD: {
+                if (address + 1 >= encodedInstructions.length) {
+                    return -1;
+                }
+                int size = encodedInstructions[address + 1] & 0xFFFF;
+                return 2 + size * 4;
+            }
+            case InstructionCodec.INSN_FORMAT_FILL_ARRAY_DATA_PAYLOAD: {
+                if (address + 3 >= encodedInstructions.length) {
+                    return -1;
+                }
+                int elementWidth = encodedInstructions[address + 1] & 0xFFFF;
+                if (elementWidth != 1 && elementWidth != 2 && elementWidth != 4 && elementWidth != 8) {
+                    return -1;
+                }
+                long size = (encodedInstructions[address + 2] & 0xFFFFL)
+                        | ((encodedInstructions[address + 3] & 0xFFFFL) << 16);
+                long dataUnitCount = (size * elementWidth + 1) / 2;
+                return (dataUnitCount > encodedInstructions.length ? -1 : 4 + (int) dataUnitCount);
+            }
+            default: {
+                return -1;
+            }
+        }
+    }
+
+    private int transformIndexIfNeeded(int index, int indexType) {
+        switch (indexType) {
+            case InstructionCodec.INDEX_TYPE_STRING_REF: {
+                return indexMap.adjustStringIndex(index);
+            }
+            case InstructionCodec.INDEX_TYPE_TYPE_REF: {
+                return indexMap.adjustTypeIdIndex(index);
+            }
+            case InstructionCodec.INDEX_TYPE_FIELD_REF: {
+                return indexMap.adjustFieldIdIndex(index);
+            }
+            case InstructionCodec.INDEX_TYPE_METHOD_REF: {
+                return indexMap.adjustMethodIdIndex(index);
+            }
+            default: {
+                return index;
+            }
+        }
+    }
+
     private final class InstructionTransformVisitor extends InstructionVisitor {
         InstructionTransformVisitor(InstructionVisitor iv) {
             super(iv);
@@ -102,27 +250,6 @@ public final class InstructionTransformer {
             int mappedIndex = transformIndexIfNeeded(index, indexType);
             super.visitRegisterRangeInsn(currentAddress, opcode, mappedIndex, indexType, target, literal, a, registerCount);
         }
-
-        private int transformIndexIfNeeded(int index, int indexType) {
-            switch (indexType) {
-                case InstructionCodec.INDEX_TYPE_STRING_REF: {
-                    return indexMap.adjustStringIndex(index);
-                }
-                case InstructionCodec.INDEX_TYPE_TYPE_REF: {
-                    return indexMap.adjustTypeIdIndex(index);
-                }
-                case InstructionCodec.INDEX_TYPE_FIELD_REF: {
-                    return indexMap.adjustFieldIdIndex(index);
-                }
-                case InstructionCodec.INDEX_TYPE_METHOD_REF: {
-                    return indexMap.adjustMethodIdIndex(index);
-                }
-                default: {
-                    return index;
-                }
-            }
-        }
-
     }
 }
 
@@ -56,132 +56,230 @@ public class SparseIndexMap extends AbstractIndexMap {
     private final SparseBoolArray deletedDebugInfoItemOffsets = new SparseBoolArray();
     private final SparseBoolArray deletedCodeOffsets = new SparseBoolArray();
 
+    @Override
     public void mapStringIds(int oldIndex, int newIndex) {
         stringIdsMap.put(oldIndex, newIndex);
     }
 
+    @Override
     public void markStringIdDeleted(int index) {
         if (index < 0) return;
         deletedStringIds.put(index, true);
     }
 
+    @Override
     public void mapTypeIds(int oldIndex, int newIndex) {
         typeIdsMap.put(oldIndex, newIndex);
     }
 
+    @Override
     public void markTypeIdDeleted(int index) {
         if (index < 0) return;
         deletedTypeIds.put(index, true);
     }
 
+    @Override
     public void mapProtoIds(int oldIndex, int newIndex) {
         protoIdsMap.put(oldIndex, newIndex);
     }
 
+    @Override
     public void markProtoIdDeleted(int index) {
         if (index < 0) return;
         deletedProtoIds.put(index, true);
     }
 
+    @Override
     public void mapFieldIds(int oldIndex, int newIndex) {
         fieldIdsMap.put(oldIndex, newIndex);
     }
 
+    @Override
     public void markFieldIdDeleted(int index) {
         if (index < 0) return;
         deletedFieldIds.put(index, true);
     }
 
+    @Override
     public void mapMethodIds(int oldIndex, int newIndex) {
         methodIdsMap.put(oldIndex, newIndex);
     }
 
+    @Override
     public void markMethodIdDeleted(int index) {
         if (index < 0) return;
         deletedMethodIds.put(index, true);
     }
 
+    @Override
     public void mapTypeListOffset(int oldOffset, int newOffset) {
         typeListOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markTypeListDeleted(int offset) {
         if (offset < 0) return;
         deletedTypeListOffsets.put(offset, true);
     }
 
+    @Override
     public void mapAnnotationOffset(int oldOffset, int newOffset) {
         annotationOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markAnnotationDeleted(int offset) {
         if (offset < 0) return;
         deletedAnnotationOffsets.put(offset, true);
     }
 
+    @Override
     public void mapAnnotationSetOffset(int oldOffset, int newOffset) {
         annotationSetOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markAnnotationSetDeleted(int offset) {
         if (offset < 0) return;
         deletedAnnotationSetOffsets.put(offset, true);
     }
 
+    @Override
     public void mapAnnotationSetRefListOffset(int oldOffset, int newOffset) {
         annotationSetRefListOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markAnnotationSetRefListDeleted(int offset) {
         if (offset < 0) return;
         deletedAnnotationSetRefListOffsets.put(offset, true);
     }
 
+    @Override
     public void mapAnnotationsDirectoryOffset(int oldOffset, int newOffset) {
         annotationsDirectoryOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markAnnotationsDirectoryDeleted(int offset) {
         if (offset < 0) return;
         deletedAnnotationsDirectoryOffsets.put(offset, true);
     }
 
+    @Override
     public void mapStaticValuesOffset(int oldOffset, int newOffset) {
         staticValuesOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markStaticValuesDeleted(int offset) {
         if (offset < 0) return;
         deletedStaticValuesOffsets.put(offset, true);
     }
 
+    @Override
     public void mapClassDataOffset(int oldOffset, int newOffset) {
         classDataOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markClassDataDeleted(int offset) {
         if (offset < 0) return;
         deletedClassDataOffsets.put(offset, true);
     }
 
+    @Override
     public void mapDebugInfoItemOffset(int oldOffset, int newOffset) {
         debugInfoItemOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markDebugInfoItemDeleted(int offset) {
         if (offset < 0) return;
         deletedDebugInfoItemOffsets.put(offset, true);
     }
 
+    @Override
     public void mapCodeOffset(int oldOffset, int newOffset) {
         codeOffsetsMap.put(oldOffset, newOffset);
     }
 
+    @Override
     public void markCodeDeleted(int offset) {
         if (offset < 0) return;
         deletedCodeOffsets.put(offset, true);
     }
 
+    @Override
+    public boolean isStringIdsIdentity() {
+        return stringIdsMap.size() == 0 && deletedStringIds.size() == 0;
+    }
+
+    @Override
+    public boolean isTypeIdsIdentity() {
+        return typeIdsMap.size() == 0 && deletedTypeIds.size() == 0;
+    }
+
+    @Override
+    public boolean isProtoIdsIdentity() {
+        return protoIdsMap.size() == 0 && deletedProtoIds.size() == 0;
+    }
+
+    @Override
+    public boolean isFieldIdsIdentity() {
+        return fieldIdsMap.size() == 0 && deletedFieldIds.size() == 0;
+    }
+
+    @Override
+    public boolean isMethodIdsIdentity() {
+        return methodIdsMap.size() == 0 && deletedMethodIds.size() == 0;
+    }
+
+    @Override
+    public boolean isTypeListOffsetsIdentity() {
+        return typeListOffsetsMap.size() == 0 && deletedTypeListOffsets.size() == 0;
+    }
+
+    @Override
+    public boolean isAnnotationOffsetsIdentity() {
+        return annotationOffsetsMap.size() == 0 && deletedAnnotationOffsets.size() == 0;
+    }
+
+    @Override
+    public boolean isAnnotationSetOffsetsIdentity() {
+        return annotationSetOffsetsMap.size() == 0 && deletedAnnotationSetOffsets.size() == 0;
+    }
+
+    @Override
+    public boolean isAnnotationSetRefListOffsetsIdentity() {
+        return annotationSetRefListOffsetsMap.size() == 0 && deletedAnnotationSetRefListOffsets.size() == 0;
+    }
+
+    @Override
+    public boolean isAnnotationsDirectoryOffsetsIdentity() {
+        return annotationsDirectoryOffsetsMap.size() == 0 && deletedAnnotationsDirectoryOffsets.size() == 0;
+    }
+
+    @Override
+    public boolean isStaticValuesOffsetsIdentity() {
+        return staticValuesOffsetsMap.size() == 0 && deletedStaticValuesOffsets.size() == 0;
+    }
+
+    @Override
+    public boolean isClassDataOffsetsIdentity() {
+        return classDataOffsetsMap.size() == 0 && deletedClassDataOffsets.size() == 0;
+    }
+
+    @Override
+    public boolean isDebugInfoItemOffsetsIdentity() {
+        return debugInfoItemOffsetsMap.size() == 0 && deletedDebugInfoItemOffsets.size() == 0;
+    }
+
+    @Override
+    public boolean isCodeOffsetsIdentity() {
+        return codeOffsetsMap.size() == 0 && deletedCodeOffsets.size() == 0;
+    }
+
     @Override
     public int adjustStringIndex(int stringIndex) {
         int index = stringIdsMap.indexOfKey(stringIndex);
@@ -23,7 +23,6 @@ import com.tencent.tinker.commons.ziputil.TinkerZipOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 /**
  * Created by zhangshaowen on 16/8/10.
@@ -32,21 +31,9 @@ public class ResUtil {
     private static final int BUFFER_SIZE = 16384;
 
     public static void extractTinkerEntry(TinkerZipFile apk, TinkerZipEntry zipEntry, TinkerZipOutputStream outputStream) throws IOException {
-        InputStream in = null;
-        try {
-            in = apk.getInputStream(zipEntry);
-            outputStream.putNextEntry(new TinkerZipEntry(zipEntry));
-            byte[] buffer = new byte[BUFFER_SIZE];
-
-            for (int length = in.read(buffer); length != -1; length = in.read(buffer)) {
-                outputStream.write(buffer, 0, length);
-            }
-            outputStream.closeEntry();
-        } finally {
-            if (in != null) {
-                in.close();
-            }
-        }
+        outputStream.putNextEntry(new TinkerZipEntry(zipEntry));
+        outputStream.writeRawData(apk, zipEntry);
+        outputStream.closeEntry();
     }
 
     public static void extractLargeModifyFile(TinkerZipEntry sourceArscEntry, File newFile, long newFileCrc, TinkerZipOutputStream outputStream) throws IOException {
@@ -24,7 +24,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -380,6 +383,58 @@ public class TinkerZipFile implements Closeable, ZipConstants {
         }
     }
 
+    /**
+     * Transfers raw data of the specified {@code ZipEntry}, which is still compressed if the entry
+     * is deflated, to {@code target} with {@link FileChannel#transferTo}. Unlike the stream returned
+     * by {@link #getInputStream}, no heap buffer is used and the lock shared by all streams of this
+     * file is not taken, since only positional reads are done.
+     *
+     * @return the number of bytes transferred.
+     * @throws IOException
+     *             if an {@code IOException} occurs.
+     * @throws IllegalStateException if this zip file has been closed.
+     */
+    public long transferRawData(TinkerZipEntry entry, WritableByteChannel target) throws IOException {
+        checkNotClosed();
+        TinkerZipEntry localEntry = getEntry(entry.getName());
+        if (localEntry == null) {
+            throw new ZipException("Entry not found: " + entry.getName());
+        }
+        FileChannel channel = raf.getChannel();
+
+        ByteBuffer header = ByteBuffer.allocate(LOCHDR).order(ByteOrder.LITTLE_ENDIAN);
+        long headerOffset = localEntry.localHeaderRelOffset;
+        while (header.hasRemaining()) {
+            if (channel.read(header, headerOffset + header.position()) < 0) {
+                throw new ZipException("Truncated Local File Header of entry " + localEntry.getName());
+            }
+        }
+        final int localMagic = header.getInt(0);
+        if (localMagic != LOCSIG) {
+            throwZipException(filename, channel.size(), localEntry.getName(), headerOffset, "Local File Header", localMagic);
+        }
+        // At position 6 we find the General Purpose Bit Flag.
+        int gpbf = header.getShort(6) & 0xffff;
+        if ((gpbf & TinkerZipFile.GPBF_UNSUPPORTED_MASK) != 0) {
+            throw new ZipException("Invalid General Purpose Bit Flag: " + gpbf);
+        }
+        // Offset 26 has the file name length, and offset 28 has the extra field length.
+        int fileNameLength = header.getShort(26) & 0xffff;
+        int extraFieldLength = header.getShort(28) & 0xffff;
+
+        long position = headerOffset + LOCHDR + fileNameLength + extraFieldLength;
+        long count = (localEntry.compressionMethod == TinkerZipEntry.STORED ? localEntry.size : localEntry.compressedSize);
+        long end = position + count;
+        while (position < end) {
+            long transferred = channel.transferTo(position, end - position, target);
+            if (transferred <= 0) {
+                throw new ZipException("Truncated data of entry " + localEntry.getName());
+            }
+            position += transferred;
+        }
+        return count;
+    }
+
     /**
      * Gets the file name of this {@code ZipFile}.
      *
@@ -20,10 +20,14 @@ package com.tencent.tinker.commons.ziputil;
 // import libcore.util.CountingOutputStream;
 // import libcore.util.EmptyArray;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.FileOutputStream;
 import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.channels.FileChannel;
 import java.util.HashSet;
 import java.util.zip.GZIPOutputStream;
 import java.util.zip.ZipException;
@@ -94,6 +98,11 @@ public class TinkerZipOutputStream extends FilterOutputStream implements ZipCons
      * {@code archiveNeedsZip64EocdRecord} are always {@code true}.
      */
     private final boolean forceZip64;
+    /**
+     * Channel of the underlying file if this stream is constructed with a {@code FileOutputStream},
+     * used by {@link #writeRawData} to transfer raw data of entries without copying.
+     */
+    private final FileChannel channel;
     private byte[]                commentBytes             = BYTE;
     private int                   defaultCompressionMethod = DEFLATED;
     // private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
@@ -133,6 +142,18 @@ public class TinkerZipOutputStream extends FilterOutputStream implements ZipCons
     public TinkerZipOutputStream(OutputStream os, boolean forceZip64) {
         super(os);
         this.forceZip64 = forceZip64;
+        this.channel = null;
+    }
+
+    /**
+     * Constructs a new {@code ZipOutputStream} that writes a zip file to the given
+     * {@code FileOutputStream} through a buffer. Raw data of entries written by
+     * {@link #writeRawData} is transferred to the file channel directly.
+     */
+    public TinkerZipOutputStream(FileOutputStream os) {
+        super(new BufferedOutputStream(os));
+        this.forceZip64 = false;
+        this.channel = os.getChannel();
     }
 
     /**
@@ -557,6 +578,42 @@ public class TinkerZipOutputStream extends FilterOutputStream implements ZipCons
         }
         // crc.update(buffer, offset, byteCount);
     }
+    /**
+     * Writes raw data of {@code entry} in {@code zipFile}, which is still compressed if the entry
+     * is deflated, as data of the current entry. The current entry should be put with the same
+     * method, crc and sizes as {@code entry}.
+     *
+     * <p>If this stream is constructed with a {@code FileOutputStream}, data is transferred by
+     * {@link TinkerZipFile#transferRawData} without copying, otherwise it is copied through
+     * a heap buffer.
+     *
+     * @throws IOException
+     *                If an error occurs reading from zipFile or writing to the stream
+     */
+    public void writeRawData(TinkerZipFile zipFile, TinkerZipEntry entry) throws IOException {
+        checkOpen();
+        if (currentEntry == null) {
+            throw new ZipException("No active entry");
+        }
+        if (channel != null) {
+            out.flush();
+            zipFile.transferRawData(entry, channel);
+            return;
+        }
+        InputStream in = zipFile.getInputStream(entry);
+        if (in == null) {
+            throw new ZipException("Entry not found: " + entry.getName());
+        }
+        try {
+            byte[] buffer = new byte[16384];
+            for (int length = in.read(buffer); length != -1; length = in.read(buffer)) {
+                out.write(buffer, 0, length);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
     private void checkOpen() throws IOException {
         if (cDir == null) {
             throw new IOException("Stream is closed");
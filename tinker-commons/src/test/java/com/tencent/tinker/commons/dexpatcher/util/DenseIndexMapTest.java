@@ -0,0 +1,459 @@
+/*
+ * Tencent is pleased to support the open source community by making Tinker available.
+ *
+ * Copyright (C) 2016 THL A29 Limited, a Tencent company. All rights reserved.
+ *
+ * Licensed under the BSD 3-Clause License (the "License"); you may not use this file except in
+ * compliance with the License. You may obtain a copy of the License at
+ *
+ * https://opensource.org/licenses/BSD-3-Clause
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is
+ * distributed on an "AS IS" basis, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND,
+ * either express or implied. See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.tencent.tinker.commons.dexpatcher.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Checks that {@link DenseIndexMap} adjusts every kind of index and offset
+ * the same as {@link SparseIndexMap} does.
+ */
+public class DenseIndexMapTest {
+    private static final Section[] SECTIONS = {
+            new Section("StringIds") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapStringIds(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markStringIdDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustStringIndex(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isStringIdsIdentity();
+                }
+            },
+            new Section("TypeIds") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapTypeIds(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markTypeIdDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustTypeIdIndex(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isTypeIdsIdentity();
+                }
+            },
+            new Section("ProtoIds") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapProtoIds(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markProtoIdDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustProtoIdIndex(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isProtoIdsIdentity();
+                }
+            },
+            new Section("FieldIds") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapFieldIds(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markFieldIdDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustFieldIdIndex(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isFieldIdsIdentity();
+                }
+            },
+            new Section("MethodIds") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapMethodIds(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markMethodIdDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustMethodIdIndex(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isMethodIdsIdentity();
+                }
+            },
+            new Section("TypeListOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapTypeListOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markTypeListDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustTypeListOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isTypeListOffsetsIdentity();
+                }
+            },
+            new Section("AnnotationOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapAnnotationOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markAnnotationDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustAnnotationOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isAnnotationOffsetsIdentity();
+                }
+            },
+            new Section("AnnotationSetOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapAnnotationSetOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markAnnotationSetDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustAnnotationSetOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isAnnotationSetOffsetsIdentity();
+                }
+            },
+            new Section("AnnotationSetRefListOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapAnnotationSetRefListOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markAnnotationSetRefListDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustAnnotationSetRefListOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isAnnotationSetRefListOffsetsIdentity();
+                }
+            },
+            new Section("AnnotationsDirectoryOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapAnnotationsDirectoryOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markAnnotationsDirectoryDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustAnnotationsDirectoryOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isAnnotationsDirectoryOffsetsIdentity();
+                }
+            },
+            new Section("StaticValuesOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapStaticValuesOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markStaticValuesDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustStaticValuesOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isStaticValuesOffsetsIdentity();
+                }
+            },
+            new Section("ClassDataOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapClassDataOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markClassDataDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustClassDataOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isClassDataOffsetsIdentity();
+                }
+            },
+            new Section("DebugInfoItemOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapDebugInfoItemOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markDebugInfoItemDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustDebugInfoItemOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isDebugInfoItemOffsetsIdentity();
+                }
+            },
+            new Section("CodeOffsets") {
+                @Override
+                void map(AbstractIndexMap indexMap, int oldKey, int newKey) {
+                    indexMap.mapCodeOffset(oldKey, newKey);
+                }
+
+                @Override
+                void markDeleted(AbstractIndexMap indexMap, int key) {
+                    indexMap.markCodeDeleted(key);
+                }
+
+                @Override
+                int adjust(AbstractIndexMap indexMap, int key) {
+                    return indexMap.adjustCodeOffset(key);
+                }
+
+                @Override
+                boolean isIdentity(AbstractIndexMap indexMap) {
+                    return indexMap.isCodeOffsetsIdentity();
+                }
+            }
+    };
+
+    @Test
+    public void testEmptyMapIsIdentity() {
+        DenseIndexMap denseMap = new DenseIndexMap();
+        SparseIndexMap sparseMap = new SparseIndexMap();
+        for (Section section : SECTIONS) {
+            assertSame(section, denseMap, sparseMap, new int[]{-5, -1, 0, 1, 63, 64, 100000});
+        }
+    }
+
+    @Test
+    public void testDenseMapping() {
+        for (Section section : SECTIONS) {
+            DenseIndexMap denseMap = new DenseIndexMap();
+            SparseIndexMap sparseMap = new SparseIndexMap();
+            // Shift every index behind a removed item, growing the table past its initial capacity.
+            for (int oldKey = 0; oldKey < 1000; ++oldKey) {
+                if (oldKey % 7 == 3) {
+                    section.markDeleted(denseMap, oldKey);
+                    section.markDeleted(sparseMap, oldKey);
+                } else {
+                    int newKey = oldKey - oldKey / 7;
+                    section.map(denseMap, oldKey, newKey);
+                    section.map(sparseMap, oldKey, newKey);
+                }
+            }
+            assertSame(section, denseMap, sparseMap, keysInRange(-2, 1100));
+        }
+    }
+
+    @Test
+    public void testRemappingAndDeletion() {
+        for (Section section : SECTIONS) {
+            DenseIndexMap denseMap = new DenseIndexMap();
+            SparseIndexMap sparseMap = new SparseIndexMap();
+            // A key that is both mapped and deleted is adjusted to its mapping, the latest one wins.
+            apply(section, denseMap, sparseMap, 10, 20, true);
+            apply(section, denseMap, sparseMap, 10, 30, false);
+            apply(section, denseMap, sparseMap, 11, 0, true);
+            apply(section, denseMap, sparseMap, 11, 40, false);
+            apply(section, denseMap, sparseMap, 12, 0, true);
+            apply(section, denseMap, sparseMap, 12, 0, true);
+            assertSame(section, denseMap, sparseMap, keysInRange(0, 20));
+        }
+    }
+
+    @Test
+    public void testDeletionOnlyIsNotIdentity() {
+        for (Section section : SECTIONS) {
+            DenseIndexMap denseMap = new DenseIndexMap();
+            SparseIndexMap sparseMap = new SparseIndexMap();
+            section.markDeleted(denseMap, 5);
+            section.markDeleted(sparseMap, 5);
+            assertSame(section, denseMap, sparseMap, keysInRange(0, 10));
+        }
+    }
+
+    @Test
+    public void testNegativeKeys() {
+        for (Section section : SECTIONS) {
+            DenseIndexMap denseMap = new DenseIndexMap();
+            SparseIndexMap sparseMap = new SparseIndexMap();
+            // Deleting negative keys is ignored, mapping them is kept.
+            section.markDeleted(denseMap, -3);
+            section.markDeleted(sparseMap, -3);
+            assertSame(section, denseMap, sparseMap, keysInRange(-5, 5));
+            section.map(denseMap, -1, 7);
+            section.map(sparseMap, -1, 7);
+            assertSame(section, denseMap, sparseMap, keysInRange(-5, 5));
+        }
+    }
+
+    @Test
+    public void testRandomOperations() {
+        Random random = new Random(0x1DE7);
+        for (Section section : SECTIONS) {
+            DenseIndexMap denseMap = new DenseIndexMap();
+            SparseIndexMap sparseMap = new SparseIndexMap();
+            // Offsets are sparse and large, indices are small, try both.
+            int keyRange = (random.nextBoolean() ? 500 : 1 << 24);
+            for (int i = 0; i < 2000; ++i) {
+                int key = random.nextInt(keyRange);
+                apply(section, denseMap, sparseMap, key, random.nextInt(keyRange), random.nextInt(3) == 0);
+            }
+            int[] keys = new int[3000];
+            for (int i = 0; i < keys.length; ++i) {
+                keys[i] = random.nextInt(keyRange);
+            }
+            assertSame(section, denseMap, sparseMap, keys);
+        }
+    }
+
+    private static void apply(Section section, DenseIndexMap denseMap, SparseIndexMap sparseMap,
+                              int oldKey, int newKey, boolean isDeletion) {
+        if (isDeletion) {
+            section.markDeleted(denseMap, oldKey);
+            section.markDeleted(sparseMap, oldKey);
+        } else {
+            section.map(denseMap, oldKey, newKey);
+            section.map(sparseMap, oldKey, newKey);
+        }
+    }
+
+    private static int[] keysInRange(int start, int end) {
+        int[] result = new int[end - start];
+        for (int i = 0; i < result.length; ++i) {
+            result[i] = start + i;
+        }
+        return result;
+    }
+
+    private static void assertSame(Section section, DenseIndexMap denseMap, SparseIndexMap sparseMap, int[] keys) {
+        assertEquals(section.name + " identity", section.isIdentity(sparseMap), section.isIdentity(denseMap));
+        for (int key : keys) {
+            assertEquals(section.name + " key " + key, section.adjust(sparseMap, key), section.adjust(denseMap, key));
+        }
+    }
+
+    private abstract static class Section {
+        final String name;
+
+        Section(String name) {
+            this.name = name;
+        }
+
+        abstract void map(AbstractIndexMap indexMap, int oldKey, int newKey);
+
+        abstract void markDeleted(AbstractIndexMap indexMap, int key);
+
+        abstract int adjust(AbstractIndexMap indexMap, int key);
+
+        abstract boolean isIdentity(AbstractIndexMap indexMap);
+    }
+}